@@ -0,0 +1,142 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ActorFactoryTest extends TestCase {
+
+    private static BlockingQueue<Object> results;
+    private static AtomicInteger postStops;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        ActorRegistry.clear();
+        results = new LinkedBlockingQueue<>();
+        postStops = new AtomicInteger();
+        system = new ActorSystem();
+    }
+
+    @Override
+    public void tearDown() {
+        ActorRegistry.clear();
+        system.shutdown();
+    }
+
+    public void testCreatesActorThroughFactory() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/greeter", new GreeterFactory("Hello"));
+        actor.tell("world");
+        assertEquals("Hello world", results.poll(1, TimeUnit.SECONDS));
+        // An existing actor is returned without calling the factory
+        assertSame(actor, system.getOrCreateActor("/greeter", new GreeterFactory("Bye")));
+    }
+
+    public void testRegistersFactory() throws Exception {
+        ActorRegistry.register("/greeters/*", Greeter.class, new GreeterFactory("Hi"));
+        assertEquals(Greeter.class, ActorRegistry.lookup("/greeters/1"));
+        system.getOrCreateActor("/greeters/1").tell("there");
+        assertEquals("Hi there", results.poll(1, TimeUnit.SECONDS));
+    }
+
+    public void testRestartUsesFactory() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        ActorRef actor = system.getOrCreateActor("/failing", new ActorFactory<Greeter>() {
+            @Override
+            public Greeter create() {
+                return new Greeter("Take " + created.incrementAndGet());
+            }
+        });
+        actor.tell(null);
+        actor.tell("two");
+        assertEquals("Take 2 two", results.poll(1, TimeUnit.SECONDS));
+    }
+
+    public void testTemporaryActorsHaveUniquePaths() throws Exception {
+        Set<String> paths = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            ActorRef actor = system.spawnTemporary(new GreeterFactory("Hey"));
+            assertTrue(actor.getPath(), actor.getPath().startsWith("/tmp/"));
+            assertTrue(paths.add(actor.getPath()));
+            actor.tell(Integer.toString(i));
+            assertEquals("Hey " + i, results.poll(1, TimeUnit.SECONDS));
+            system.stop(actor);
+        }
+        waitForPostStops(100);
+        assertEquals(100, postStops.get());
+    }
+
+    public void testTemporaryActorsAreStoppedOnShutdown() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            system.spawnTemporary(Greeter.class).tell("x");
+        }
+        assertTrue(system.shutdown(5, TimeUnit.SECONDS).isComplete());
+        assertEquals(10, results.size());
+        assertEquals(10, postStops.get());
+    }
+
+    public void testClassWithoutEmptyConstructorFails() {
+        try {
+            system.spawnTemporary(NoEmptyConstructor.class);
+            fail("should have thrown RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("empty constructor"));
+        }
+    }
+
+    private static void waitForPostStops(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (postStops.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    static class GreeterFactory implements ActorFactory<Greeter> {
+        private final String mGreeting;
+
+        GreeterFactory(String greeting) {
+            mGreeting = greeting;
+        }
+
+        @Override
+        public Greeter create() {
+            return new Greeter(mGreeting);
+        }
+    }
+
+    public static class Greeter extends Actor {
+        private final String mGreeting;
+
+        public Greeter() {
+            this("Hello");
+        }
+
+        Greeter(String greeting) {
+            mGreeting = greeting;
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if (message == null) {
+                throw new IllegalArgumentException("Nobody to greet");
+            }
+            results.add(mGreeting + " " + message);
+        }
+
+        @Override
+        public void postStop() {
+            postStops.incrementAndGet();
+        }
+    }
+
+    public static class NoEmptyConstructor extends Actor {
+        public NoEmptyConstructor(String unused) {
+        }
+    }
+}
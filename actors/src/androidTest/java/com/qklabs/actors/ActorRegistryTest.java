@@ -74,6 +74,57 @@ public class ActorRegistryTest extends TestCase {
         } catch (IllegalStateException ignored) {}
     }
 
+    public void testNumberParam() throws Exception {
+        ActorRegistry.register("/actor/#", ActorA.class);
+        assertEquals(ActorA.class, ActorRegistry.lookup("/actor/123"));
+        assertEquals(null, ActorRegistry.lookup("/actor/abc"));
+    }
+
+    public void testExactBeatsWildcards() throws Exception {
+        ActorRegistry.register("/actor/*", ActorA.class);
+        ActorRegistry.register("/actor/#", ActorB.class);
+        ActorRegistry.register("/actor/special", ActorC.class);
+        assertEquals(ActorA.class, ActorRegistry.lookup("/actor/foobar"));
+        assertEquals(ActorB.class, ActorRegistry.lookup("/actor/42"));
+        assertEquals(ActorC.class, ActorRegistry.lookup("/actor/special"));
+    }
+
+    public void testBacktracksToWildcard() throws Exception {
+        ActorRegistry.register("/actor/special/child", ActorA.class);
+        ActorRegistry.register("/actor/*/other", ActorB.class);
+        assertEquals(ActorB.class, ActorRegistry.lookup("/actor/special/other"));
+    }
+
+    public void testWildcardMatchesOneSegment() throws Exception {
+        ActorRegistry.register("/actor/*", ActorA.class);
+        assertEquals(null, ActorRegistry.lookup("/actor"));
+        assertEquals(null, ActorRegistry.lookup("/actor/bob/jimmy"));
+    }
+
+    public void testLocalAuthority() throws Exception {
+        ActorRegistry.register("/actorA", ActorA.class);
+        ActorRegistry.register("actor://remote/actorA", ActorB.class);
+        assertEquals(ActorA.class, ActorRegistry.lookup("actor://local/actorA"));
+        assertEquals(ActorA.class, ActorRegistry.lookup("actorA/"));
+        assertEquals(ActorB.class, ActorRegistry.lookup("actor://remote/actorA"));
+    }
+
+    public void testSameUriDifferentFormsConflict() throws Exception {
+        try {
+            ActorRegistry.register("/actor", ActorA.class);
+            ActorRegistry.register("actor://local/actor/", ActorB.class);
+            fail("should have thrown IllegalStateException");
+        } catch (IllegalStateException ignored) {}
+    }
+
+    public void testRegisterInvalidatesCachedLookups() throws Exception {
+        assertEquals(null, ActorRegistry.lookup("/actorA"));
+        ActorRegistry.register("/actorA", ActorA.class);
+        assertEquals(ActorA.class, ActorRegistry.lookup("/actorA"));
+        ActorRegistry.clear();
+        assertEquals(null, ActorRegistry.lookup("/actorA"));
+    }
+
     public static final class ActorA extends Actor {}
     public static final class ActorB extends Actor {}
     public static final class ActorC extends Actor {}
@@ -0,0 +1,124 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ActorSelectionTest extends TestCase {
+
+    private static List<String> received;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        received = new ArrayList<>();
+        system = new ActorSystem(new EmbeddedDispatcher());
+        for (String path : new String[] {"/user/1", "/user/2", "/user/guest", "/user/1/inbox",
+                "/events", "/events/today"}) {
+            system.getOrCreateActor(path, RecordingActor.class);
+        }
+        system.runUntilIdle();
+    }
+
+    @Override
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    public void testSelectsDirectChildren() {
+        assertEquals(3, system.select("/user/*").tell("hi"));
+        assertEquals(Arrays.asList("/user/1", "/user/2", "/user/guest"), receivedPaths());
+    }
+
+    public void testSelectsNumberedChildren() {
+        assertEquals(2, system.select("/user/#").tell("hi"));
+        assertEquals(Arrays.asList("/user/1", "/user/2"), receivedPaths());
+    }
+
+    public void testSelectsDescendants() {
+        assertEquals(4, system.select("/user/**").tell("hi"));
+        assertEquals(Arrays.asList("/user/1", "/user/1/inbox", "/user/2", "/user/guest"),
+                receivedPaths());
+    }
+
+    public void testSelectsExactPath() {
+        assertEquals(1, system.select("events").tell("hi"));
+        assertEquals(Collections.singletonList("/events"), receivedPaths());
+        assertEquals(0, system.select("/nobody/*").tell("hi"));
+    }
+
+    public void testStoppedActorsAreNotSelected() {
+        system.stop(system.getOrCreateActor("/user/2", RecordingActor.class));
+        system.stop(system.getOrCreateActor("/user/1/inbox", RecordingActor.class));
+        system.runUntilIdle();
+        assertEquals(2, system.select("/user/**").getActors().size());
+
+        // The path can be reused
+        system.getOrCreateActor("/user/2", RecordingActor.class);
+        assertEquals(3, system.select("/user/**").getActors().size());
+    }
+
+    public void testSelectionIncludesNewActors() {
+        ActorSelection temporary = system.select("/tmp/*");
+        assertEquals(0, temporary.getActors().size());
+        ActorRef actor = system.spawnTemporary(RecordingActor.class);
+        assertEquals(Collections.singletonList(actor), temporary.getActors());
+        system.stop(actor);
+        assertEquals(0, temporary.getActors().size());
+    }
+
+    public void testConcurrentCreateAndStop() throws Exception {
+        final ActorSystem threaded = new ActorSystem();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 2000; i++) {
+                        // Threads share parents, so adds race with pruning
+                        String path = "/churn/" + (i % 8) + "/" + id + "-" + i;
+                        threaded.stop(threaded.getOrCreateActor(path, RecordingActor.class));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ActorRef survivor = threaded.getOrCreateActor("/churn/3/survivor", RecordingActor.class);
+        try {
+            assertEquals(Collections.singletonList(survivor),
+                    threaded.select("/churn/**").getActors());
+        } finally {
+            threaded.shutdown();
+        }
+    }
+
+    public void testDescendantsMustBeLast() {
+        try {
+            system.select("/user/**/inbox");
+            fail("should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private List<String> receivedPaths() {
+        system.runUntilIdle();
+        Collections.sort(received);
+        return received;
+    }
+
+    public static class RecordingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            received.add(getPath());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class ActorSystemBuilderTest extends TestCase {
+    private static BlockingQueue<Thread> threads;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        threads = new LinkedBlockingQueue<>();
+    }
+
+    @Override
+    public void tearDown() {
+        if (system != null) {
+            system.shutdown();
+        }
+    }
+
+    public void testDefaultDispatcherThreadSettings() throws Exception {
+        system = new ActorSystem.Builder()
+                .threads(2)
+                .threadNamePrefix("test-actors")
+                .threadPriority(Thread.MIN_PRIORITY)
+                .daemon(true)
+                .build();
+        system.getOrCreateActor("/thread", ThreadActor.class).tell("which thread?");
+
+        Thread thread = threads.poll(1, TimeUnit.SECONDS);
+        assertNotNull("actor should receive the message", thread);
+        assertTrue(thread.getName().startsWith("test-actors-"));
+        assertEquals(Thread.MIN_PRIORITY, thread.getPriority());
+        assertTrue(thread.isDaemon());
+    }
+
+    public void testRouteByPath() throws Exception {
+        system = new ActorSystem.Builder()
+                .dispatcher("io", ioDispatcher())
+                .route("/io/*", "io")
+                .build();
+        system.getOrCreateActor("/io/disk", ThreadActor.class).tell("which thread?");
+        system.getOrCreateActor("/cpu", ThreadActor.class).tell("which thread?");
+
+        assertEquals(1, countIoThreads(2));
+    }
+
+    public void testRouteByClass() throws Exception {
+        system = new ActorSystem.Builder()
+                .dispatcher("io", ioDispatcher())
+                .route(IoActor.class, "io")
+                .build();
+        system.getOrCreateActor("/a", IoActor.class).tell("which thread?");
+        system.getOrCreateActor("/b", ThreadActor.class).tell("which thread?");
+
+        assertEquals(1, countIoThreads(2));
+    }
+
+    public void testRoutesAreCheckedInOrder() throws Exception {
+        system = new ActorSystem.Builder()
+                .dispatcher("io", ioDispatcher())
+                .dispatcher("other", new WorkStealingDispatcher(1, 1, new BlockingIdleStrategy(),
+                        new ActorThreadFactory("other", Thread.NORM_PRIORITY, true)))
+                .route("/a/*", "io")
+                .route("/a/b", "other")
+                .build();
+        // The more specific route was added later, so the first one wins
+        system.getOrCreateActor("/a/b", ThreadActor.class).tell("which thread?");
+
+        assertEquals(1, countIoThreads(1));
+    }
+
+    public void testNumberRouteOnlyMatchesAsciiDigits() throws Exception {
+        system = new ActorSystem.Builder()
+                .dispatcher("io", ioDispatcher())
+                .route("/io/#", "io")
+                .build();
+        system.getOrCreateActor("/io/42", ThreadActor.class).tell("which thread?");
+        system.getOrCreateActor("/io/\u0664\u0662", ThreadActor.class).tell("which thread?");
+
+        assertEquals(1, countIoThreads(2));
+    }
+
+    public void testRouteToUnknownDispatcherFails() {
+        try {
+            new ActorSystem.Builder().route("/io/*", "io").build();
+            fail("should have thrown IllegalStateException");
+        } catch (IllegalStateException ignored) {}
+    }
+
+    public void testInvalidThreadCountFails() {
+        try {
+            new ActorSystem.Builder().threads(0);
+            fail("should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    private static Dispatcher ioDispatcher() {
+        return new WorkStealingDispatcher(2, 1, new BlockingIdleStrategy(),
+                new ActorThreadFactory("io", Thread.NORM_PRIORITY, true));
+    }
+
+    private static int countIoThreads(int messages) throws InterruptedException {
+        int io = 0;
+        for (int i = 0; i < messages; i++) {
+            Thread thread = threads.poll(1, TimeUnit.SECONDS);
+            assertNotNull("actor should receive the message", thread);
+            if (thread.getName().startsWith("io-")) {
+                io++;
+            }
+        }
+        return io;
+    }
+
+    public static class ThreadActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            threads.add(Thread.currentThread());
+        }
+    }
+
+    public static class IoActor extends ThreadActor {}
+}
@@ -2,6 +2,8 @@ package com.qklabs.actors;
 
 import junit.framework.TestCase;
 
+import java.util.concurrent.CountDownLatch;
+
 public class ActorSystemTest extends TestCase {
     private static StringBuilder builder;
 
@@ -131,6 +133,58 @@ public class ActorSystemTest extends TestCase {
         }
     }
 
+    public void testGetOrCreateReturnsCanonicalRef() {
+        ActorRef first = system.getOrCreateActor("/count", CountActor.class);
+        ActorRef second = system.getOrCreateActor("/count", CountActor.class);
+        assertSame("should return the same ref for a live actor", first, second);
+    }
+
+    public void testEmptyActorRefIsCached() {
+        assertSame(system.getEmptyActorRef(), system.getEmptyActorRef());
+    }
+
+    public void testConcurrentGetOrCreateCreatesOneActor() throws Exception {
+        final int threads = 8;
+        final ActorRef[] refs = new ActorRef[threads];
+        final CountDownLatch go = new CountDownLatch(1);
+        Thread[] creators = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            creators[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (InterruptedException ignored) {}
+                    refs[index] = system.getOrCreateActor("/unique", CountActor.class);
+                }
+            });
+            creators[i].start();
+        }
+        go.countDown();
+        for (Thread creator : creators) {
+            creator.join();
+        }
+        for (ActorRef ref : refs) {
+            assertSame("every thread should get the same actor", refs[0], ref);
+        }
+    }
+
+    public void testPoisonPillRemovesActor() {
+        ActorRef counter = system.getOrCreateActor("/count", CountActor.class);
+        counter.tell(new Increment());
+        wait(RECEIVE_LOCK, 1000);
+
+        counter.tell(new PoisonPill());
+
+        ActorRef recreated = system.getOrCreateActor("/count", CountActor.class);
+        assertNotSame("poisoned actor should be replaced", counter, recreated);
+        recreated.tell(new Increment());
+        wait(RECEIVE_LOCK, 1000);
+
+        assertEquals("actor should reset", "11", builder.toString());
+    }
+
     public static class PrintActor extends Actor {
         @Override
         public void preStart() {
@@ -0,0 +1,110 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AskTest extends TestCase {
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        system = new ActorSystem();
+    }
+
+    @Override
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    public void testAsk() throws Exception {
+        ActorRef echo = system.getOrCreateActor("/echo", EchoActor.class);
+        ActorFuture<Object> future = echo.ask("hello", 1, TimeUnit.SECONDS);
+        assertEquals("hello", future.get(1, TimeUnit.SECONDS));
+    }
+
+    public void testAskTimesOut() throws Exception {
+        ActorRef silent = system.getOrCreateActor("/silent", Actor.class);
+        ActorFuture<Object> future = silent.ask("hello", 50, TimeUnit.MILLISECONDS);
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("ask should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AskTimeoutException);
+        }
+    }
+
+    public void testListener() throws Exception {
+        ActorRef echo = system.getOrCreateActor("/echo", EchoActor.class);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<>();
+        echo.ask("hello", 1, TimeUnit.SECONDS).addListener(new ActorFuture.Listener<Object>() {
+            @Override
+            public void onComplete(Object reply, Throwable error) {
+                result.set(reply);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals("hello", result.get());
+    }
+
+    public void testCancelStopsTheTimeout() throws Exception {
+        ActorRef silent = system.getOrCreateActor("/silent", Actor.class);
+        ActorFuture<Object> future = silent.ask("hello", 1, TimeUnit.MINUTES);
+        assertEquals(1, system.getTimer().pendingCount());
+
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertEquals("the ask shouldn't wait for its timeout", 0,
+                system.getTimer().pendingCount());
+    }
+
+    public void testManyAsks() throws Exception {
+        ActorRef echo = system.getOrCreateActor("/echo", EchoActor.class);
+        int count = 10000;
+        @SuppressWarnings("unchecked")
+        ActorFuture<Object>[] futures = new ActorFuture[count];
+        for (int i = 0; i < count; i++) {
+            futures[i] = echo.ask(i, 5, TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, futures[i].get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testAskToStoppedActorFailsRightAway() throws Exception {
+        ActorRef stopped = system.getOrCreateActor("/stopped", EchoActor.class);
+        system.stop(stopped);
+        ActorFuture<Object> future = stopped.ask("hello", 1, TimeUnit.MINUTES);
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("ask should fail without waiting for the timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AskRejectedException);
+        }
+    }
+
+    public void testShutdownFailsPendingAsks() throws Exception {
+        ActorRef silent = system.getOrCreateActor("/silent", Actor.class);
+        ActorFuture<Object> future = silent.ask("hello", 1, TimeUnit.MINUTES);
+        system.shutdown();
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("ask should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public static class EchoActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            sender.tell(message, self());
+        }
+    }
+}
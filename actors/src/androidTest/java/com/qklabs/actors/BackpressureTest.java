@@ -0,0 +1,159 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BackpressureTest extends TestCase {
+
+    private static CountDownLatch started;
+    private static CountDownLatch release;
+    private static List<Object> messages;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        messages = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+        system.shutdown();
+    }
+
+    public void testDropNewest() throws Exception {
+        ActorRef actor = createBlockedActor(Backpressure.dropNewest(10));
+        // The first message is being processed, so there's room for 9 more
+        for (int i = 1; i < 10; i++) {
+            assertTrue(actor.tell(i));
+        }
+        for (int i = 10; i < 20; i++) {
+            assertFalse("messages past the limit should be dropped", actor.tell(i));
+        }
+        assertEquals(10, system.getDroppedMessageCount());
+
+        assertEquals(numbers(0, 10), receiveAll(actor, 10));
+    }
+
+    public void testDropOldest() throws Exception {
+        ActorRef actor = createBlockedActor(Backpressure.dropOldest(10));
+        for (int i = 1; i < 20; i++) {
+            assertTrue(actor.tell(i));
+        }
+        // More than twice the capacity behind, so new messages are dropped too
+        assertFalse(actor.tell(20));
+        assertEquals(11, system.getDroppedMessageCount());
+
+        List<Object> expected = numbers(0, 1);
+        expected.addAll(numbers(11, 20));
+        assertEquals("the oldest waiting messages should be dropped", expected,
+                receiveAll(actor, expected.size()));
+    }
+
+    public void testFail() throws Exception {
+        ActorRef actor = createBlockedActor(Backpressure.fail(2));
+        assertTrue(actor.tell(1));
+        assertFalse(actor.tell(2));
+        assertEquals(1, system.getRejectedMessageCount());
+        assertEquals(0, system.getDroppedMessageCount());
+    }
+
+    public void testBlockTimesOut() throws Exception {
+        ActorRef actor = createBlockedActor(Backpressure.block(1, 50, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        assertFalse(actor.tell(1));
+        assertTrue("sender should wait for the timeout",
+                System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, system.getRejectedMessageCount());
+    }
+
+    public void testBlockWaitsForRoom() throws Exception {
+        ActorRef actor = createBlockedActor(Backpressure.block(1, 5, TimeUnit.SECONDS));
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // Release right away
+                }
+                release.countDown();
+            }
+        }.start();
+        assertTrue("sender should get in once there's room", actor.tell(1));
+        assertEquals(numbers(0, 2), receiveAll(actor, 2));
+    }
+
+    public void testActorOverridesSystemLimit() throws Exception {
+        system = new ActorSystem.Builder()
+                .backpressure(Backpressure.fail(1))
+                .build();
+        ActorRef actor = system.getOrCreateActor("/unbounded", UnboundedActor.class);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(actor.tell(i));
+        }
+    }
+
+    private ActorRef createBlockedActor(Backpressure backpressure) throws Exception {
+        system = new ActorSystem.Builder()
+                .backpressure(backpressure)
+                .build();
+        ActorRef actor = system.getOrCreateActor("/blocking", BlockingActor.class);
+        actor.tell(0);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        return actor;
+    }
+
+    private List<Object> receiveAll(ActorRef actor, int expected) throws Exception {
+        release.countDown();
+        // The mailbox stays full until the expected messages are processed, so a probe sent
+        // before then could be dropped too
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (messages.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        // Everything sent before this is processed before it, so nothing else was received
+        actor.ask("done", 1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        return new ArrayList<>(messages);
+    }
+
+    private static List<Object> numbers(int from, int to) {
+        List<Object> numbers = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    public static class BlockingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if ("done".equals(message)) {
+                sender.tell(message, self());
+                return;
+            }
+            messages.add(message);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class UnboundedActor extends Actor {
+        @Override
+        public Backpressure getBackpressure() {
+            return Backpressure.UNBOUNDED;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BatchTest extends TestCase {
+    private static final int MESSAGES = 100;
+
+    private static CountDownLatch received;
+    private static List<Object> messages;
+    private static List<Integer> batchSizes;
+
+    @Override
+    public void setUp() {
+        received = new CountDownLatch(MESSAGES);
+        messages = Collections.synchronizedList(new ArrayList<>());
+        batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    }
+
+    public void testTellAllKeepsOrder() throws Exception {
+        assertTellAllKeepsOrder(new ActorSystem());
+    }
+
+    public void testTellAllKeepsOrderWithWorkStealing() throws Exception {
+        assertTellAllKeepsOrder(new ActorSystem(new WorkStealingDispatcher()));
+    }
+
+    public void testOnReceiveBatch() throws Exception {
+        assertReceivesBatches(new ActorSystem());
+    }
+
+    public void testOnReceiveBatchWithWorkStealing() throws Exception {
+        assertReceivesBatches(new ActorSystem(new WorkStealingDispatcher()));
+    }
+
+    public void testBroadcast() throws Exception {
+        ActorSystem system = new ActorSystem();
+        try {
+            List<ActorRef> targets = new ArrayList<>();
+            for (int i = 0; i < MESSAGES; i++) {
+                targets.add(system.getOrCreateActor("/recording/" + i, RecordingActor.class));
+            }
+            system.broadcast(targets, "hello", system.getEmptyActorRef());
+
+            assertTrue("every actor should get the message", received.await(1, TimeUnit.SECONDS));
+            assertEquals(MESSAGES, messages.size());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    private void assertTellAllKeepsOrder(ActorSystem system) throws Exception {
+        try {
+            ActorRef actor = system.getOrCreateActor("/recording", RecordingActor.class);
+            actor.tellAll(numbers());
+
+            assertTrue("all messages should be received", received.await(1, TimeUnit.SECONDS));
+            assertEquals(numbers(), messages);
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    private void assertReceivesBatches(ActorSystem system) throws Exception {
+        try {
+            ActorRef actor = system.getOrCreateActor("/batch", BatchActor.class);
+            actor.tellAll(numbers());
+
+            assertTrue("all messages should be received", received.await(1, TimeUnit.SECONDS));
+            assertEquals(numbers(), messages);
+            boolean sawBatch = false;
+            for (int size : batchSizes) {
+                assertTrue("batches should not exceed the maximum size",
+                        size <= BatchActor.MAX_BATCH_SIZE);
+                sawBatch |= size > 1;
+            }
+            assertTrue("queued messages should be delivered together", sawBatch);
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    private static List<Object> numbers() {
+        List<Object> numbers = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    public static class RecordingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            messages.add(message);
+            received.countDown();
+        }
+    }
+
+    public static class BatchActor extends Actor {
+        static final int MAX_BATCH_SIZE = 8;
+
+        @Override
+        public int getMaxBatchSize() {
+            return MAX_BATCH_SIZE;
+        }
+
+        @Override
+        public void onReceiveBatch(List<Envelope> batch) {
+            batchSizes.add(batch.size());
+            for (Envelope envelope : batch) {
+                messages.add(envelope.getMessage());
+                received.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConflationTest extends TestCase {
+
+    private static CountDownLatch started;
+    private static CountDownLatch release;
+    private static List<Object> messages;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        messages = Collections.synchronizedList(new ArrayList<>());
+        system = new ActorSystem();
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+        system.shutdown();
+    }
+
+    public void testLatestValueTakesTheFirstPlace() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/positions", ConflatingActor.class);
+        actor.tell("block");
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        actor.tell(new Position("a", 1));
+        actor.tell(new Position("b", 1));
+        actor.tell("plain");
+        actor.tell(new Position("a", 2));
+        actor.tellAll(Arrays.asList(new Position("b", 2), new Position("a", 3)));
+
+        release.countDown();
+        actor.ask("done", 1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        List<Object> expected = new ArrayList<>();
+        expected.add("block");
+        expected.add(new Position("a", 3));
+        expected.add(new Position("b", 2));
+        expected.add("plain");
+        expected.add("done");
+        assertEquals(expected, messages);
+    }
+
+    public void testBacklogIsBoundedByKeys() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/positions", ConflatingActor.class);
+        actor.tell("block");
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 100000; i++) {
+            actor.tell(new Position("key" + (i % 10), i));
+        }
+
+        // The blocked message and one per key
+        assertEquals(11, system.metrics().getMailboxDepth("/positions"));
+        release.countDown();
+        actor.ask("done", 1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        assertEquals(12, messages.size());
+        assertEquals(new Position("key0", 99990), messages.get(1));
+    }
+
+    public void testNewMessageAfterProcessingIsQueued() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/positions", ConflatingActor.class);
+        release.countDown();
+        actor.tell(new Position("a", 1));
+        actor.ask("done", 1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        actor.tell(new Position("a", 2));
+        actor.ask("done", 1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.<Object>asList(new Position("a", 1), "done", new Position("a", 2),
+                "done"), messages);
+    }
+
+    public void testCantAlsoHavePriority() {
+        try {
+            system.getOrCreateActor("/invalid", ConflatingPriorityActor.class);
+            fail("should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    public static class ConflatingActor extends Actor {
+        @Override
+        public boolean isConflating() {
+            return true;
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            messages.add(message);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if ("done".equals(message)) {
+                sender.tell(message, self());
+            }
+        }
+    }
+
+    public static class ConflatingPriorityActor extends ConflatingActor {
+        @Override
+        public Comparator<Object> getMessagePriority() {
+            return MessagePriority.byClass(String.class);
+        }
+    }
+
+    public static class Position implements Conflatable {
+        final String key;
+        final int value;
+
+        Position(String key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object getConflationKey() {
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Position && ((Position) o).key.equals(key)
+                    && ((Position) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + value;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class EmbeddedDispatcherTest extends TestCase {
+
+    private static List<String> log;
+    private static ActorSystem system;
+
+    @Override
+    public void setUp() {
+        log = new ArrayList<>();
+        system = new ActorSystem.Builder()
+                .dispatcher(new EmbeddedDispatcher())
+                .build();
+    }
+
+    @Override
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    public void testNothingRunsUntilPumped() {
+        ActorRef actor = system.getOrCreateActor("/a", LoggingActor.class);
+        actor.tell("hello");
+        assertTrue(log.isEmpty());
+
+        // preStart, then the message
+        assertEquals(2, system.runUntilIdle());
+        assertEquals(Arrays.asList("/a start", "/a hello"), log);
+    }
+
+    public void testRunOnceProcessesAtMostMaxMessages() {
+        ActorRef actor = system.getOrCreateActor("/a", LoggingActor.class);
+        for (int i = 0; i < 5; i++) {
+            actor.tell(Integer.toString(i));
+        }
+        assertEquals(3, system.runOnce(3));
+        assertEquals(Arrays.asList("/a start", "/a 0", "/a 1"), log);
+        assertEquals(3, system.runOnce(10));
+        assertEquals(0, system.runOnce(10));
+    }
+
+    public void testOrderIsDeterministic() {
+        ActorRef a = system.getOrCreateActor("/a", LoggingActor.class);
+        ActorRef b = system.getOrCreateActor("/b", LoggingActor.class);
+        a.tell("forward 3", b);
+        b.tell("x");
+        system.runUntilIdle();
+        assertEquals(Arrays.asList("/a start", "/b start", "/a forward 3", "/b x",
+                "/b forward 2", "/a forward 1", "/b forward 0"), log);
+    }
+
+    public void testActorCantRunDispatcherFromInside() {
+        system.getOrCreateActor("/a", LoggingActor.class).tell("nested");
+        system.runUntilIdle();
+        assertEquals(Arrays.asList("/a start", "/a nested failed"), log);
+    }
+
+    public void testShutdownDrainsOnCallingThread() {
+        ActorRef actor = system.getOrCreateActor("/a", LoggingActor.class);
+        actor.tell("bye");
+        ShutdownReport report = system.shutdown(1, TimeUnit.SECONDS);
+        assertTrue(report.toString(), report.isComplete());
+        assertEquals(Arrays.asList("/a start", "/a bye", "/a stop"), log);
+    }
+
+    public void testRunOnceNeedsEmbeddedDispatcher() {
+        ActorSystem threaded = new ActorSystem();
+        try {
+            threaded.runOnce(1);
+            fail("should have thrown IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            threaded.shutdown();
+        }
+    }
+
+    public static class LoggingActor extends Actor {
+        @Override
+        public void preStart() {
+            log.add(getPath() + " start");
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            String text = (String) message;
+            if (text.startsWith("forward ")) {
+                log.add(getPath() + " " + text);
+                int hops = Integer.parseInt(text.substring("forward ".length()));
+                if (hops > 0) {
+                    sender.tell("forward " + (hops - 1), self());
+                }
+            } else if (text.equals("nested")) {
+                try {
+                    system.runOnce(1);
+                } catch (IllegalStateException e) {
+                    log.add(getPath() + " nested failed");
+                }
+            } else {
+                log.add(getPath() + " " + text);
+            }
+        }
+
+        @Override
+        public void postStop() {
+            log.add(getPath() + " stop");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class EventStreamTest extends TestCase {
+
+    private static List<String> received;
+    private static EventStream stream;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        received = new ArrayList<>();
+        system = new ActorSystem(new EmbeddedDispatcher());
+        stream = system.eventStream();
+    }
+
+    @Override
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    public void testPublishesToClassSubscribers() {
+        ActorRef a = system.getOrCreateActor("/a", Subscriber.class);
+        ActorRef b = system.getOrCreateActor("/b", Subscriber.class);
+        stream.subscribe(a, String.class);
+        stream.subscribe(b, CharSequence.class);
+        stream.subscribe(b, Integer.class);
+
+        stream.publish("hello");
+        stream.publish(1);
+        system.runUntilIdle();
+        assertEquals(Arrays.asList("/a hello", "/b hello", "/b 1"), received);
+    }
+
+    public void testSubscribedTwiceReceivesOnce() {
+        ActorRef a = system.getOrCreateActor("/a", Subscriber.class);
+        stream.subscribe(a, Object.class);
+        stream.subscribe(a, String.class);
+        stream.subscribe(a, "/news/*");
+        stream.subscribe(a, "/news/sports");
+
+        stream.publish("hello");
+        stream.publish("/news/sports", "goal");
+        system.runUntilIdle();
+        assertEquals(Arrays.asList("/a hello", "/a goal"), received);
+    }
+
+    public void testPublishesToMatchingTopics() {
+        ActorRef all = system.getOrCreateActor("/all", Subscriber.class);
+        ActorRef numbered = system.getOrCreateActor("/numbered", Subscriber.class);
+        ActorRef exact = system.getOrCreateActor("/exact", Subscriber.class);
+        stream.subscribe(all, "/orders/*");
+        stream.subscribe(numbered, "/orders/#");
+        stream.subscribe(exact, "orders/42");
+
+        stream.publish("/orders/42", "a");
+        stream.publish("/orders/new", "b");
+        stream.publish("/orders/7/items", "c");
+        system.runUntilIdle();
+        Collections.sort(received);
+        assertEquals(Arrays.asList("/all a", "/all b", "/exact a", "/numbered a"), received);
+    }
+
+    public void testUnsubscribe() {
+        ActorRef a = system.getOrCreateActor("/a", Subscriber.class);
+        stream.subscribe(a, String.class);
+        stream.subscribe(a, "/news");
+        assertTrue(stream.unsubscribe(a, String.class));
+        assertFalse(stream.unsubscribe(a, String.class));
+
+        stream.publish("hello");
+        stream.publish("/news", "extra");
+        system.runUntilIdle();
+        assertEquals(Collections.singletonList("/a extra"), received);
+
+        stream.unsubscribe(a);
+        stream.publish("/news", "again");
+        system.runUntilIdle();
+        assertEquals(1, received.size());
+    }
+
+    public void testStoppedActorsAreUnsubscribed() {
+        ActorRef a = system.getOrCreateActor("/a", Subscriber.class);
+        stream.subscribe(a, String.class);
+        system.stop(a);
+        system.runUntilIdle();
+
+        assertFalse(stream.unsubscribe(a, String.class));
+        stream.publish("hello");
+        system.runUntilIdle();
+        assertTrue(received.isEmpty());
+    }
+
+    public void testActorCanSubscribeItselfInPreStart() {
+        system.getOrCreateActor("/self", SelfSubscriber.class);
+        system.runUntilIdle();
+        stream.publish("/alerts/fire", "run");
+        system.runUntilIdle();
+        assertEquals(Collections.singletonList("/self run"), received);
+    }
+
+    public static class Subscriber extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            received.add(getPath() + " " + message);
+        }
+    }
+
+    public static class SelfSubscriber extends Subscriber {
+        @Override
+        public void preStart() {
+            stream.subscribe(self(), "/alerts/*");
+        }
+    }
+}
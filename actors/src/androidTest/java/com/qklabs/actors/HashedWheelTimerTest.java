@@ -0,0 +1,70 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class HashedWheelTimerTest extends TestCase {
+
+    private HashedWheelTimer timer;
+
+    @Override
+    public void setUp() {
+        // A small wheel, so timeouts have to wait out several rounds
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 4);
+    }
+
+    @Override
+    public void tearDown() {
+        timer.shutdown();
+    }
+
+    public void testTimeoutAfterSeveralRounds() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final long[] elapsed = new long[1];
+        timer.schedule(new HashedWheelTimer.Timeout() {
+            @Override
+            void expire() {
+                elapsed[0] = System.nanoTime() - start;
+                expired.countDown();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(expired.await(1, TimeUnit.SECONDS));
+        assertTrue("timeout should not expire early",
+                elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    public void testShutdownAbandonsTimeouts() throws Exception {
+        final CountDownLatch abandoned = new CountDownLatch(1);
+        timer.schedule(new HashedWheelTimer.Timeout() {
+            @Override
+            void expire() {
+            }
+
+            @Override
+            void abandon() {
+                abandoned.countDown();
+            }
+        }, 1, TimeUnit.MINUTES);
+        timer.shutdown();
+
+        assertTrue(abandoned.await(1, TimeUnit.SECONDS));
+        assertEquals(0, timer.pendingCount());
+    }
+
+    public void testScheduleAfterShutdown() {
+        timer.shutdown();
+        try {
+            timer.schedule(new HashedWheelTimer.Timeout() {
+                @Override
+                void expire() {
+                }
+            }, 1, TimeUnit.SECONDS);
+            fail("scheduling after shutdown should fail");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
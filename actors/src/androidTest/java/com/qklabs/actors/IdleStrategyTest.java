@@ -0,0 +1,60 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class IdleStrategyTest extends TestCase {
+    private static CountDownLatch latch;
+
+    @Override
+    public void setUp() {
+        latch = new CountDownLatch(1);
+    }
+
+    public void testBlockingWakesUpOnTell() throws Exception {
+        assertWakesUp(new BlockingIdleStrategy());
+    }
+
+    public void testBackoffWakesUpOnTell() throws Exception {
+        assertWakesUp(new BackoffIdleStrategy());
+    }
+
+    public void testBusySpinWakesUpOnTell() throws Exception {
+        assertWakesUp(new BusySpinIdleStrategy());
+    }
+
+    public void testBackoffWakesUpBeforeParkTimeout() throws Exception {
+        long minute = TimeUnit.MINUTES.toNanos(1);
+        assertWakesUp(new BackoffIdleStrategy(0, 0, minute, minute));
+    }
+
+    public void testInvalidBackoffParameters() {
+        try {
+            new BackoffIdleStrategy(10, 10, 1000, 10);
+            fail("should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    private void assertWakesUp(IdleStrategy strategy) throws Exception {
+        ActorSystem system = new ActorSystem(strategy);
+        try {
+            ActorRef actor = system.getOrCreateActor("/latch", LatchActor.class);
+            // Give the workers time to go idle
+            Thread.sleep(200);
+            actor.tell("wake up");
+            assertTrue("idle worker should process the message",
+                    latch.await(1000, TimeUnit.MILLISECONDS));
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    public static class LatchActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            latch.countDown();
+        }
+    }
+}
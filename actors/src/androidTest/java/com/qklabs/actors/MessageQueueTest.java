@@ -0,0 +1,180 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageQueueTest extends TestCase {
+
+    public void testCapacityRoundsUpToPowerOfTwo() {
+        MessageQueue queue = new MessageQueue(5);
+        RecordingActor actor = new RecordingActor();
+        ActorCell cell = new ActorCell("/recording", actor);
+        for (int i = 0; i < 8; i++) {
+            queue.sendMessage(cell, i, null);
+        }
+        drain(queue);
+        assertEquals(8, actor.received.size());
+    }
+
+    public void testEventsAreProcessedInOrder() {
+        MessageQueue queue = new MessageQueue(4);
+        RecordingActor actor = new RecordingActor();
+        ActorCell cell = new ActorCell("/recording", actor);
+        queue.start(cell);
+        queue.sendMessage(cell, "a", null);
+        queue.sendMessage(cell, "b", null);
+        drain(queue);
+
+        List<Object> expected = new ArrayList<>();
+        expected.add(RecordingActor.PRE_START);
+        expected.add("a");
+        expected.add("b");
+        assertEquals(expected, actor.received);
+    }
+
+    public void testLifecycleEventsSkipTheQueue() {
+        MessageQueue queue = new MessageQueue(4);
+        RecordingActor busy = new RecordingActor();
+        ActorCell busyCell = new ActorCell("/busy", busy);
+        for (int i = 0; i < 100; i++) {
+            queue.sendMessage(busyCell, i, null);
+        }
+        RecordingActor actor = new RecordingActor();
+        ActorCell cell = new ActorCell("/recording", actor);
+        queue.start(cell);
+        queue.sendMessage(cell, "a", null);
+        queue.processEvent();
+        assertEquals("preStart should not wait for other actors' messages",
+                RecordingActor.PRE_START, actor.received.get(0));
+
+        busyCell.markStopped();
+        queue.stop(busyCell);
+        drain(queue);
+        assertEquals("messages left after stopping should be dropped",
+                RecordingActor.POST_STOP, busy.received.get(0));
+        assertEquals(1, busy.received.size());
+        assertEquals(2, actor.received.size());
+    }
+
+    public void testOverflowKeepsOrder() {
+        MessageQueue queue = new MessageQueue(4);
+        RecordingActor actor = new RecordingActor();
+        ActorCell cell = new ActorCell("/recording", actor);
+        for (int i = 0; i < 100; i++) {
+            queue.sendMessage(cell, i, null);
+            // Interleave processing so the ring and overflow queue are both in use
+            if (i % 7 == 0) {
+                queue.processEvent();
+            }
+        }
+        drain(queue);
+
+        assertEquals(100, actor.received.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, actor.received.get(i));
+        }
+    }
+
+    public void testBatchLargerThanRingKeepsOrder() {
+        MessageQueue queue = new MessageQueue(4);
+        RecordingActor actor = new RecordingActor();
+        ActorCell cell = new ActorCell("/recording", actor);
+        queue.sendMessage(cell, "first", null);
+        Object[] batch = new Object[10];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i;
+        }
+        queue.sendMessages(cell, batch, null);
+        queue.sendMessage(cell, "last", null);
+        drain(queue);
+
+        assertEquals(12, actor.received.size());
+        assertEquals("first", actor.received.get(0));
+        for (int i = 0; i < batch.length; i++) {
+            assertEquals(i, actor.received.get(i + 1));
+        }
+        assertEquals("last", actor.received.get(11));
+    }
+
+    public void testBroadcastBatch() {
+        MessageQueue queue = new MessageQueue(4);
+        RecordingActor first = new RecordingActor();
+        RecordingActor second = new RecordingActor();
+        ActorCell[] cells = {new ActorCell("/first", first), new ActorCell("/second", second)};
+        queue.sendMessage(cells, cells.length, "hello", null);
+        drain(queue);
+
+        assertEquals(1, first.received.size());
+        assertEquals(1, second.received.size());
+    }
+
+    public void testConcurrentProducersKeepPerSenderOrder() throws Exception {
+        final MessageQueue queue = new MessageQueue(16);
+        final RecordingActor actor = new RecordingActor();
+        final ActorCell cell = new ActorCell("/recording", actor);
+        final int producers = 4;
+        final int perProducer = 10000;
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.sendMessage(cell, new int[] {producer, i}, null);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        int processed = 0;
+        while (processed < producers * perProducer) {
+            if (queue.processEvent()) {
+                processed++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int[] next = new int[producers];
+        for (Object message : actor.received) {
+            int[] pair = (int[]) message;
+            assertEquals("messages from one sender should stay in order", next[pair[0]], pair[1]);
+            next[pair[0]]++;
+        }
+        assertFalse(queue.processEvent());
+    }
+
+    private static void drain(MessageQueue queue) {
+        while (queue.processEvent()) {
+            // keep going
+        }
+    }
+
+    private static class RecordingActor extends Actor {
+        static final String PRE_START = "preStart";
+        static final String POST_STOP = "postStop";
+
+        final List<Object> received = new ArrayList<>();
+
+        @Override
+        public void preStart() {
+            received.add(PRE_START);
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            received.add(message);
+        }
+
+        @Override
+        public void postStop() {
+            received.add(POST_STOP);
+        }
+    }
+}
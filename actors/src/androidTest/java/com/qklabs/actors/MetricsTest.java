@@ -0,0 +1,160 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class MetricsTest extends TestCase {
+
+    private static CountDownLatch sReceived;
+    private static CountDownLatch sRelease;
+
+    private ActorSystem system;
+
+    @Override
+    public void tearDown() {
+        if (system != null) {
+            system.shutdown();
+        }
+    }
+
+    public void testHistogramBuckets() {
+        for (long value : new long[] {0, 1, 3, 4, 7, 8, 100, 1000000, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(Histogram.lowerBound(bucket) <= value);
+            assertTrue(Histogram.upperBound(bucket) >= value);
+        }
+        for (int i = 0; i < Histogram.BUCKETS - 1; i++) {
+            assertEquals(Histogram.upperBound(i) + 1, Histogram.lowerBound(i + 1));
+        }
+    }
+
+    public void testPercentiles() {
+        Histogram.Recorder recorder = new Histogram.Recorder();
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record(i * 1000);
+        }
+        Histogram histogram = Histogram.merge(java.util.Collections.singletonList(recorder));
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500.0, histogram.getMean());
+        assertEquals(1000000, histogram.getMax());
+        long p50 = histogram.getPercentile(50);
+        assertTrue("p50 was " + p50, p50 >= 500000 && p50 <= 500000 * 1.25);
+        assertEquals(1000000, histogram.getPercentile(100));
+    }
+
+    public void testMetricsDisabled() throws Exception {
+        system = new ActorSystem();
+        sReceived = new CountDownLatch(1);
+        system.getOrCreateActor("/counter", CountingActor.class).tell("hello");
+        assertTrue(sReceived.await(1, TimeUnit.SECONDS));
+
+        MetricsSnapshot snapshot = system.metrics();
+        assertTrue(snapshot.getMailboxDepths().containsKey("/counter"));
+        assertEquals(ActorSystem.DEFAULT_THREADS, snapshot.getQueueDepths().length);
+        assertEquals(0, snapshot.getServiceTime().getCount());
+        assertTrue(snapshot.getWorkers().isEmpty());
+    }
+
+    public void testRecordsMessages() throws Exception {
+        system = new ActorSystem.Builder().threads(2).metrics(true).build();
+        int count = 1000;
+        sReceived = new CountDownLatch(count);
+        ActorRef counter = system.getOrCreateActor("/counter", CountingActor.class);
+        for (int i = 0; i < count; i++) {
+            counter.tell(i);
+        }
+        assertTrue(sReceived.await(1, TimeUnit.SECONDS));
+        // The last message is recorded just after it's received
+        Thread.sleep(50);
+
+        MetricsSnapshot snapshot = system.metrics();
+        // Every message plus preStart
+        assertEquals(count + 1, snapshot.getServiceTime().getCount());
+        // Wait times are sampled, but preStart is always timed
+        long sampled = snapshot.getWaitTime().getCount();
+        assertTrue("sampled " + sampled, sampled > 1 && sampled < count / 2);
+        assertEquals(2, snapshot.getWorkers().size());
+        long processed = 0;
+        for (MetricsSnapshot.Worker worker : snapshot.getWorkers()) {
+            processed += worker.getProcessedCount();
+            assertTrue(worker.getBusyRatio() >= 0 && worker.getBusyRatio() <= 1);
+        }
+        assertEquals(count + 1, processed);
+        assertTrue(snapshot.getMessagesPerSecond() > 0);
+    }
+
+    public void testMailboxDepth() throws Exception {
+        system = new ActorSystem.Builder().threads(1).metrics(true).build();
+        sReceived = new CountDownLatch(1);
+        sRelease = new CountDownLatch(1);
+        ActorRef blocker = system.getOrCreateActor("/blocker", BlockingActor.class);
+        for (int i = 0; i < 10; i++) {
+            blocker.tell(i);
+        }
+        assertTrue(sReceived.await(1, TimeUnit.SECONDS));
+
+        MetricsSnapshot snapshot = system.metrics();
+        // The message being processed still counts for the actor, but has left the queue
+        assertEquals(10, snapshot.getMailboxDepth("/blocker"));
+        assertEquals(9, snapshot.getQueueDepths()[0]);
+        sRelease.countDown();
+    }
+
+    public void testWorkStealingDispatcher() throws Exception {
+        system = new ActorSystem.Builder()
+                .dispatcher(new WorkStealingDispatcher(2, 5, new BackoffIdleStrategy()))
+                .metrics(true)
+                .build();
+        int count = 100;
+        sReceived = new CountDownLatch(count);
+        ActorRef counter = system.getOrCreateActor("/counter", CountingActor.class);
+        for (int i = 0; i < count; i++) {
+            counter.tell(i);
+        }
+        assertTrue(sReceived.await(1, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        MetricsSnapshot snapshot = system.metrics();
+        assertEquals(count + 1, snapshot.getServiceTime().getCount());
+        assertEquals(2, snapshot.getQueueDepths().length);
+    }
+
+    public void testReporter() throws Exception {
+        final CountDownLatch reported = new CountDownLatch(2);
+        final AtomicReference<MetricsSnapshot> last = new AtomicReference<>();
+        system = new ActorSystem.Builder()
+                .metricsReporter(new MetricsReporter() {
+                    @Override
+                    public void report(MetricsSnapshot snapshot) {
+                        last.set(snapshot);
+                        reported.countDown();
+                    }
+                }, 20, TimeUnit.MILLISECONDS)
+                .build();
+        system.getOrCreateActor("/counter", CountingActor.class);
+        assertTrue(reported.await(1, TimeUnit.SECONDS));
+        assertTrue(last.get().getMailboxDepths().containsKey("/counter"));
+    }
+
+    public static class CountingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            sReceived.countDown();
+        }
+    }
+
+    public static class BlockingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            sReceived.countDown();
+            try {
+                sRelease.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
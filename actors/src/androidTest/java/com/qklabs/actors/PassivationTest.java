@@ -0,0 +1,169 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PassivationTest extends TestCase {
+
+    private static AtomicInteger instances;
+    private static AtomicInteger received;
+    private static BlockingQueue<String> stopped;
+    private static CountDownLatch release;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        instances = new AtomicInteger();
+        received = new AtomicInteger();
+        stopped = new LinkedBlockingQueue<>();
+        release = new CountDownLatch(0);
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+        if (system != null) {
+            system.shutdown();
+        }
+    }
+
+    public void testIdleActorIsPassivatedAndRecreated() throws Exception {
+        system = new ActorSystem.Builder()
+                .passivate("/sessions/*", Passivation.afterIdle(50, TimeUnit.MILLISECONDS))
+                .build();
+        ActorRef ref = system.getOrCreateActor("/sessions/1", SessionActor.class);
+        ActorRef other = system.getOrCreateActor("/other", SessionActor.class);
+        ref.tell("hello");
+        other.tell("hello");
+
+        assertEquals("/sessions/1", stopped.poll(1, TimeUnit.SECONDS));
+        assertFalse(system.metrics().getMailboxDepths().containsKey("/sessions/1"));
+
+        assertTrue("the old ref should reach a new instance", ref.tell("again"));
+        awaitReceived(3);
+        // Two of /sessions/1 and one of /other
+        assertEquals(3, instances.get());
+        assertNotSame(ref, system.getOrCreateActor("/sessions/1", SessionActor.class));
+        assertEquals("only the new instance should be passivated, not /other", "/sessions/1",
+                stopped.poll(1, TimeUnit.SECONDS));
+        assertNull(stopped.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    public void testMaxActorsEvictsLeastRecentlyUsed() throws Exception {
+        system = new ActorSystem.Builder()
+                .passivate("/sessions/*", Passivation.of(2, 1, TimeUnit.SECONDS))
+                .build();
+        ActorRef first = system.getOrCreateActor("/sessions/1", SessionActor.class);
+        ActorRef second = system.getOrCreateActor("/sessions/2", SessionActor.class);
+        first.tell("hello");
+        second.tell("hello");
+        awaitReceived(2);
+        // Wait for a sweep, so the next use is on a later tick
+        Thread.sleep(400);
+        first.tell("hello");
+        awaitReceived(3);
+
+        system.getOrCreateActor("/sessions/3", SessionActor.class).tell("hello");
+        assertEquals("/sessions/2", stopped.poll(1, TimeUnit.SECONDS));
+        assertNull(stopped.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    public void testBusyActorIsNotPassivated() throws Exception {
+        system = new ActorSystem.Builder()
+                .passivate("/sessions/*", Passivation.afterIdle(20, TimeUnit.MILLISECONDS))
+                .build();
+        release = new CountDownLatch(1);
+        ActorRef ref = system.getOrCreateActor("/sessions/1", SessionActor.class);
+        ref.tell("block");
+
+        assertNull(stopped.poll(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals("/sessions/1", stopped.poll(1, TimeUnit.SECONDS));
+        assertEquals(1, instances.get());
+    }
+
+    public void testNoMessagesLostWhilePassivating() throws Exception {
+        system = new ActorSystem.Builder()
+                .passivate("/sessions/*", Passivation.afterIdle(10, TimeUnit.MILLISECONDS))
+                .build();
+        ActorRef ref = system.getOrCreateActor("/sessions/1", SessionActor.class);
+        int count = 0;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(ref.tell(i));
+                count++;
+            }
+            Thread.sleep(round % 5);
+        }
+
+        awaitReceived(count);
+        assertTrue("the actor should have been passivated along the way", instances.get() > 1);
+    }
+
+    public void testStoppedActorIsNotRecreated() throws Exception {
+        system = new ActorSystem.Builder()
+                .passivate("/sessions/*", Passivation.afterIdle(20, TimeUnit.MILLISECONDS))
+                .build();
+        ActorRef ref = system.getOrCreateActor("/sessions/1", SessionActor.class);
+        system.stop(ref);
+
+        assertEquals("/sessions/1", stopped.poll(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(ref.tell("hello"));
+        assertEquals(1, instances.get());
+        assertNull(stopped.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    public void testInvalidPassivation() {
+        try {
+            Passivation.of(0, 0, TimeUnit.SECONDS);
+            fail("should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            Passivation.maxActors(-1);
+            fail("should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static void awaitReceived(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (received.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, received.get());
+    }
+
+    public static class SessionActor extends Actor {
+        @Override
+        public void preStart() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if ("block".equals(message)) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void postStop() {
+            stopped.add(getPath());
+        }
+    }
+}
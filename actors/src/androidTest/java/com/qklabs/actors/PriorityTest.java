@@ -0,0 +1,132 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PriorityTest extends TestCase {
+
+    private static CountDownLatch started;
+    private static CountDownLatch release;
+    private static CountDownLatch stopped;
+    private static List<Object> messages;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        stopped = new CountDownLatch(1);
+        messages = Collections.synchronizedList(new ArrayList<>());
+        system = new ActorSystem();
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+        system.shutdown();
+    }
+
+    public void testStopSkipsBacklog() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/blocking", BlockingActor.class);
+        actor.tell("block");
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 100000; i++) {
+            actor.tell(i);
+        }
+
+        system.stop(actor);
+        release.countDown();
+        assertTrue("postStop should not wait for queued messages",
+                stopped.await(1, TimeUnit.SECONDS));
+        assertTrue("queued messages should be dropped", messages.size() < 100000);
+    }
+
+    public void testUrgentMessagesJumpTheQueue() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/priority", PriorityActor.class);
+        actor.tell("block");
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        actor.tell("a");
+        actor.tell("b");
+        actor.tell(new Urgent(1));
+        actor.tell("c");
+        actor.tell(new Urgent(2));
+
+        release.countDown();
+        // Urgent messages are received first, so wait for the last ordinary one
+        actor.ask("done", 1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        List<Object> expected = new ArrayList<>();
+        expected.add("block");
+        expected.add(new Urgent(1));
+        expected.add(new Urgent(2));
+        expected.add("a");
+        expected.add("b");
+        expected.add("c");
+        expected.add("done");
+        assertEquals(expected, messages);
+    }
+
+    public void testByClass() {
+        Comparator<Object> priority = MessagePriority.byClass(Urgent.class, String.class);
+        assertTrue(priority.compare(new Urgent(1), "a") < 0);
+        assertTrue(priority.compare("a", 1) < 0);
+        assertEquals(0, priority.compare(1, 2));
+    }
+
+    public static class BlockingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            messages.add(message);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void postStop() {
+            stopped.countDown();
+        }
+    }
+
+    public static class PriorityActor extends BlockingActor {
+        @Override
+        public Comparator<Object> getMessagePriority() {
+            return MessagePriority.byClass(Urgent.class);
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            super.onReceive(message, sender);
+            if ("done".equals(message)) {
+                sender.tell(message, self());
+            }
+        }
+    }
+
+    public static class Urgent {
+        final int id;
+
+        Urgent(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Urgent && ((Urgent) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class RemoteTransportTest extends TestCase {
+
+    private static BlockingQueue<Object> received;
+
+    private ActorSystem worker1;
+    private ActorSystem worker2;
+
+    @Override
+    public void setUp() throws Exception {
+        received = new LinkedBlockingQueue<>();
+        ActorRegistry.clear();
+        ActorRegistry.register("/jobs/#", JobActor.class);
+
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        worker2 = new ActorSystem.Builder()
+                .authority("worker-2")
+                .listen(new InetSocketAddress(loopback, 0))
+                .acceptPeer("worker-1")
+                .acceptPeer("worker-3")
+                // So a blocked actor doesn't hold up the others
+                .dispatcher("blocking", new WorkStealingDispatcher(1, 1,
+                        new BlockingIdleStrategy(),
+                        new ActorThreadFactory("blocking", Thread.NORM_PRIORITY, true)))
+                .route("/blocked", "blocking")
+                .build();
+        worker1 = new ActorSystem.Builder()
+                .authority("worker-1")
+                .peer("worker-2", worker2.getListenAddress())
+                .build();
+    }
+
+    @Override
+    public void tearDown() {
+        worker1.shutdown();
+        worker2.shutdown();
+        ActorRegistry.clear();
+    }
+
+    public void testTellCrossesSystems() throws Exception {
+        ActorRef job = worker1.getOrCreateActor("actor://worker-2/jobs/7");
+        assertEquals("actor://worker-2/jobs/7", job.getPath());
+        assertTrue(job.tell("hello"));
+
+        assertEquals("/jobs/7 hello", received.poll(2, TimeUnit.SECONDS));
+    }
+
+    public void testAskRepliesOverTheSameConnection() throws Exception {
+        // worker-2 has no peers, so the reply can only go back over worker-1's connection
+        ActorRef job = worker1.getOrCreateActor("actor://worker-2/jobs/7");
+        Object reply = job.ask("ping", 2, TimeUnit.SECONDS).get(2, TimeUnit.SECONDS);
+        assertEquals("pong from /jobs/7", reply);
+    }
+
+    public void testMessagesArriveInOrder() throws Exception {
+        ActorRef job = worker1.getOrCreateActor("actor://worker-2/jobs/1");
+        List<Integer> sent = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            sent.add(i);
+        }
+        job.tellAll(sent);
+
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals("/jobs/1 " + i, received.poll(2, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testOwnAuthorityIsLocal() throws Exception {
+        ActorRef job = worker2.getOrCreateActor("actor://worker-2/jobs/3");
+        assertEquals("/jobs/3", job.getPath());
+    }
+
+    public void testUnknownPeer() {
+        try {
+            worker1.getOrCreateActor("actor://worker-3/jobs/7");
+            fail("should have thrown ActorNotFoundException");
+        } catch (ActorNotFoundException e) {
+            // Expected
+        }
+    }
+
+    public void testUnknownPeerIsRefused() throws Exception {
+        ActorSystem worker4 = new ActorSystem.Builder()
+                .authority("worker-4")
+                .peer("worker-2", worker2.getListenAddress())
+                .build();
+        try {
+            assertTrue(worker4.getOrCreateActor("actor://worker-2/jobs/7").tell("hello"));
+            assertNull("worker-2 shouldn't accept worker-4",
+                    received.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            worker4.shutdown();
+        }
+    }
+
+    public void testFullBlockingMailboxDoesNotStallOtherPeers() throws Exception {
+        BlockedActor.release = new CountDownLatch(1);
+        ActorRegistry.register("/blocked", BlockedActor.class);
+        ActorSystem worker3 = new ActorSystem.Builder()
+                .authority("worker-3")
+                .peer("worker-2", worker2.getListenAddress())
+                .build();
+        try {
+            // One being processed, one filling the mailbox, and one that would wait for room
+            ActorRef blocked = worker1.getOrCreateActor("actor://worker-2/blocked");
+            for (int i = 0; i < 3; i++) {
+                blocked.tell(i);
+            }
+            worker3.getOrCreateActor("actor://worker-2/jobs/7").tell("hello");
+            assertEquals("/jobs/7 hello", received.poll(1, TimeUnit.SECONDS));
+        } finally {
+            BlockedActor.release.countDown();
+            worker3.shutdown();
+        }
+    }
+
+    public void testOnlyTheAskedPeerCanReply() throws Exception {
+        ActorRegistry.register("/silent", Actor.class);
+        // Connect worker-1, so worker-2 can ask it something
+        worker1.getOrCreateActor("actor://worker-2/jobs/7").tell("hello");
+        assertEquals("/jobs/7 hello", received.poll(2, TimeUnit.SECONDS));
+        ActorFuture<Object> future = worker2.getOrCreateActor("actor://worker-1/silent")
+                .ask("anyone?", 2, TimeUnit.SECONDS);
+
+        ActorSystem worker3 = new ActorSystem.Builder()
+                .authority("worker-3")
+                .peer("worker-2", worker2.getListenAddress())
+                .build();
+        try {
+            // The first ask of a system is always the first responder
+            worker3.getOrCreateActor("actor://worker-2/tmp/ask-1").tell("forged");
+            Thread.sleep(200);
+            assertFalse("worker-3 shouldn't complete an ask sent to worker-1", future.isDone());
+        } finally {
+            worker3.shutdown();
+        }
+    }
+
+    public void testLargeFrameBeforeHelloIsRefused() throws Exception {
+        Socket socket = new Socket();
+        try {
+            socket.connect(worker2.getListenAddress(), 1000);
+            socket.setSoTimeout(1000);
+            new DataOutputStream(socket.getOutputStream()).writeInt(1024 * 1024);
+            assertEquals("worker-2 should close the connection", -1,
+                    socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testAuthorityRequired() {
+        try {
+            new ActorSystem.Builder().peer("worker-2", worker2.getListenAddress()).build();
+            fail("should have thrown IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    public void testCodecRoundTrip() throws Exception {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        Object[] messages = {null, "hello", new String(chars), 42, 42L, 4.2, true,
+                new ArrayList<>(Arrays.asList("a", "b"))};
+        BinaryMessageCodec codec = new BinaryMessageCodec(ArrayList.class);
+        for (Object message : messages) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            codec.encode(message, new DataOutputStream(bytes));
+            Object decoded = codec.decode(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+            assertEquals(message, decoded);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.encode(new byte[] {1, 2, 3}, new DataOutputStream(bytes));
+        byte[] decoded = (byte[]) codec.decode(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, decoded));
+    }
+
+    public void testCodecOnlyReadsListedClasses() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryMessageCodec(ArrayList.class, Date.class).encode(
+                new ArrayList<>(Arrays.asList(new Date(0))), new DataOutputStream(bytes));
+
+        try {
+            new BinaryMessageCodec(ArrayList.class).decode(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+            fail("should have refused to read a Date");
+        } catch (InvalidClassException e) {
+            // Expected
+        }
+        try {
+            new BinaryMessageCodec().encode(new Date(0), new DataOutputStream(bytes));
+            fail("should have refused to write a Date");
+        } catch (NotSerializableException e) {
+            // Expected
+        }
+    }
+
+    public static class BlockedActor extends Actor {
+        static CountDownLatch release;
+
+        @Override
+        public Backpressure getBackpressure() {
+            return Backpressure.block(1, 5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class JobActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if ("ping".equals(message)) {
+                sender.tell("pong from " + getPath(), self());
+            } else {
+                received.add(getPath() + " " + message);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RouterTest extends TestCase {
+
+    private static CountDownLatch received;
+    private static ConcurrentHashMap<Object, Set<String>> receivers;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        receivers = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void tearDown() {
+        if (system != null) {
+            system.shutdown();
+        }
+    }
+
+    public void testRoundRobin() throws Exception {
+        Router router = createRouter(new Pool(4, new RoundRobinRoutingLogic()));
+        received = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            router.tell(i);
+        }
+
+        assertTrue(received.await(1, TimeUnit.SECONDS));
+        Set<String> paths = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            paths.addAll(receivers.get(i));
+        }
+        assertEquals("every routee should get messages", 4, paths.size());
+        assertEquals(receivers.get(0), receivers.get(4));
+    }
+
+    public void testBroadcast() throws Exception {
+        Router router = createRouter(new Pool(4, new BroadcastRoutingLogic()));
+        received = new CountDownLatch(4);
+        router.tell("hello");
+
+        assertTrue(received.await(1, TimeUnit.SECONDS));
+        assertEquals(4, receivers.get("hello").size());
+    }
+
+    public void testConsistentHash() throws Exception {
+        Router router = createRouter(new Pool(4, new ConsistentHashRoutingLogic(
+                new ConsistentHashRoutingLogic.KeyMapper() {
+                    @Override
+                    public Object getHashKey(Object message) {
+                        return ((String) message).substring(0, 1);
+                    }
+                })));
+        received = new CountDownLatch(20);
+        for (int i = 0; i < 10; i++) {
+            router.tell("a" + i);
+            router.tell("b" + i);
+        }
+
+        assertTrue(received.await(1, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            assertEquals("messages with the same key should go to the same routee",
+                    receivers.get("a0"), receivers.get("a" + i));
+        }
+    }
+
+    public void testJumpHashMovesFewKeys() {
+        int moved = 0;
+        for (int key = 0; key < 10000; key++) {
+            int before = ConsistentHashRoutingLogic.jumpHash(key, 10);
+            int after = ConsistentHashRoutingLogic.jumpHash(key, 11);
+            if (before != after) {
+                assertEquals("keys should only move to the new bucket", 10, after);
+                moved++;
+            }
+        }
+        assertTrue("about 1/11 of the keys should move", moved > 600 && moved < 1200);
+    }
+
+    public void testSmallestMailbox() {
+        final int[] pending = {3, 1, 0, 2};
+        int selected = new SmallestMailboxRoutingLogic().select(null, new RoutingLogic.Routees() {
+            @Override
+            public int count() {
+                return pending.length;
+            }
+
+            @Override
+            public int pendingCount(int index) {
+                return pending[index];
+            }
+        });
+        assertEquals(2, selected);
+    }
+
+    public void testGetOrCreateReturnsSameRouter() {
+        Router router = createRouter(new Pool(2, new RandomRoutingLogic()));
+        assertSame(router, system.getOrCreateActor("/pool", RecordingActor.class));
+        assertNotSame("paths that don't match the pool should be single actors", router,
+                system.getOrCreateActor("/single", RecordingActor.class));
+    }
+
+    public void testStopStopsRoutees() {
+        Router router = createRouter(new Pool(2, new RandomRoutingLogic()));
+        ActorRefImpl[] routees = router.getRoutees();
+        system.stop(router);
+
+        for (ActorRefImpl routee : routees) {
+            assertTrue(routee.getCell().isStopped());
+        }
+        assertFalse(router.tell("hello"));
+        assertNotSame("a stopped router should be replaced", router,
+                system.getOrCreateActor("/pool", RecordingActor.class));
+    }
+
+    public void testConcurrentStops() throws Exception {
+        final Router router = createRouter(new Pool(2, new RandomRoutingLogic()));
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        router.tell(new PoisonPill());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue("neither stop should wait for the other forever",
+                done.await(1, TimeUnit.SECONDS));
+    }
+
+    public void testStoppedRouteesAreReplaced() throws Exception {
+        system = new ActorSystem.Builder()
+                .pool("/pool", new Pool(3, new SmallestMailboxRoutingLogic()))
+                .supervisorStrategy(SupervisorStrategy.stop())
+                .build();
+        Router router = (Router) system.getOrCreateActor("/pool", RecordingActor.class);
+        ActorRefImpl failing = router.getRoutees()[0];
+        received = new CountDownLatch(100);
+        failing.tell("fail");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (router.getRoutees()[0] == failing && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertTrue(failing.getCell().isStopped());
+        assertEquals(3, router.getRoutees().length);
+        for (ActorRefImpl routee : router.getRoutees()) {
+            assertFalse("the stopped routee should be replaced", routee.getCell().isStopped());
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(router.tell(i));
+        }
+        assertTrue(received.await(1, TimeUnit.SECONDS));
+    }
+
+    public void testResize() throws Exception {
+        SlowActor.release = new CountDownLatch(1);
+        system = new ActorSystem.Builder()
+                .pool("/slow", new Pool(1, 4, new RoundRobinRoutingLogic()))
+                .build();
+        Router router = (Router) system.getOrCreateActor("/slow", SlowActor.class);
+        for (int i = 0; i < Pool.RESIZE_INTERVAL * 4; i++) {
+            router.tell(i);
+        }
+        assertEquals("pool should grow while routees are backed up", 4,
+                router.getRoutees().length);
+
+        SlowActor.release.countDown();
+        for (ActorRefImpl routee : router.getRoutees()) {
+            routee.ask("done", 1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < Pool.RESIZE_INTERVAL * 4; i++) {
+            router.resize();
+        }
+        assertEquals("pool should shrink back when routees are idle", 1,
+                router.getRoutees().length);
+    }
+
+    private Router createRouter(Pool pool) {
+        system = new ActorSystem.Builder()
+                .pool("/pool", pool)
+                .build();
+        return (Router) system.getOrCreateActor("/pool", RecordingActor.class);
+    }
+
+    public static class RecordingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if ("fail".equals(message)) {
+                throw new IllegalStateException("Failing on purpose");
+            }
+            receivers.putIfAbsent(message, Collections.synchronizedSet(new HashSet<String>()));
+            receivers.get(message).add(getPath());
+            received.countDown();
+        }
+    }
+
+    public static class SlowActor extends Actor {
+        static CountDownLatch release;
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if ("done".equals(message)) {
+                sender.tell(message, self());
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SchedulerTest extends TestCase {
+
+    private static CountDownLatch received;
+    private static AtomicInteger count;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        system = new ActorSystem();
+        count = new AtomicInteger();
+    }
+
+    @Override
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    public void testScheduleOnce() throws Exception {
+        received = new CountDownLatch(1);
+        ActorRef actor = system.getOrCreateActor("/counting", CountingActor.class);
+        long start = System.nanoTime();
+        system.scheduler().scheduleOnce(50, TimeUnit.MILLISECONDS, actor, "tick");
+
+        assertTrue("message should be sent", received.await(1, TimeUnit.SECONDS));
+        assertTrue("message should not be sent early",
+                System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Thread.sleep(50);
+        assertEquals(1, count.get());
+    }
+
+    public void testCancel() throws Exception {
+        received = new CountDownLatch(1);
+        ActorRef actor = system.getOrCreateActor("/counting", CountingActor.class);
+        Cancellable cancellable = system.scheduler().scheduleOnce(50, TimeUnit.MILLISECONDS, actor,
+                "tick");
+        assertTrue(cancellable.cancel());
+        assertTrue(cancellable.isCancelled());
+
+        assertFalse("cancelled message should not be sent",
+                received.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, system.getTimer().pendingCount());
+    }
+
+    public void testScheduleAtFixedRate() throws Exception {
+        received = new CountDownLatch(5);
+        ActorRef actor = system.getOrCreateActor("/counting", CountingActor.class);
+        Cancellable cancellable = system.scheduler().scheduleAtFixedRate(0, 20,
+                TimeUnit.MILLISECONDS, actor, "tick");
+
+        assertTrue("message should be sent repeatedly", received.await(1, TimeUnit.SECONDS));
+        assertTrue(cancellable.cancel());
+        int sent = count.get();
+        Thread.sleep(100);
+        assertTrue("no messages should be sent after cancelling", count.get() <= sent + 1);
+    }
+
+    public void testFixedRateStopsWithActor() throws Exception {
+        received = new CountDownLatch(1);
+        ActorRef actor = system.getOrCreateActor("/counting", CountingActor.class);
+        Cancellable cancellable = system.scheduler().scheduleAtFixedRate(0, 10,
+                TimeUnit.MILLISECONDS, actor, "tick");
+        assertTrue(received.await(1, TimeUnit.SECONDS));
+        system.stop(actor);
+
+        Thread.sleep(100);
+        assertTrue("messages to a stopped actor should be cancelled", cancellable.isCancelled());
+    }
+
+    public void testManyTimers() throws Exception {
+        int timers = 100000;
+        received = new CountDownLatch(timers);
+        ActorRef actor = system.getOrCreateActor("/counting", CountingActor.class);
+        Cancellable[] cancellables = new Cancellable[timers];
+        for (int i = 0; i < timers; i++) {
+            cancellables[i] = system.scheduler().scheduleOnce(500 + i % 100, TimeUnit.MILLISECONDS,
+                    actor, i);
+        }
+        // Cancel every other one
+        for (int i = 0; i < timers; i += 2) {
+            cancellables[i].cancel();
+        }
+
+        Thread.sleep(800);
+        assertEquals(timers / 2, count.get());
+        assertEquals(0, system.getTimer().pendingCount());
+    }
+
+    public static class CountingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            count.incrementAndGet();
+            received.countDown();
+        }
+    }
+}
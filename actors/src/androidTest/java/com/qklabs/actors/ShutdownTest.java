@@ -0,0 +1,119 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ShutdownTest extends TestCase {
+
+    private static AtomicInteger received;
+    private static AtomicInteger postStopped;
+    private static CountDownLatch release;
+    private static ActorRef counter;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        received = new AtomicInteger();
+        postStopped = new AtomicInteger();
+        release = new CountDownLatch(0);
+        system = new ActorSystem();
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+    }
+
+    public void testDrainsMailboxesAndCallsPostStop() {
+        for (int i = 0; i < 4; i++) {
+            ActorRef actor = system.getOrCreateActor("/counter/" + i, CountingActor.class);
+            for (int j = 0; j < 1000; j++) {
+                actor.tell(j);
+            }
+        }
+
+        ShutdownReport report = system.shutdown(5, TimeUnit.SECONDS);
+        assertTrue(report.toString(), report.isComplete());
+        assertEquals(4000, received.get());
+        assertEquals(4, postStopped.get());
+    }
+
+    public void testActorsCanMessageEachOtherWhileDraining() {
+        ActorRef forwarder = system.getOrCreateActor("/forwarder", ForwardingActor.class);
+        counter = system.getOrCreateActor("/counter", CountingActor.class);
+        for (int i = 0; i < 100; i++) {
+            forwarder.tell(i);
+        }
+
+        ShutdownReport report = system.shutdown(5, TimeUnit.SECONDS);
+        assertTrue(report.toString(), report.isComplete());
+        assertEquals(100, received.get());
+        assertEquals(2, postStopped.get());
+    }
+
+    public void testReportsWhatWasLeftAtTheDeadline() {
+        release = new CountDownLatch(1);
+        ActorRef actor = system.getOrCreateActor("/blocked", CountingActor.class);
+        actor.tell("block");
+        for (int i = 0; i < 10; i++) {
+            actor.tell(i);
+        }
+
+        long start = System.nanoTime();
+        ShutdownReport report = system.shutdown(100, TimeUnit.MILLISECONDS);
+        assertTrue("should give up at the deadline",
+                System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertFalse(report.isComplete());
+        assertEquals(1, report.getRemainingActorCount());
+        assertTrue(report.toString(), report.getRemainingMessageCount() >= 10);
+    }
+
+    public void testNoNewActorsAfterShutdown() {
+        system.shutdown(1, TimeUnit.SECONDS);
+        try {
+            system.getOrCreateActor("/late", CountingActor.class);
+            fail("should have thrown IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    public static class CountingActor extends Actor {
+        // An actor left blocked by an earlier test mustn't count towards the next one
+        private final AtomicInteger mReceived = received;
+        private final AtomicInteger mPostStopped = postStopped;
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if ("block".equals(message)) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            mReceived.incrementAndGet();
+        }
+
+        @Override
+        public void postStop() {
+            mPostStopped.incrementAndGet();
+        }
+    }
+
+    public static class ForwardingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            counter.tell(message);
+        }
+
+        @Override
+        public void postStop() {
+            postStopped.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SupervisionTest extends TestCase {
+
+    private static SupervisorStrategy strategy;
+    private static AtomicInteger instances;
+    private static AtomicInteger preStarts;
+    private static AtomicInteger postStops;
+    private static BlockingQueue<Object> results;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        strategy = null;
+        instances = new AtomicInteger();
+        preStarts = new AtomicInteger();
+        postStops = new AtomicInteger();
+        results = new LinkedBlockingQueue<>();
+        // One thread, so every actor shares the worker a failure could kill
+        system = new ActorSystem.Builder()
+                .threads(1)
+                .supervisorStrategy(SupervisorStrategy.stop())
+                .build();
+    }
+
+    @Override
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    public void testWorkerSurvivesFailures() throws Exception {
+        strategy = SupervisorStrategy.resume();
+        ActorRef failing = system.getOrCreateActor("/failing", CountingActor.class);
+        ActorRef other = system.getOrCreateActor("/other", CountingActor.class);
+        for (int i = 0; i < 10; i++) {
+            failing.tell("fail");
+        }
+        other.tell("count");
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+    }
+
+    public void testResumeKeepsState() throws Exception {
+        strategy = SupervisorStrategy.resume();
+        ActorRef actor = system.getOrCreateActor("/resumed", CountingActor.class);
+        actor.tell("count");
+        actor.tell("fail");
+        actor.tell("count");
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+        assertEquals(2, results.poll(1, TimeUnit.SECONDS));
+        assertEquals(1, instances.get());
+    }
+
+    public void testRestartCreatesFreshInstanceAndKeepsMailbox() throws Exception {
+        strategy = SupervisorStrategy.restart();
+        ActorRef actor = system.getOrCreateActor("/restarted", CountingActor.class);
+        actor.tell("count");
+        actor.tell("fail");
+        actor.tell("count");
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+        assertEquals(2, instances.get());
+        assertEquals(2, preStarts.get());
+        assertEquals(1, postStops.get());
+        assertSame(actor, system.getOrCreateActor("/restarted", CountingActor.class));
+    }
+
+    public void testStopStopsActor() throws Exception {
+        strategy = SupervisorStrategy.stop();
+        ActorRef actor = system.getOrCreateActor("/stopped", CountingActor.class);
+        actor.tell("fail");
+        actor.tell("count");
+        ActorRef other = system.getOrCreateActor("/other", CountingActor.class);
+        other.tell("count");
+        // The stopped actor never counts, so the first result is the other actor's
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+        assertNull(results.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, postStops.get());
+    }
+
+    public void testRestartLimitStopsActor() throws Exception {
+        strategy = SupervisorStrategy.restart().withRestartLimit(3, 1, TimeUnit.MINUTES);
+        ActorRef actor = system.getOrCreateActor("/limited", CountingActor.class);
+        for (int i = 0; i < 5; i++) {
+            actor.tell("fail");
+        }
+        actor.tell("count");
+        assertNull(results.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(4, instances.get());
+        assertEquals(4, postStops.get());
+    }
+
+    public void testBackoffDelaysRestartInOrder() throws Exception {
+        strategy = SupervisorStrategy.restart()
+                .withBackoff(200, 1000, TimeUnit.MILLISECONDS);
+        ActorRef actor = system.getOrCreateActor("/backoff", CountingActor.class);
+        ActorRef other = system.getOrCreateActor("/other", CountingActor.class);
+        // The first restart is immediate, the second waits out the backoff
+        actor.tell("fail");
+        actor.tell("fail");
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            actor.tell("count");
+        }
+        // The worker isn't blocked in the meantime
+        other.tell("count");
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+        assertTrue("should not wait for the backoff",
+                System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(150));
+
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(i, results.poll(2, TimeUnit.SECONDS));
+        }
+        assertTrue("should wait for the backoff",
+                System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+        // Two restarts, plus the other actor
+        assertEquals(4, instances.get());
+    }
+
+    public void testEscalateUsesSystemStrategy() throws Exception {
+        strategy = SupervisorStrategy.escalate();
+        ActorRef actor = system.getOrCreateActor("/escalated", CountingActor.class);
+        actor.tell("fail");
+        actor.tell("count");
+        assertNull(results.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, postStops.get());
+    }
+
+    public void testDeciderSeesError() throws Exception {
+        strategy = SupervisorStrategy.of(new SupervisorStrategy.Decider() {
+            @Override
+            public SupervisorStrategy.Directive decide(Throwable error) {
+                return error instanceof IllegalStateException
+                        ? SupervisorStrategy.Directive.RESUME
+                        : SupervisorStrategy.Directive.RESTART;
+            }
+        });
+        ActorRef actor = system.getOrCreateActor("/decided", CountingActor.class);
+        actor.tell("count");
+        actor.tell("fail");
+        actor.tell("count");
+        actor.tell("failHard");
+        actor.tell("count");
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+        assertEquals(2, results.poll(1, TimeUnit.SECONDS));
+        assertEquals(1, results.poll(1, TimeUnit.SECONDS));
+    }
+
+    public void testBackoffGrowsToMax() {
+        SupervisorStrategy backoff = SupervisorStrategy.restart()
+                .withBackoff(100, 1000, TimeUnit.MILLISECONDS);
+        assertEquals(0, backoff.backoffNanos(1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), backoff.backoffNanos(2));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(400), backoff.backoffNanos(4));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), backoff.backoffNanos(6));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), backoff.backoffNanos(100));
+    }
+
+    public static class CountingActor extends Actor {
+        private int mCount = 0;
+
+        public CountingActor() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        public SupervisorStrategy getSupervisorStrategy() {
+            return strategy;
+        }
+
+        @Override
+        public void preStart() {
+            preStarts.incrementAndGet();
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if ("fail".equals(message)) {
+                throw new IllegalStateException("Failing on purpose");
+            } else if ("failHard".equals(message)) {
+                throw new RuntimeException("Failing on purpose");
+            }
+            results.add(++mCount);
+        }
+
+        @Override
+        public void postStop() {
+            postStops.incrementAndGet();
+        }
+    }
+}
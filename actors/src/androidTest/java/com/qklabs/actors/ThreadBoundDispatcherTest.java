@@ -0,0 +1,147 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ThreadBoundDispatcherTest extends TestCase {
+    private static CountDownLatch started;
+    private static CountDownLatch received;
+    private static CountDownLatch release;
+
+    @Override
+    public void setUp() {
+        started = new CountDownLatch(0);
+        received = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+    }
+
+    public void testLeastQueuedPicksShallowestQueue() {
+        FakeQueues queues = new FakeQueues(new int[] {5, 2, 7}, new int[] {1, 1, 1});
+        assertEquals(1, new LeastQueuedPlacementPolicy().place("/a", queues));
+    }
+
+    public void testLeastQueuedBreaksTiesByActorCount() {
+        FakeQueues queues = new FakeQueues(new int[] {0, 0, 0}, new int[] {3, 1, 2});
+        assertEquals(1, new LeastQueuedPlacementPolicy().place("/a", queues));
+    }
+
+    public void testPowerOfTwoChoicesPicksShallowerQueue() {
+        FakeQueues queues = new FakeQueues(new int[] {100, 0}, new int[] {0, 0});
+        PlacementPolicy policy = new PowerOfTwoChoicesPlacementPolicy();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1, policy.place("/a", queues));
+        }
+    }
+
+    public void testPathHashIsStable() {
+        FakeQueues queues = new FakeQueues(new int[8], new int[8]);
+        PlacementPolicy policy = new PathHashPlacementPolicy();
+        int index = policy.place("/user/abc123", queues);
+        assertTrue(index >= 0 && index < 8);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(index, policy.place("/user/abc123", queues));
+        }
+    }
+
+    public void testRebalanceMovesIdleActorsOffBackedUpQueue() throws Exception {
+        ThreadBoundDispatcher dispatcher = new ThreadBoundDispatcher(2,
+                new BackoffIdleStrategy(), new FirstQueuePlacementPolicy(), 0);
+        ActorSystem system = new ActorSystem(dispatcher);
+        try {
+            started = new CountDownLatch(10);
+            ActorRef[] idle = new ActorRef[10];
+            for (int i = 0; i < idle.length; i++) {
+                idle[i] = system.getOrCreateActor("/idle/" + i, LatchActor.class);
+            }
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+
+            // Back up the only busy queue behind a blocked actor
+            ActorRef slow = system.getOrCreateActor("/slow", BlockingActor.class);
+            for (int i = 0; i < 100; i++) {
+                slow.tell(i);
+            }
+
+            assertEquals("idle actors should be moved", 10, dispatcher.rebalance());
+            idle[0].tell("hello");
+            assertTrue("moved actor should run while the old queue is blocked",
+                    received.await(1, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            system.shutdown();
+        }
+    }
+
+    public void testRebalanceLeavesBalancedQueuesAlone() throws Exception {
+        ThreadBoundDispatcher dispatcher = new ThreadBoundDispatcher(2,
+                new BackoffIdleStrategy(), new FirstQueuePlacementPolicy(), 0);
+        ActorSystem system = new ActorSystem(dispatcher);
+        try {
+            started = new CountDownLatch(1);
+            system.getOrCreateActor("/idle", LatchActor.class);
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            assertEquals(0, dispatcher.rebalance());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    private static class FakeQueues implements PlacementPolicy.Queues {
+        private final int[] mDepths;
+        private final int[] mActors;
+
+        FakeQueues(int[] depths, int[] actors) {
+            mDepths = depths;
+            mActors = actors;
+        }
+
+        @Override
+        public int count() {
+            return mDepths.length;
+        }
+
+        @Override
+        public int depth(int index) {
+            return mDepths[index];
+        }
+
+        @Override
+        public int actorCount(int index) {
+            return mActors[index];
+        }
+    }
+
+    private static class FirstQueuePlacementPolicy implements PlacementPolicy {
+        @Override
+        public int place(String path, Queues queues) {
+            return 0;
+        }
+    }
+
+    public static class LatchActor extends Actor {
+        @Override
+        public void preStart() {
+            started.countDown();
+        }
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            received.countDown();
+        }
+    }
+
+    public static class BlockingActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        }
+    }
+}
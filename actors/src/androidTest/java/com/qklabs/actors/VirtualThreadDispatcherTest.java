@@ -0,0 +1,132 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreadDispatcherTest extends TestCase {
+    private static final int MESSAGES = 10000;
+
+    private static CountDownLatch received;
+    private static CountDownLatch release;
+    private static AtomicBoolean failed;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        received = new CountDownLatch(MESSAGES);
+        release = new CountDownLatch(1);
+        failed = new AtomicBoolean(false);
+        // Platform threads behave the same, and work on runtimes without virtual threads
+        system = new ActorSystem(new VirtualThreadDispatcher(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "drain");
+            }
+        }, 3));
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+        if (system != null) {
+            system.shutdown();
+        }
+    }
+
+    public void testAvailability() {
+        if (VirtualThreadDispatcher.isAvailable()) {
+            new VirtualThreadDispatcher();
+        } else {
+            try {
+                new VirtualThreadDispatcher();
+                fail("should have thrown UnsupportedOperationException");
+            } catch (UnsupportedOperationException ignored) {}
+        }
+    }
+
+    public void testMessagesProcessedInOrderOneAtATime() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/ordered", OrderedActor.class);
+        for (int i = 0; i < MESSAGES; i++) {
+            actor.tell(i);
+        }
+        assertTrue("all messages should be received", received.await(5, TimeUnit.SECONDS));
+        assertFalse("messages should be processed in order, one at a time", failed.get());
+    }
+
+    public void testIdleMailboxesAreSmall() {
+        MessageQueue mailbox = (MessageQueue) new VirtualThreadDispatcher(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r);
+            }
+        }, 3).bind(null);
+        assertEquals(VirtualThreadDispatcher.MAILBOX_CAPACITY, mailbox.getCapacity());
+    }
+
+    public void testBlockedActorDoesNotBlockOthers() throws Exception {
+        system.getOrCreateActor("/blocked", BlockedActor.class).tell("block");
+        received = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            system.getOrCreateActor("/fast/" + i, FastActor.class).tell(i);
+        }
+        assertTrue("other actors should run while one is blocked",
+                received.await(2, TimeUnit.SECONDS));
+    }
+
+    public void testManyBlockedActors() throws Exception {
+        if (!VirtualThreadDispatcher.isAvailable()) {
+            return;
+        }
+        system.shutdown();
+        system = new ActorSystem.Builder()
+                .dispatcher("io", new VirtualThreadDispatcher())
+                .route(BlockedActor.class, "io")
+                .build();
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            system.getOrCreateActor("/blocked/" + i, BlockedActor.class).tell("block");
+        }
+        received = new CountDownLatch(1);
+        system.getOrCreateActor("/fast", FastActor.class).tell("hello");
+        assertTrue(received.await(2, TimeUnit.SECONDS));
+    }
+
+    public static class OrderedActor extends Actor {
+        private final AtomicInteger mActive = new AtomicInteger();
+        private int mNext = 0;
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if (mActive.incrementAndGet() != 1 || (Integer) message != mNext) {
+                failed.set(true);
+            }
+            mNext++;
+            mActive.decrementAndGet();
+            received.countDown();
+        }
+    }
+
+    public static class BlockedActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class FastActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            received.countDown();
+        }
+    }
+}
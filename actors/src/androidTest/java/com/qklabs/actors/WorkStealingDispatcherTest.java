@@ -0,0 +1,89 @@
+package com.qklabs.actors;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkStealingDispatcherTest extends TestCase {
+    private static final int MESSAGES = 10000;
+
+    private static CountDownLatch received;
+    private static CountDownLatch release;
+    private static AtomicBoolean failed;
+
+    private ActorSystem system;
+
+    @Override
+    public void setUp() {
+        received = new CountDownLatch(MESSAGES);
+        release = new CountDownLatch(1);
+        failed = new AtomicBoolean(false);
+        system = new ActorSystem(new WorkStealingDispatcher(2, 3, new BackoffIdleStrategy()));
+    }
+
+    @Override
+    public void tearDown() {
+        release.countDown();
+        system.shutdown();
+    }
+
+    public void testInvalidThroughput() {
+        try {
+            new WorkStealingDispatcher(2, 0, new BackoffIdleStrategy());
+            fail("should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    public void testMessagesProcessedInOrderOneAtATime() throws Exception {
+        ActorRef actor = system.getOrCreateActor("/ordered", OrderedActor.class);
+        for (int i = 0; i < MESSAGES; i++) {
+            actor.tell(i);
+        }
+        assertTrue("all messages should be received", received.await(5, TimeUnit.SECONDS));
+        assertFalse("messages should be processed in order, one at a time", failed.get());
+    }
+
+    public void testSlowActorDoesNotBlockOthers() throws Exception {
+        system.getOrCreateActor("/slow", SlowActor.class).tell("block");
+        received = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            system.getOrCreateActor("/fast/" + i, FastActor.class).tell(i);
+        }
+        assertTrue("other actors should run while one is blocked",
+                received.await(2, TimeUnit.SECONDS));
+    }
+
+    public static class OrderedActor extends Actor {
+        private final AtomicInteger mActive = new AtomicInteger();
+        private int mNext = 0;
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if (mActive.incrementAndGet() != 1 || !message.equals(mNext)) {
+                failed.set(true);
+            }
+            mNext++;
+            mActive.decrementAndGet();
+            received.countDown();
+        }
+    }
+
+    public static class SlowActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    public static class FastActor extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            received.countDown();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.qklabs.actors;
 
+import java.util.Comparator;
+import java.util.List;
+
 public class Actor {
     private ActorRef mSelf;
 
@@ -9,6 +12,74 @@ public class Actor {
     public void onReceive(Object message, ActorRef sender) {
     }
 
+    /**
+     * Receives several messages at once. Only called for actors whose {@link #getMaxBatchSize()}
+     * is more than 1, in which case it's called instead of {@link #onReceive(Object, ActorRef)}.
+     * Useful for actors that can amortize work across messages, such as writing to a database.
+     *
+     * Batches hold consecutive messages for this actor that are already queued, so they may be
+     * smaller than the maximum. The list and its envelopes are reused after this returns, so
+     * don't hold on to them.
+     *
+     * @param batch the messages, in the order they were sent
+     */
+    public void onReceiveBatch(List<Envelope> batch) {
+        for (Envelope envelope : batch) {
+            onReceive(envelope.getMessage(), envelope.getSender());
+        }
+    }
+
+    /**
+     * Returns the most messages to pass to {@link #onReceiveBatch(List)} at once. Defaults to 1,
+     * which means messages are passed to {@link #onReceive(Object, ActorRef)} one at a time.
+     * Called once, when the actor is created.
+     */
+    public int getMaxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Returns the limit on this actor's mailbox, or null to use the limit of the dispatcher it
+     * runs on. See {@link ActorSystem.Builder#backpressure(Backpressure)}. Called once, when the
+     * actor is created.
+     */
+    public Backpressure getBackpressure() {
+        return null;
+    }
+
+    /**
+     * Returns the order to receive waiting messages in, most urgent first, or null to receive them
+     * in the order they were sent. Messages that compare equal are received in the order they
+     * were sent. See {@link MessagePriority#byClass(Class[])}. Called once, when the actor is
+     * created.
+     *
+     * A priority mailbox costs a lock per message, so only use it when some messages really need
+     * to jump the queue. Its messages are received one at a time, even by batching actors.
+     */
+    public Comparator<Object> getMessagePriority() {
+        return null;
+    }
+
+    /**
+     * Returns true if a {@link Conflatable} message sent to this actor replaces any waiting
+     * message with the same key, so a burst of updates costs one message per key rather than one
+     * per update. Other messages are queued as usual. Called once, when the actor is created.
+     *
+     * A conflating mailbox can't also have a priority order, or drop its oldest messages.
+     */
+    public boolean isConflating() {
+        return false;
+    }
+
+    /**
+     * Returns what to do when this actor throws, or null to use the actor system's strategy. See
+     * {@link ActorSystem.Builder#supervisorStrategy(SupervisorStrategy)}. Called once, when the
+     * actor is created; a restarted actor keeps the strategy of its first instance.
+     */
+    public SupervisorStrategy getSupervisorStrategy() {
+        return null;
+    }
+
     public void postStop() {
     }
 
@@ -0,0 +1,667 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Per-actor state shared by the actor system and its dispatcher. Events are queued with the cell
+ * as their target rather than the actor itself.
+ *
+ * The cell counts the events that have been sent to its actor but not yet processed. While that
+ * count is zero, none of the actor's events are in its mailbox, so the actor can safely be moved
+ * to a different mailbox without breaking the order of its events. The same count is what a
+ * {@link Backpressure} limit is checked against.
+ *
+ * A cell that's passivated is closed for good: its count goes negative and stays there, so a
+ * sender can tell it must send to the actor's next incarnation instead.
+ */
+class ActorCell {
+    private static final int MIGRATING = Integer.MIN_VALUE;
+    // Far enough from MIGRATING that the final STOP event can't reach it when it's processed
+    private static final int PASSIVATED = Integer.MIN_VALUE / 2;
+
+    private static final int RUNNING = 0;
+    private static final int STATE_STOPPED = 1;
+    private static final int STATE_PASSIVATED = 2;
+
+    final String path;
+    // Only replaced by the thread processing the actor, when it's restarted. Other threads should
+    // use self() rather than the actor's, and may otherwise only rely on its class.
+    volatile Actor actor;
+    // Creates the actor's next instance when it's restarted. Null for the empty actor.
+    final ActorFactory<? extends Actor> factory;
+    final int maxBatchSize;
+    final Backpressure backpressure;
+
+    private final ActorSystem mSystem;
+    private final boolean mDropsOldest;
+    // Messages for an actor with a priority mailbox, guarded by itself. The mailbox only holds a
+    // turn for each one.
+    private final PriorityQueue<Envelope> mPriorityMessages;
+    private long mNextPrioritySequence;
+    // The latest waiting message for each key, for an actor with a conflating mailbox. Guarded
+    // by itself. The mailbox only holds a turn for each key.
+    private final Map<Object, Envelope> mConflated;
+    // Null if the actor uses the actor system's strategy
+    private final SupervisorStrategy mSupervisor;
+    // Restarts within the current restart window. Only touched by the thread processing the actor.
+    private int mRestarts;
+    private long mRestartWindowStart;
+    // Events that arrived while the actor was waiting to be restarted, or null if it isn't.
+    // Only touched by the thread processing the actor.
+    private List<Envelope> mStash;
+    private Dispatcher mDispatcher;
+    private volatile Mailbox mMailbox;
+    private final AtomicInteger mPending = new AtomicInteger();
+    private final AtomicInteger mState = new AtomicInteger(RUNNING);
+    // Set before the cell is published, so they need no synchronization
+    private Passivator mPassivator;
+    private ActorRefImpl mSelf;
+    // The router this actor is a routee of, or null
+    private Router mRouter;
+    // The passivator's tick when the actor was last sent something. Races between senders don't
+    // matter, since it's only used to pick which idle actors to evict.
+    private int mLastUsed;
+    // Number of the oldest queued messages to skip instead of delivering
+    private final AtomicInteger mDropped = new AtomicInteger();
+
+    // Reusable envelopes for onReceiveBatch. Only touched by the thread processing the actor.
+    private List<Envelope> mBatch;
+    private List<Envelope> mBatchView;
+    private Envelope[] mBatchEnvelopes;
+
+    ActorCell(String path, Actor actor) {
+        this(null, path, actor, null, Backpressure.UNBOUNDED);
+    }
+
+    /**
+     * @param system counts the messages this cell drops. May only be null if it's unbounded.
+     */
+    ActorCell(ActorSystem system, String path, Actor actor, ActorFactory<? extends Actor> factory,
+              Backpressure backpressure) {
+        this.path = path;
+        this.actor = actor;
+        this.factory = factory;
+        this.maxBatchSize = Math.max(1, actor.getMaxBatchSize());
+        this.backpressure = backpressure;
+        mSystem = system;
+        mDropsOldest = backpressure.policy == Backpressure.Policy.DROP_OLDEST;
+
+        final Comparator<Object> priority = actor.getMessagePriority();
+        if (priority == null) {
+            mPriorityMessages = null;
+        } else if (mDropsOldest) {
+            throw new IllegalArgumentException("Actor " + path + " has a priority mailbox, which "
+                    + "can't drop the oldest messages");
+        } else {
+            if (actor.isConflating()) {
+                throw new IllegalArgumentException("Actor " + path + " has a priority mailbox, "
+                        + "which can't also conflate messages");
+            }
+            mPriorityMessages = new PriorityQueue<>(16, new Comparator<Envelope>() {
+                @Override
+                public int compare(Envelope a, Envelope b) {
+                    int result = priority.compare(a.message, b.message);
+                    if (result != 0) {
+                        return result;
+                    }
+                    // Messages with the same priority are received in the order they were sent
+                    return a.sequence < b.sequence ? -1 : (a.sequence > b.sequence ? 1 : 0);
+                }
+            });
+        }
+
+        if (!actor.isConflating()) {
+            mConflated = null;
+        } else if (mDropsOldest) {
+            throw new IllegalArgumentException("Actor " + path + " has a conflating mailbox, "
+                    + "which can't drop the oldest messages");
+        } else {
+            mConflated = new HashMap<>();
+        }
+        mSupervisor = actor.getSupervisorStrategy();
+    }
+
+    /**
+     * Binds the actor to a mailbox on the given dispatcher.
+     */
+    void bind(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+        mMailbox = dispatcher.bind(this);
+    }
+
+    void unbind() {
+        mDispatcher.unbind(this);
+    }
+
+    void setMailbox(Mailbox mailbox) {
+        mMailbox = mailbox;
+    }
+
+    Mailbox getMailbox() {
+        return mMailbox;
+    }
+
+    void setPassivator(Passivator passivator) {
+        mPassivator = passivator;
+        mLastUsed = passivator.tick();
+    }
+
+    void setSelf(ActorRefImpl self) {
+        mSelf = self;
+    }
+
+    /**
+     * Returns the actor's ref, which stays the same when the actor is restarted.
+     */
+    ActorRefImpl self() {
+        return mSelf;
+    }
+
+    Passivator getPassivator() {
+        return mPassivator;
+    }
+
+    void setRouter(Router router) {
+        mRouter = router;
+    }
+
+    Router getRouter() {
+        return mRouter;
+    }
+
+    int getLastUsed() {
+        return mLastUsed;
+    }
+
+    /**
+     * @return true if the message was queued, false if the mailbox was full or the actor was
+     *         passivated
+     */
+    boolean sendMessage(Object message, ActorRef sender) {
+        if (mConflated != null && message instanceof Conflatable) {
+            return sendConflated(((Conflatable) message).getConflationKey(), message, sender);
+        }
+        Mailbox mailbox = backpressure.isBounded() ? acquireBounded() : acquire(1);
+        if (mailbox == null) {
+            return false;
+        }
+        if (mPassivator != null) {
+            mLastUsed = mPassivator.tick();
+        }
+        if (mPriorityMessages != null) {
+            Envelope envelope = new Envelope(Envelope.MESSAGE, this, message, sender);
+            synchronized (mPriorityMessages) {
+                envelope.sequence = mNextPrioritySequence++;
+                mPriorityMessages.add(envelope);
+            }
+            mailbox.sendPriorityTurn(this);
+        } else {
+            mailbox.sendMessage(this, message, sender);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the waiting message with the same key if there is one, or else queues a turn for
+     * the key. Replacing doesn't count as a new event: the waiting message's turn is still
+     * queued, so the actor can't be migrated or passivated in the meantime.
+     */
+    private boolean sendConflated(Object key, Object message, ActorRef sender) {
+        synchronized (mConflated) {
+            Envelope waiting = mConflated.get(key);
+            if (waiting != null) {
+                waiting.set(Envelope.MESSAGE, this, message, sender);
+                return true;
+            }
+        }
+
+        Mailbox mailbox = backpressure.isBounded() ? acquireBounded() : acquire(1);
+        if (mailbox == null) {
+            return false;
+        }
+        synchronized (mConflated) {
+            Envelope waiting = mConflated.get(key);
+            if (waiting != null) {
+                // Another sender queued a turn for the key first
+                waiting.set(Envelope.MESSAGE, this, message, sender);
+                onProcessed(1);
+                return true;
+            }
+            mConflated.put(key, new Envelope(Envelope.MESSAGE, this, message, sender));
+        }
+        if (mPassivator != null) {
+            mLastUsed = mPassivator.tick();
+        }
+        mailbox.sendConflatedTurn(this, key);
+        return true;
+    }
+
+    /**
+     * Takes the latest message for a key. Called when the key's turn comes up.
+     */
+    Envelope takeConflated(Object key) {
+        synchronized (mConflated) {
+            return mConflated.remove(key);
+        }
+    }
+
+    /**
+     * Returns false if the actor's mailbox has a limit, a priority order or conflates messages,
+     * in which case messages must be sent one at a time through
+     * {@link #sendMessage(Object, ActorRef)}.
+     */
+    boolean canSendBatches() {
+        return !backpressure.isBounded() && mPriorityMessages == null && mConflated == null;
+    }
+
+    /**
+     * Takes the most urgent message for an actor with a priority mailbox. Called when one of its
+     * turns comes up, so there's always at least one.
+     */
+    Envelope pollPriorityMessage() {
+        synchronized (mPriorityMessages) {
+            return mPriorityMessages.poll();
+        }
+    }
+
+    /**
+     * @return false if the actor was passivated, in which case nothing was sent
+     */
+    boolean sendMessages(Object[] messages, ActorRef sender) {
+        Mailbox mailbox = acquire(messages.length);
+        if (mailbox == null) {
+            return false;
+        }
+        if (mPassivator != null) {
+            mLastUsed = mPassivator.tick();
+        }
+        mailbox.sendMessages(this, messages, sender);
+        return true;
+    }
+
+    void start() {
+        acquire(1).start(this);
+    }
+
+    void stop() {
+        Mailbox mailbox = acquire(1);
+        // If it was passivated, the passivator sends the STOP
+        if (mailbox != null) {
+            mailbox.stop(this);
+        }
+    }
+
+    /**
+     * Marks the actor as stopped.
+     * @return true if the actor wasn't already stopped
+     */
+    boolean markStopped() {
+        return mState.compareAndSet(RUNNING, STATE_STOPPED);
+    }
+
+    boolean isStopped() {
+        return mState.get() != RUNNING;
+    }
+
+    /**
+     * Closes the cell to new events if it has none in flight. The caller must then send the
+     * actor its STOP with {@link Mailbox#stop(ActorCell)}, since {@link #stop()} no longer can.
+     * Unlike {@link #markStopped()}, messages sent to the cell afterwards go to a new instance of
+     * the actor.
+     * @return false if the actor is busy or already stopped
+     */
+    boolean passivate() {
+        if (!mPending.compareAndSet(0, PASSIVATED)) {
+            return false;
+        }
+        // If it was stopped in the meantime, it stays stopped
+        mState.compareAndSet(RUNNING, STATE_PASSIVATED);
+        return true;
+    }
+
+    /**
+     * Returns true if the actor was passivated rather than stopped, so messages sent to it must
+     * go to its next instance.
+     */
+    boolean isPassivated() {
+        return mState.get() == STATE_PASSIVATED;
+    }
+
+    /**
+     * Called after a send failed. Waits out a passivation in progress.
+     * @return true if the send failed because the actor was passivated
+     */
+    boolean awaitPassivated() {
+        int pending = mPending.get();
+        if (pending >= 0 || pending == MIGRATING) {
+            return false;
+        }
+        while (mState.get() == RUNNING) {
+            Thread.yield();
+        }
+        return isPassivated();
+    }
+
+    /**
+     * Counts new events and returns the mailbox they must be sent to, waiting for any migration
+     * in progress to finish. The caller must then send exactly that many events to the mailbox.
+     * @return the mailbox, or null if the actor was passivated
+     */
+    Mailbox acquire(int count) {
+        while (true) {
+            int pending = mPending.get();
+            if (pending >= 0) {
+                if (mPending.compareAndSet(pending, pending + count)) {
+                    return mMailbox;
+                }
+            } else if (pending != MIGRATING) {
+                return null;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Like {@link #acquire(int)} for one message, but applies the backpressure policy if the
+     * mailbox is full.
+     * @return the mailbox, or null if the message must not be sent
+     */
+    private Mailbox acquireBounded() {
+        int capacity = backpressure.capacity;
+        long deadline = 0;
+        long parkNanos = 1000;
+        while (true) {
+            int pending = mPending.get();
+            if (pending == MIGRATING) {
+                Thread.yield();
+                continue;
+            } else if (pending < 0) {
+                // Passivated
+                return null;
+            }
+            if (pending < capacity) {
+                if (mPending.compareAndSet(pending, pending + 1)) {
+                    return mMailbox;
+                }
+                continue;
+            }
+
+            switch (backpressure.policy) {
+                case DROP_OLDEST:
+                    if (pending < capacity * 2) {
+                        if (mPending.compareAndSet(pending, pending + 1)) {
+                            mDropped.incrementAndGet();
+                            mSystem.onMessageDropped();
+                            return mMailbox;
+                        }
+                        continue;
+                    }
+                    mSystem.onMessageDropped();
+                    return null;
+                case DROP_NEWEST:
+                    mSystem.onMessageDropped();
+                    return null;
+                case BLOCK:
+                    if (RemoteTransport.isIoThread()) {
+                        // Waiting would stall every connection, so reject it like FAIL
+                        mSystem.onMessageRejected();
+                        return null;
+                    }
+                    long now = System.nanoTime();
+                    if (deadline == 0) {
+                        deadline = now + backpressure.timeoutNanos;
+                    }
+                    if (now - deadline >= 0) {
+                        mSystem.onMessageRejected();
+                        return null;
+                    }
+                    // Nothing signals the sender when there's room, so poll with backoff
+                    LockSupport.parkNanos(Math.min(parkNanos, deadline - now));
+                    parkNanos = Math.min(parkNanos * 2, 1000000);
+                    break;
+                default:
+                    mSystem.onMessageRejected();
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Called when a message is about to be delivered.
+     * @return true if the message was dropped to make room for newer ones and must be skipped
+     */
+    boolean skipDropped() {
+        if (!mDropsOldest) {
+            return false;
+        }
+        while (true) {
+            int dropped = mDropped.get();
+            if (dropped == 0) {
+                return false;
+            }
+            if (mDropped.compareAndSet(dropped, dropped - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Called by the dispatcher after some of this cell's events have been processed.
+     */
+    void onProcessed(int count) {
+        mPending.addAndGet(-count);
+    }
+
+    /**
+     * Returns true if the actor receives its messages through onReceiveBatch.
+     */
+    boolean isBatching() {
+        return maxBatchSize > 1;
+    }
+
+    List<Envelope> getBatch() {
+        return mBatchView;
+    }
+
+    int getBatchSize() {
+        return mBatch == null ? 0 : mBatch.size();
+    }
+
+    void addToBatch(Object message, ActorRef sender) {
+        if (skipDropped()) {
+            onProcessed(1);
+            return;
+        }
+        if (mBatch == null) {
+            mBatch = new ArrayList<>(maxBatchSize);
+            mBatchView = Collections.unmodifiableList(mBatch);
+            mBatchEnvelopes = new Envelope[maxBatchSize];
+            for (int i = 0; i < maxBatchSize; i++) {
+                mBatchEnvelopes[i] = new Envelope();
+            }
+        }
+        Envelope envelope = mBatchEnvelopes[mBatch.size()];
+        envelope.set(Envelope.MESSAGE, this, message, sender);
+        mBatch.add(envelope);
+    }
+
+    void clearBatch() {
+        for (Envelope envelope : mBatch) {
+            envelope.clear();
+        }
+        mBatch.clear();
+    }
+
+    /**
+     * Returns the number of events sent to the actor that it hasn't finished processing.
+     */
+    int getPendingCount() {
+        return Math.max(mPending.get(), 0);
+    }
+
+    /**
+     * Returns true if the actor is waiting out a restart backoff, in which case its events must
+     * be stashed until it resumes.
+     */
+    boolean isSuspended() {
+        return mStash != null;
+    }
+
+    /**
+     * Keeps an event for when the actor resumes. It still counts as pending until then.
+     */
+    void stash(int kind, Object message, ActorRef sender) {
+        mStash.add(new Envelope(kind, this, message, sender));
+    }
+
+    /**
+     * Called on the actor's thread when it threw while processing an event. Applies the actor's
+     * supervisor strategy.
+     */
+    void onFailure(int kind, Throwable error) {
+        if (kind == Envelope.STOP) {
+            ActorSystem.LOG.log(Level.WARNING, "Actor " + path + " failed in postStop", error);
+            return;
+        }
+        ActorSystem.LOG.log(Level.WARNING, "Actor " + path + " failed", error);
+        if (isStopped()) {
+            return;
+        }
+
+        SupervisorStrategy strategy = mSupervisor != null
+                ? mSupervisor : mSystem.getSupervisorStrategy();
+        SupervisorStrategy.Directive directive = strategy.decide(error);
+        if (directive == SupervisorStrategy.Directive.ESCALATE && strategy == mSupervisor) {
+            strategy = mSystem.getSupervisorStrategy();
+            directive = strategy.decide(error);
+        }
+        switch (directive) {
+            case RESUME:
+                break;
+            case RESTART:
+                restart(strategy);
+                break;
+            case ESCALATE:
+                ActorSystem.LOG.log(Level.SEVERE, "Stopping actor " + path
+                        + " after an escalated failure", error);
+                mSystem.stop(this);
+                break;
+            default:
+                mSystem.stop(this);
+                break;
+        }
+    }
+
+    /**
+     * Restarts the actor, after the strategy's backoff if there is one, unless it has reached
+     * the strategy's restart limit.
+     */
+    private void restart(SupervisorStrategy strategy) {
+        long now = System.nanoTime();
+        if (mRestarts == 0 || now - mRestartWindowStart > strategy.windowNanos) {
+            mRestarts = 0;
+            mRestartWindowStart = now;
+        }
+        if (mRestarts >= strategy.maxRestarts) {
+            ActorSystem.LOG.warning("Stopping actor " + path + " after " + mRestarts
+                    + " restarts");
+            mSystem.stop(this);
+            return;
+        }
+        mRestarts++;
+
+        long backoff = strategy.backoffNanos(mRestarts);
+        if (backoff == 0) {
+            replaceActor();
+            return;
+        }
+        mStash = new ArrayList<>();
+        // Counts the RESUME, which also keeps the actor from being migrated while it's suspended
+        final Mailbox mailbox = acquire(1);
+        HashedWheelTimer.Timeout resume = new HashedWheelTimer.Timeout() {
+            @Override
+            void expire() {
+                mailbox.resume(ActorCell.this);
+            }
+
+            @Override
+            void abandon() {
+                mailbox.resume(ActorCell.this);
+            }
+        };
+        try {
+            mSystem.getTimer().schedule(resume, backoff, TimeUnit.NANOSECONDS);
+        } catch (IllegalStateException e) {
+            // Shutting down, so don't wait
+            mailbox.resume(this);
+        }
+    }
+
+    /**
+     * Called on the actor's thread when its restart backoff is over. Restarts the actor, then
+     * delivers the events that arrived in the meantime, in order.
+     */
+    void onResume() {
+        List<Envelope> stash = mStash;
+        mStash = null;
+        if (!isStopped()) {
+            replaceActor();
+        }
+        for (Envelope envelope : stash) {
+            Envelope.deliver(envelope.kind, this, envelope.message, envelope.sender);
+        }
+    }
+
+    /**
+     * Replaces the actor with a new instance of its class, keeping its mailbox.
+     */
+    private void replaceActor() {
+        Actor old = actor;
+        Actor fresh;
+        try {
+            fresh = factory.create();
+        } catch (RuntimeException e) {
+            ActorSystem.LOG.log(Level.SEVERE, "Could not restart actor " + path, e);
+            mSystem.stop(this);
+            return;
+        }
+        try {
+            old.postStop();
+        } catch (Throwable e) {
+            ActorSystem.LOG.log(Level.WARNING, "Actor " + path + " failed in postStop", e);
+        }
+        fresh.setSelf(old.self());
+        actor = fresh;
+        try {
+            fresh.preStart();
+        } catch (Throwable e) {
+            // Restarting again would likely fail the same way
+            ActorSystem.LOG.log(Level.SEVERE, "Stopping actor " + path
+                    + " after it failed in preStart", e);
+            mSystem.stop(this);
+        }
+    }
+
+    /**
+     * Moves the actor to another mailbox if it has no events in flight.
+     * @return true if the actor was moved
+     */
+    boolean migrate(Mailbox mailbox) {
+        if (!mPending.compareAndSet(0, MIGRATING)) {
+            return false;
+        }
+        mMailbox = mailbox;
+        mPending.set(0);
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package com.qklabs.actors;
+
+/**
+ * Creates instances of an actor, for {@link ActorSystem#getOrCreateActor(String, ActorFactory)}
+ * and {@link ActorRegistry#register(String, Class, ActorFactory)}. Creating actors through a
+ * factory skips reflection, and lets actors take constructor arguments.
+ *
+ * A factory may be called again for the same path, when the actor is restarted by its
+ * {@link SupervisorStrategy} or reactivated after {@link Passivation}, so it must return a new
+ * instance each time.
+ */
+public interface ActorFactory<T extends Actor> {
+    T create();
+}
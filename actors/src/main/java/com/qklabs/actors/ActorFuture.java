@@ -0,0 +1,170 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of an {@link ActorRef#ask(Object, long, TimeUnit)}, which is either the reply or the
+ * reason there wasn't one.
+ *
+ * Besides blocking in {@link #get()}, which you shouldn't do on an actor's thread, you can add a
+ * {@link Listener} that is called when the future completes.
+ */
+public class ActorFuture<T> implements Future<T> {
+
+    /**
+     * Called once when the future completes, on the thread that completed it. Keep it short, since
+     * that may be an actor's thread or the system's timer thread.
+     */
+    public interface Listener<T> {
+        /**
+         * @param result the result, or null if the future failed
+         * @param error why the future failed, or null if it succeeded
+         */
+        void onComplete(T result, Throwable error);
+    }
+
+    private volatile boolean mDone = false;
+    private T mResult;
+    private Throwable mError;
+    // Guarded by this. Most futures have at most one listener, so it isn't put in a list.
+    private Listener<? super T> mListener;
+    private List<Listener<? super T>> mMoreListeners;
+
+    /**
+     * Completes the future with a result.
+     * @return true if this completed the future, false if it was already complete
+     */
+    public boolean complete(T result) {
+        return finish(result, null);
+    }
+
+    /**
+     * Fails the future.
+     * @return true if this completed the future, false if it was already complete
+     */
+    public boolean completeExceptionally(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("error");
+        }
+        return finish(null, error);
+    }
+
+    private boolean finish(T result, Throwable error) {
+        Listener<? super T> listener;
+        List<Listener<? super T>> moreListeners;
+        synchronized (this) {
+            if (mDone) {
+                return false;
+            }
+            mResult = result;
+            mError = error;
+            mDone = true;
+            listener = mListener;
+            moreListeners = mMoreListeners;
+            mListener = null;
+            mMoreListeners = null;
+            notifyAll();
+        }
+        if (listener != null) {
+            notify(listener);
+        }
+        if (moreListeners != null) {
+            for (Listener<? super T> each : moreListeners) {
+                notify(each);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a listener. If the future is already complete, it's called right away on this thread.
+     */
+    public void addListener(Listener<? super T> listener) {
+        synchronized (this) {
+            if (!mDone) {
+                if (mListener == null) {
+                    mListener = listener;
+                } else {
+                    if (mMoreListeners == null) {
+                        mMoreListeners = new ArrayList<>(2);
+                    }
+                    mMoreListeners.add(listener);
+                }
+                return;
+            }
+        }
+        notify(listener);
+    }
+
+    private void notify(Listener<? super T> listener) {
+        try {
+            listener.onComplete(mResult, mError);
+        } catch (RuntimeException e) {
+            ActorSystem.LOG.warning("ActorFuture listener threw " + e);
+        }
+    }
+
+    /**
+     * Fails the future with a {@link CancellationException}. A reply that arrives later is
+     * ignored.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return completeExceptionally(new CancellationException());
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mDone && mError instanceof CancellationException;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mDone;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        if (!mDone) {
+            synchronized (this) {
+                while (!mDone) {
+                    wait();
+                }
+            }
+        }
+        return getResult();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (this) {
+                while (!mDone) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException();
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        if (mError instanceof CancellationException) {
+            throw (CancellationException) mError;
+        } else if (mError != null) {
+            throw new ExecutionException(mError);
+        }
+        return mResult;
+    }
+}
@@ -0,0 +1,55 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * A mailbox owned by a single actor. Whenever it has events, it is scheduled to run on its
+ * dispatcher's executor. A mailbox is never scheduled more than once at a time, so its actor still
+ * only processes one event at a time.
+ */
+class ActorMailbox extends MessageQueue implements Runnable {
+    private final Executor mExecutor;
+    private final int mThroughput;
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+
+    /**
+     * @param executor runs the mailbox whenever it has events
+     */
+    ActorMailbox(Executor executor, int capacity, int throughput) {
+        super(capacity);
+        mExecutor = executor;
+        mThroughput = throughput;
+    }
+
+    @Override
+    void signal() {
+        if (!mScheduled.get() && mScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(this);
+        }
+    }
+
+    /**
+     * Processes up to the dispatcher's throughput worth of events, then gives up the thread.
+     */
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < mThroughput; i++) {
+                if (!processEvent()) {
+                    break;
+                }
+            }
+        } catch (Throwable e) {
+            // Actors' failures are handled by their supervisor strategy, so this is a bug, but
+            // the mailbox must still be rescheduled
+            ActorSystem.LOG.log(Level.SEVERE, "Unexpected error processing an event", e);
+        }
+        mScheduled.set(false);
+        // Events sent while we were finishing up wouldn't have scheduled us
+        if (!isEmpty()) {
+            signal();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.qklabs.actors;
+
+/**
+ * Thrown by {@link ActorSystem#getOrCreateActor(String)} when no actor class was registered for
+ * the path.
+ */
+public class ActorNotFoundException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ActorNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,31 @@
 package com.qklabs.actors;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 public interface ActorRef {
-    public void tell(Object message, ActorRef sender);
-    public void tell(Object message);
+    /**
+     * Sends a message to the actor.
+     * @return true if the message was queued, or false if it was dropped, for example because the
+     *         actor was stopped or its mailbox is full. See {@link Backpressure}.
+     */
+    public boolean tell(Object message, ActorRef sender);
+    public boolean tell(Object message);
+
+    /**
+     * Sends several messages at once. They are queued together, which is cheaper than calling
+     * {@link #tell(Object, ActorRef)} for each, and are received in iteration order. Actors
+     * with a bounded mailbox get them one at a time, as if each was sent with tell.
+     */
+    public void tellAll(Collection<?> messages, ActorRef sender);
+    public void tellAll(Collection<?> messages);
+
+    /**
+     * Sends a message and returns a future for the reply. The actor replies by telling the sender
+     * of the message, as it would any other actor. If it doesn't reply in time, the future fails
+     * with an {@link AskTimeoutException}.
+     */
+    public ActorFuture<Object> ask(Object message, long timeout, TimeUnit unit);
+
     public String getPath();
 }
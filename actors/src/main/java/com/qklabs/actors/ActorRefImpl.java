@@ -1,35 +1,57 @@
 package com.qklabs.actors;
 
-import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The canonical reference to a live actor. There is exactly one per actor, and it holds the
+ * actor's cell directly so sending a message doesn't need to look anything up.
+ */
 class ActorRefImpl implements ActorRef {
 
     private final ActorSystem mSystem;
-    private final WeakReference<Actor> mActor;
-    private final String mPath;
+    private final ActorCell mCell;
 
-    public ActorRefImpl(ActorSystem system, Actor actor, String path) {
+    public ActorRefImpl(ActorSystem system, ActorCell cell) {
         mSystem = system;
-        mActor = new WeakReference<>(actor);
-        mPath = path;
+        mCell = cell;
     }
 
     @Override
-    public void tell(Object message, ActorRef sender) {
-        mSystem.send(mActor.get(), message, sender);
+    public boolean tell(Object message, ActorRef sender) {
+        return mSystem.send(mCell, message, sender);
     }
 
     @Override
-    public void tell(Object message) {
-        tell(message, mSystem.getEmptyActorRef());
+    public boolean tell(Object message) {
+        return tell(message, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages, ActorRef sender) {
+        mSystem.sendAll(mCell, messages, sender);
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages) {
+        tellAll(messages, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public ActorFuture<Object> ask(Object message, long timeout, TimeUnit unit) {
+        return mSystem.ask(this, message, timeout, unit);
     }
 
     Actor getActor() {
-        return mActor.get();
+        return mCell.actor;
+    }
+
+    ActorCell getCell() {
+        return mCell;
     }
 
     @Override
     public String getPath() {
-        return mPath;
+        return mCell.path;
     }
 }
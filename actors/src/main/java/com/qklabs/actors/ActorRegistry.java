@@ -1,117 +1,182 @@
 package com.qklabs.actors;
 
-import android.content.UriMatcher;
-import android.net.Uri;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-import android.text.TextUtils;
-import android.util.SparseArray;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * ActorRegistry provides a Uri -> Actor class lookup mechanism.
+ * ActorRegistry provides a uri -> Actor class lookup mechanism. A uri can also be registered with
+ * an {@link ActorFactory}, which the actor system then creates its actors with.
+ *
+ * Registered uris are compiled into an immutable {@link PathTrie}, which is rebuilt whenever a uri
+ * is registered. Lookups never lock, and looking up a path doesn't allocate once it's been
+ * resolved before. Path segments of "*" match any segment, and segments of "#" match any number.
  */
 public class ActorRegistry {
     public static final String ACTOR_SCHEME = "actor";
     public static final String LOCAL_AUTHORITY = "local";
 
+    private static final String SCHEME_SEPARATOR = "://";
+    private static final int CACHE_SIZE = 1024;
 
-    // Important: Use non-negative integers since UriMatcher.NO_MATCH == -1.
-    private static int sNextMatch = 0;
-    private static SparseArray<Class<? extends Actor>> sMatchToClass = new SparseArray<>();
-    private static UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+    // Registered patterns ("authority/path"), guarded by the class lock
+    private static final Map<String, Registration> sPatterns = new LinkedHashMap<>();
+    private static volatile PathTrie<Registration> sTrie = PathTrie.build(sPatterns);
+
+    // Direct-mapped cache of recently resolved paths. Entries resolved against an older trie are
+    // ignored, so registering a uri invalidates the whole cache.
+    private static final AtomicReferenceArray<CacheEntry> sCache =
+            new AtomicReferenceArray<>(CACHE_SIZE);
 
     private ActorRegistry() {}
 
     public static void register(String uriString, Class<? extends Actor> cls) {
-        Uri uri = buildActorUri(uriString);
-        register(uri, cls);
+        register(uriString, new Registration(cls, ReflectiveActorFactory.forClass(cls)));
     }
 
-    public static void register(Uri uri, Class<? extends Actor> cls) {
-        uri = buildActorUri(uri);
-        throwIfRegistered(uri);
+    /**
+     * Registers a uri whose actors are created by a factory rather than by reflection.
+     * @param cls the class of the actors the factory creates, for {@link #lookup(String)} and
+     *            dispatcher routes
+     */
+    public static <T extends Actor> void register(String uriString, Class<T> cls,
+                                                  ActorFactory<? extends T> factory) {
+        register(uriString, new Registration(cls, factory));
+    }
 
-        int match = getNextMatch();
-        sUriMatcher.addURI(uri.getAuthority(), uri.getPath(), match);
-        sMatchToClass.put(match, cls);
+    private static void register(String uriString, Registration registration) {
+        String pattern = normalize(uriString);
+        synchronized (ActorRegistry.class) {
+            throwIfRegistered(uriString, pattern);
+            sPatterns.put(pattern, registration);
+            sTrie = PathTrie.build(sPatterns);
+        }
     }
 
     /**
-     * Returns the Actor class corresponding to the given Uri if one has been registered. If the
-     * Uri has not been registered, null is returned.
+     * Returns the Actor class corresponding to the given uri if one has been registered. If the
+     * uri has not been registered, null is returned.
      * @param uriString the requested uri
      */
-    @Nullable
     public static Class<? extends Actor> lookup(String uriString) {
-        Uri uri = buildActorUri(uriString);
-        int match = sUriMatcher.match(uri);
-        return sMatchToClass.get(match, null);
+        Registration registration = lookupRegistration(uriString);
+        return registration != null ? registration.cls : null;
     }
 
     /**
-     * Returns the Actor class corresponding to the given Uri if one has been registered. If the
-     * Uri has not been registered, null is returned.
-     * @param uri the requested uri
+     * Returns the factory for the actors at the given uri, or null if it hasn't been registered.
      */
-    @Nullable
-    public static Class<? extends Actor> lookup(Uri uri) {
-        uri = buildActorUri(uri);
-        int match = sUriMatcher.match(uri);
-        return sMatchToClass.get(match, null);
+    static ActorFactory<? extends Actor> lookupFactory(String uriString) {
+        Registration registration = lookupRegistration(uriString);
+        return registration != null ? registration.factory : null;
+    }
+
+    private static Registration lookupRegistration(String uriString) {
+        PathTrie<Registration> trie = sTrie;
+        int index = spread(uriString.hashCode()) & (CACHE_SIZE - 1);
+        CacheEntry cached = sCache.get(index);
+        if (cached != null && cached.trie == trie && cached.uriString.equals(uriString)) {
+            return cached.registration;
+        }
+
+        Registration registration = resolve(trie, uriString);
+        sCache.set(index, new CacheEntry(uriString, trie, registration));
+        return registration;
     }
 
     /**
      * Clears the ActorRegistry.
      */
     public static void clear() {
-        sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
-        sMatchToClass.clear();
-        sNextMatch = 0;
+        synchronized (ActorRegistry.class) {
+            sPatterns.clear();
+            sTrie = PathTrie.build(sPatterns);
+        }
     }
 
     /**
      * Throws if the given uri is already registered in the ActorRegistry.
-     * @param uri uri to check
+     * @param uriString uri to check
+     * @param pattern normalized form of the uri
      */
-    private static void throwIfRegistered(Uri uri) {
-        if (sUriMatcher.match(uri) != UriMatcher.NO_MATCH) {
-            String msg = "The uri " + uri + " has already been registered";
+    private static void throwIfRegistered(String uriString, String pattern) {
+        if (sPatterns.containsKey(pattern)) {
+            String msg = "The uri " + uriString + " has already been registered";
             throw new IllegalStateException(msg);
         }
     }
 
-    @NonNull
-    private static Uri buildActorUri(String uriString) {
-        Uri uri = Uri.parse(uriString);
-        return buildActorUri(uri);
+    /**
+     * Matches a uri against the trie without allocating. Uris without an authority, such as
+     * "/user/abc123", belong to the local authority.
+     */
+    private static Registration resolve(PathTrie<Registration> trie, String uriString) {
+        int separator = uriString.indexOf(SCHEME_SEPARATOR);
+        if (separator < 0) {
+            return trie.match(LOCAL_AUTHORITY, uriString, 0, uriString.length());
+        }
+
+        int authorityStart = separator + SCHEME_SEPARATOR.length();
+        int authorityEnd = uriString.indexOf('/', authorityStart);
+        if (authorityEnd < 0) {
+            authorityEnd = uriString.length();
+        }
+        if (authorityEnd == authorityStart) {
+            return trie.match(LOCAL_AUTHORITY, uriString, authorityEnd, uriString.length());
+        }
+        // The authority is the first segment of the rest of the uri
+        return trie.match(null, uriString, authorityStart, uriString.length());
     }
 
-    @NonNull
-    private static Uri buildActorUri(Uri uri) {
-        if (isActorUri(uri)) {
-            return uri;
-        } else {
-            return new Uri.Builder()
-                    .authority(getAuthority(uri))
-                    .scheme(ACTOR_SCHEME)
-                    .path(uri.getPath())
-                    .build();
+    /**
+     * Returns the "authority/path" form of a uri that patterns are stored under.
+     */
+    private static String normalize(String uriString) {
+        String authority = LOCAL_AUTHORITY;
+        String path = uriString;
+        int separator = uriString.indexOf(SCHEME_SEPARATOR);
+        if (separator >= 0) {
+            int authorityStart = separator + SCHEME_SEPARATOR.length();
+            int authorityEnd = uriString.indexOf('/', authorityStart);
+            if (authorityEnd < 0) {
+                authorityEnd = uriString.length();
+            }
+            if (authorityEnd > authorityStart) {
+                authority = uriString.substring(authorityStart, authorityEnd);
+            }
+            path = uriString.substring(authorityEnd);
+        }
+
+        StringBuilder builder = new StringBuilder(authority);
+        for (String segment : PathTrie.split(path)) {
+            builder.append('/').append(segment);
         }
+        return builder.toString();
     }
 
-    private static String getAuthority(Uri uri) {
-        return TextUtils.isEmpty(uri.getAuthority())
-                ? LOCAL_AUTHORITY
-                : uri.getAuthority();
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
     }
 
-    private static boolean isActorUri(Uri uri) {
-        return !TextUtils.isEmpty(uri.getAuthority())
-                && !TextUtils.isEmpty(uri.getScheme())
-                && uri.getScheme().equals(ACTOR_SCHEME);
+    private static final class Registration {
+        final Class<? extends Actor> cls;
+        final ActorFactory<? extends Actor> factory;
+
+        Registration(Class<? extends Actor> cls, ActorFactory<? extends Actor> factory) {
+            this.cls = cls;
+            this.factory = factory;
+        }
     }
 
-    private static int getNextMatch() {
-        return sNextMatch++;
+    private static final class CacheEntry {
+        final String uriString;
+        final PathTrie<Registration> trie;
+        final Registration registration;
+
+        CacheEntry(String uriString, PathTrie<Registration> trie, Registration registration) {
+            this.uriString = uriString;
+            this.trie = trie;
+            this.registration = registration;
+        }
     }
 }
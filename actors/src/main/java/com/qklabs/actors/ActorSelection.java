@@ -0,0 +1,76 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The live actors whose paths match a pattern, as returned by {@link ActorSystem#select(String)}.
+ * A "*" segment matches any one segment, a "#" segment matches one segment of digits, and a final
+ * "**" segment matches every actor below a path:
+ *
+ * <pre>
+ * system.select("/user/*").tell(new Announcement("Maintenance at noon"));
+ * system.select("/sessions/**").tell(new PoisonPill());
+ * </pre>
+ *
+ * The pattern is matched against the system's actors each time the selection is used, so it
+ * includes actors created since it was made. Routers aren't selected, though their routees are.
+ */
+public final class ActorSelection {
+    private final ActorSystem mSystem;
+    private final String mPattern;
+    private final String[] mSegments;
+
+    ActorSelection(ActorSystem system, String pattern) {
+        List<String> segments = PathTrie.split(pattern);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (segments.get(i).equals(ActorTree.DESCENDANTS)) {
+                throw new IllegalArgumentException("** must be the last segment of " + pattern);
+            }
+        }
+        mSystem = system;
+        mPattern = pattern;
+        mSegments = segments.toArray(new String[segments.size()]);
+    }
+
+    public String getPattern() {
+        return mPattern;
+    }
+
+    /**
+     * Returns the actors that currently match.
+     */
+    public List<ActorRef> getActors() {
+        return Collections.<ActorRef>unmodifiableList(resolve());
+    }
+
+    /**
+     * Sends a message to every actor that currently matches. Actors that share a mailbox get the
+     * message with a single enqueue, as with
+     * {@link ActorSystem#broadcast(java.util.Collection, Object, ActorRef)}.
+     * @return the number of actors the message was sent to
+     */
+    public int tell(Object message, ActorRef sender) {
+        List<ActorRefImpl> actors = resolve();
+        if (!actors.isEmpty()) {
+            mSystem.broadcast(actors, message, sender);
+        }
+        return actors.size();
+    }
+
+    public int tell(Object message) {
+        return tell(message, mSystem.getEmptyActorRef());
+    }
+
+    private List<ActorRefImpl> resolve() {
+        List<ActorRefImpl> actors = new ArrayList<>();
+        mSystem.getActorTree().select(mSegments, actors);
+        return actors;
+    }
+
+    @Override
+    public String toString() {
+        return "ActorSelection{" + mPattern + "}";
+    }
+}
@@ -1,16 +1,21 @@
 package com.qklabs.actors;
 
-import android.content.res.Resources;
-import android.net.Uri;
-
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 public class ActorSystem {
@@ -18,145 +23,766 @@ public class ActorSystem {
     private static final String LOG_TAG = "ActorSystem";
     static final Logger LOG = Logger.getLogger(LOG_TAG);
 
-    static final int N_THREADS = 8;
+    /**
+     * Number of threads the default dispatcher runs actors on.
+     */
+    static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
 
     private static final EmptyActor EMPTY_ACTOR = new EmptyActor();
+    private static final int CREATE_LOCK_STRIPES = 64;
+    private static final String TEMPORARY_PREFIX = "/tmp/$";
+    private static final PathTrie<Integer> NO_PATTERNS =
+            PathTrie.build(Collections.<String, Integer>emptyMap());
+    // Orders the indexes of patterns, so the one added first wins
+    private static final Comparator<Integer> FIRST_ADDED = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+            return a.compareTo(b);
+        }
+    };
+    // Events to process at a time while shutdown checks the deadline
+    private static final int EMBEDDED_SHUTDOWN_BATCH = 1024;
 
-    @SuppressWarnings("FieldCanBeLocal")
-    private final ExecutorService mExecutor;
-    private final MessageQueue[] mQueues;
-    private final Map<Actor, MessageQueue> mActorsQueueMap;
-    private final Map<String, Actor> mActors;
+    private final Dispatcher mDispatcher;
+    private final Map<String, Dispatcher> mNamedDispatchers;
+    // The dispatchers that only run when the host calls runOnce or runUntilIdle
+    private final List<EmbeddedDispatcher> mEmbeddedDispatchers = new ArrayList<>();
+    // The mailbox limit for actors on each dispatcher, unless the actor sets its own
+    private final Map<Dispatcher, Backpressure> mBackpressure;
+    private final List<Route> mRoutes;
+    private final List<PoolRoute> mPools;
+    private final List<Passivator> mPassivators;
+    // The path patterns of each list, mapped to the index of the first entry with the pattern
+    private final PathTrie<Integer> mRoutePatterns;
+    private final PathTrie<Integer> mPoolPatterns;
+    private final PathTrie<Integer> mPassivationPatterns;
+    // One canonical ref per live actor, by path
+    private final ConcurrentHashMap<String, ActorRefImpl> mActors;
+    // The same actors by the segments of their paths, for select. Only kept up to date once
+    // something has been selected, so systems that never select don't pay for it.
+    private final ActorTree mActorTree = new ActorTree();
+    private volatile boolean mIsTrackingTree = false;
+    private volatile boolean mIsTreeBuilt = false;
+    // Routers by path. Kept apart from actors since they aren't actors themselves.
+    private final ConcurrentHashMap<String, Router> mRouters;
+    // Creating an actor for a path holds the lock for the path's stripe, so that two threads can't
+    // both create an actor for the same path.
+    private final Object[] mCreateLocks;
+    private final ActorRefImpl mEmptyActorRef;
+    private final AtomicLong mNextAskId = new AtomicLong();
+    private final AtomicLong mNextTemporaryId = new AtomicLong();
+    private final AtomicLong mDroppedMessages = new AtomicLong();
+    private final AtomicLong mRejectedMessages = new AtomicLong();
+    private final Scheduler mScheduler;
+    private final EventStream mEventStream;
+    // Null unless metrics are enabled
+    private final MetricsRegistry mMetrics;
+    // Started by the first ask or scheduled message
+    private volatile HashedWheelTimer mTimer;
+    // Null unless the system talks to other systems. Set by the builder before the system is
+    // returned, so before any actor can use it.
+    private RemoteTransport mTransport;
+    private SupervisorStrategy mSupervisorStrategy = SupervisorStrategy.DEFAULT;
 
-    private boolean mIsStopped = false;
+    private volatile boolean mIsStopped = false;
+    // Set while shutdown(timeout, unit) waits for actors to finish. Actors can still message each
+    // other, but no new ones are created.
+    private volatile boolean mIsDraining = false;
 
+    /**
+     * Creates an actor system with one thread per core, whose idle worker threads back off from
+     * spinning to parking. See {@link BackoffIdleStrategy}.
+     */
     public ActorSystem() {
-        mExecutor = Executors.newFixedThreadPool(N_THREADS);
-        mQueues = new MessageQueue[N_THREADS];
-        mActorsQueueMap = new HashMap<>();
-        mActors = new HashMap<>();
+        this(new BackoffIdleStrategy());
+    }
+
+    /**
+     * Creates an actor system that binds each actor to one of its threads.
+     * @param idleStrategy what worker threads do while they have no messages to process
+     */
+    public ActorSystem(IdleStrategy idleStrategy) {
+        this(new ThreadBoundDispatcher(DEFAULT_THREADS, idleStrategy));
+    }
+
+    /**
+     * Creates an actor system that runs its actors on the given dispatcher.
+     * @param dispatcher decides which threads actors run on. Must not be used by another system.
+     */
+    public ActorSystem(Dispatcher dispatcher) {
+        this(dispatcher, Collections.<String, Dispatcher>emptyMap(),
+                Collections.<Route>emptyList(),
+                Collections.singletonMap(dispatcher, Backpressure.UNBOUNDED),
+                Collections.<PoolRoute>emptyList(), Collections.<PassivationRoute>emptyList(),
+                NO_PATTERNS, NO_PATTERNS, NO_PATTERNS, false);
+    }
+
+    private ActorSystem(Dispatcher dispatcher, Map<String, Dispatcher> namedDispatchers,
+                        List<Route> routes, Map<Dispatcher, Backpressure> backpressure,
+                        List<PoolRoute> pools, List<PassivationRoute> passivation,
+                        PathTrie<Integer> routePatterns, PathTrie<Integer> poolPatterns,
+                        PathTrie<Integer> passivationPatterns, boolean metrics) {
+        mDispatcher = dispatcher;
+        mNamedDispatchers = namedDispatchers;
+        mRoutes = routes;
+        mBackpressure = backpressure;
+        mPools = pools;
+        mPassivators = new ArrayList<>();
+        for (PassivationRoute route : passivation) {
+            mPassivators.add(new Passivator(this, route.passivation));
+        }
+        mRoutePatterns = routePatterns;
+        mPoolPatterns = poolPatterns;
+        mPassivationPatterns = passivationPatterns;
+        mActors = new ConcurrentHashMap<>();
+        mRouters = new ConcurrentHashMap<>();
+        mCreateLocks = new Object[CREATE_LOCK_STRIPES];
+        for (int i = 0; i < CREATE_LOCK_STRIPES; i++) {
+            mCreateLocks[i] = new Object();
+        }
+        mEmptyActorRef = new ActorRefImpl(this, new ActorCell("/empty", EMPTY_ACTOR));
+        mScheduler = new Scheduler(this);
+        mEventStream = new EventStream(this);
+        mMetrics = metrics ? new MetricsRegistry() : null;
+
+        mDispatcher.start(mMetrics);
+        for (Dispatcher named : mNamedDispatchers.values()) {
+            named.start(mMetrics);
+        }
+        if (mDispatcher instanceof EmbeddedDispatcher) {
+            mEmbeddedDispatchers.add((EmbeddedDispatcher) mDispatcher);
+        }
+        for (Dispatcher named : mNamedDispatchers.values()) {
+            if (named instanceof EmbeddedDispatcher) {
+                mEmbeddedDispatchers.add((EmbeddedDispatcher) named);
+            }
+        }
+        for (Passivator passivator : mPassivators) {
+            passivator.startSweeping();
+        }
+    }
 
-        initializeQueues();
-        for (MessageQueue queue : mQueues) {
-            mExecutor.execute(new ActorsQueueRunnable(queue));
+    /**
+     * Processes up to the given number of events on the calling thread, for a system whose
+     * actors run on an {@link EmbeddedDispatcher}.
+     * @return the number of events processed, which is less than the maximum if there were no
+     *         more
+     * @throws IllegalStateException if the system has no embedded dispatcher, or another thread
+     *                               is already running it
+     */
+    public int runOnce(int maxMessages) {
+        if (mEmbeddedDispatchers.isEmpty()) {
+            throw new IllegalStateException("runOnce needs an EmbeddedDispatcher");
+        }
+        int processed = 0;
+        for (EmbeddedDispatcher embedded : mEmbeddedDispatchers) {
+            processed += embedded.runOnce(maxMessages - processed);
         }
+        return processed;
     }
 
-    private void initializeQueues() {
-        for (int i = 0; i < N_THREADS; i++) {
-            mQueues[i] = new MessageQueue();
+    /**
+     * Processes events on the calling thread until there are none left, including any sent
+     * while processing. Never returns if actors keep messaging each other forever.
+     * @return the number of events processed
+     * @see #runOnce(int)
+     */
+    public int runUntilIdle() {
+        int total = 0;
+        while (true) {
+            int processed = runOnce(Integer.MAX_VALUE);
+            if (processed == 0) {
+                return total;
+            }
+            total += processed;
         }
     }
 
     /**
-     * Shuts down the actor system.
+     * Shuts down the actor system right away.
      *
      * Existing actors in the system will not be notified of this; they will just stop receiving
-     * events.
+     * events. Use {@link #shutdown(long, TimeUnit)} to let them finish first.
      */
     public void shutdown() {
-        // Shut down executor
-        mExecutor.shutdownNow();
+        shutdownNow(1000);
+    }
+
+    /**
+     * Shuts down the actor system once its actors have finished their work, waiting up to the
+     * given time. No new actors can be created and no more scheduled messages are sent, but
+     * actors can still message each other, so a chain of actors finishes what it started. Once
+     * every mailbox is empty, every actor is stopped, so their {@code postStop} methods run in
+     * parallel on the dispatchers' threads.
+     *
+     * If the deadline passes first, the remaining actors are stopped anyway, dropping their
+     * messages, and the system is shut down as by {@link #shutdown()}. Pending asks fail right
+     * away.
+     *
+     * @return what was left over, if anything
+     */
+    public ShutdownReport shutdown(long timeout, TimeUnit unit) {
+        if (isStopped() || mIsDraining) {
+            throw new IllegalStateException("The actor system is already shut down");
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        mIsDraining = true;
+        synchronized (this) {
+            if (mTimer != null) {
+                mTimer.shutdown();
+            }
+        }
+
+        int remainingMessages = 0;
+        int remainingActors = 0;
+        try {
+            // Let every mailbox empty out, then stop everyone, which queues each actor's STOP on
+            // its own mailbox so they all run at once
+            awaitIdle(mActors.values(), deadline);
+            for (Router router : mRouters.values()) {
+                stop(router);
+            }
+            List<ActorRefImpl> stopping = new ArrayList<>(mActors.values());
+            for (ActorRefImpl ref : stopping) {
+                ActorCell cell = ref.getCell();
+                remainingMessages += cell.getPendingCount();
+                stop(cell);
+            }
+            awaitIdle(stopping, deadline);
+            for (ActorRefImpl ref : stopping) {
+                if (ref.getCell().getPendingCount() > 0) {
+                    remainingActors++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warning("Interrupted while shutting down ActorSystem");
+        }
+
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        shutdownNow(Math.max(remainingMillis, 0));
+        return new ShutdownReport(remainingActors, remainingMessages);
+    }
+
+    /**
+     * Waits until none of the actors have events waiting, or until the deadline. Runs any
+     * embedded dispatchers in the meantime, since nothing else might.
+     */
+    private void awaitIdle(Collection<ActorRefImpl> actors, long deadline)
+            throws InterruptedException {
+        long sleepMillis = 1;
+        while (System.nanoTime() - deadline < 0) {
+            boolean idle = true;
+            for (ActorRefImpl ref : actors) {
+                if (ref.getCell().getPendingCount() > 0) {
+                    idle = false;
+                    break;
+                }
+            }
+            if (idle) {
+                return;
+            }
+            int processed = 0;
+            for (EmbeddedDispatcher embedded : mEmbeddedDispatchers) {
+                processed += embedded.runIfNotRunning(EMBEDDED_SHUTDOWN_BATCH);
+            }
+            if (processed > 0) {
+                continue;
+            }
+            Thread.sleep(sleepMillis);
+            sleepMillis = Math.min(sleepMillis * 2, 10);
+        }
+    }
+
+    private void shutdownNow(long timeoutMillis) {
+        // Shut down dispatcher threads
         try {
-            mExecutor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+            mDispatcher.shutdown(timeoutMillis);
+            for (Dispatcher named : mNamedDispatchers.values()) {
+                named.shutdown(timeoutMillis);
+            }
         } catch (InterruptedException e) {
             LOG.warning("Interrupted while shutting down ActorSystem");
         }
+        // After the dispatchers, so messages sent by postStop still go out
+        if (mTransport != null) {
+            try {
+                mTransport.shutdown(timeoutMillis);
+            } catch (InterruptedException e) {
+                LOG.warning("Interrupted while shutting down ActorSystem");
+            }
+        }
 
         mActors.clear();
-        mActorsQueueMap.clear();
+        mActorTree.clear();
+        mRouters.clear();
 
         mIsStopped = true;
+
+        synchronized (this) {
+            if (mTimer != null) {
+                mTimer.shutdown();
+            }
+        }
     }
 
     private boolean isStopped() {
         return mIsStopped;
     }
 
+    /**
+     * Returns true once shutdown has started, after which no new actors are created.
+     */
+    boolean isShuttingDown() {
+        return mIsStopped || mIsDraining;
+    }
+
     /**
      * Retrieves an actor. The path is treated as a relative path from root and is normalized before
      * being set. If the actor corresponding to the given path doesn't exist, it will be created.
      *
+     * If the path matches a pool configured with {@link Builder#pool(String, Pool)}, this returns
+     * a router to a pool of actors of the given class instead.
+     *
      * @param path the location of the actor in the system
      * @param cls the actor's class
      */
     public ActorRef getOrCreateActor(String path, Class<? extends Actor> cls) {
-        if (isStopped()) {
+        return getOrCreateActor(path, cls, null);
+    }
+
+    /**
+     * Like {@link #getOrCreateActor(String, Class)}, but creates the actor through a factory
+     * instead of reflection if it doesn't exist yet.
+     *
+     * @param path the location of the actor in the system
+     * @param factory creates the actor, and any restarted or reactivated instances of it
+     */
+    public ActorRef getOrCreateActor(String path, ActorFactory<? extends Actor> factory) {
+        return getOrCreateActor(path, null, factory);
+    }
+
+    /**
+     * @param cls the actor's class, only used if factory is null
+     */
+    private ActorRef getOrCreateActor(String path, Class<? extends Actor> cls,
+                                      ActorFactory<? extends Actor> factory) {
+        if (isStopped() || mIsDraining) {
             throw new IllegalStateException("Cannot create actors after shutdown() is called");
         }
 
-        final Actor actor;
-        final ActorRef result;
-        if (mActors.containsKey(path)) {
-            actor = mActors.get(path);
-            result = new ActorRefImpl(this, actor, path);
-        } else {
-            actor = create(cls);
-            mActors.put(path, actor);
-            result = new ActorRefImpl(this, actor, path);
-            actor.setSelf(result);
-            // Bind the actor to a thread in the actor system
-            bind(actor);
+        ActorRefImpl existing = mActors.get(path);
+        if (existing != null) {
+            return existing;
+        }
+        if (!mPools.isEmpty()) {
+            Router router = mRouters.get(path);
+            if (router != null) {
+                return router;
+            }
+        }
+
+        synchronized (getCreateLock(path)) {
+            existing = mActors.get(path);
+            if (existing != null) {
+                return existing;
+            }
+            if (factory == null) {
+                factory = ReflectiveActorFactory.forClass(cls);
+            }
+
+            Pool pool = getPool(path);
+            if (pool != null) {
+                Router router = mRouters.get(path);
+                if (router == null) {
+                    router = new Router(this, path, factory, pool);
+                    mRouters.put(path, router);
+                }
+                return router;
+            }
+
+            Passivator passivator = getPassivator(path);
+            ActorRefImpl result = createActor(path, factory, passivator, null);
+            register(path, result);
+            if (passivator != null) {
+                passivator.add(result.getCell());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Creates a routee for a router. Routee paths are unique to their router, so they don't need
+     * the create lock.
+     */
+    ActorRefImpl createRoutee(String path, ActorFactory<? extends Actor> factory, Router router) {
+        // Routees are never passivated, since the router holds on to them
+        ActorRefImpl result = createActor(path, factory, null, router);
+        register(path, result);
+        return result;
+    }
+
+    /**
+     * Creates an actor with a path of its own, like "/tmp/$1", for short-lived work such as
+     * handling a single request. Temporary actors skip the checks for an existing actor, pools
+     * and passivation, so they're much cheaper to create than actors at a chosen path. Stop them
+     * when they're done.
+     */
+    public ActorRef spawnTemporary(Class<? extends Actor> cls) {
+        return spawnTemporary(ReflectiveActorFactory.forClass(cls));
+    }
+
+    /**
+     * Like {@link #spawnTemporary(Class)}, but creates the actor through a factory.
+     */
+    public ActorRef spawnTemporary(ActorFactory<? extends Actor> factory) {
+        if (isStopped() || mIsDraining) {
+            throw new IllegalStateException("Cannot create actors after shutdown() is called");
+        }
+        // The path is unique, so it needs no create lock
+        String path = TEMPORARY_PREFIX + mNextTemporaryId.incrementAndGet();
+        ActorRefImpl result = createActor(path, factory, null, null);
+        // Still listed, so it's drained and stopped with the system
+        register(path, result);
+        return result;
+    }
+
+    /**
+     * Lists a new actor under its path.
+     */
+    private void register(String path, ActorRefImpl ref) {
+        mActors.put(path, ref);
+        if (mIsTrackingTree) {
+            mActorTree.add(path, ref);
+        }
+    }
+
+    /**
+     * Removes a stopped or passivated actor from the lists.
+     */
+    private void unregister(ActorCell cell) {
+        ActorRefImpl ref = cell.self();
+        mActors.remove(cell.path, ref);
+        if (mIsTrackingTree) {
+            mActorTree.remove(cell.path, ref);
+        }
+    }
+
+    private ActorRefImpl createActor(String path, ActorFactory<? extends Actor> factory,
+                                     Passivator passivator, Router router) {
+        Actor actor = factory.create();
+        Dispatcher dispatcher = getDispatcher(path, actor.getClass());
+        Backpressure backpressure = actor.getBackpressure();
+        if (backpressure == null) {
+            backpressure = mBackpressure.get(dispatcher);
+        }
+        ActorCell cell = new ActorCell(this, path, actor, factory, backpressure);
+        if (passivator != null) {
+            cell.setPassivator(passivator);
         }
+        cell.setRouter(router);
+        ActorRefImpl result = new ActorRefImpl(this, cell);
+        actor.setSelf(result);
+        cell.setSelf(result);
+        // Bind the actor to a thread in the actor system, and queue preStart before anyone
+        // else can see the ref and send it messages
+        cell.bind(dispatcher);
+        cell.start();
         return result;
     }
 
+    /**
+     * Retrieves the actor registered for a path in {@link ActorRegistry}, creating it if needed.
+     * A uri whose authority is a peer set with {@link Builder#peer(String, InetSocketAddress)},
+     * like "actor://worker-2/jobs/7", returns a reference to the actor in that system instead.
+     */
     public ActorRef getOrCreateActor(String path) {
-        Class<? extends Actor> cls = ActorRegistry.lookup(path);
-        if (cls == null) {
+        if (mTransport != null) {
+            String authority = RemoteTransport.authorityOf(path);
+            if (authority != null && authority.equals(mTransport.getAuthority())) {
+                path = RemoteTransport.pathOf(path);
+            } else if (authority != null && !authority.isEmpty()
+                    && !authority.equals(ActorRegistry.LOCAL_AUTHORITY)) {
+                return mTransport.actorFor(authority, RemoteTransport.pathOf(path));
+            }
+        }
+        ActorFactory<? extends Actor> factory = ActorRegistry.lookupFactory(path);
+        if (factory == null) {
             String msg = "No actor class was registered for the path " + path;
-            throw new Resources.NotFoundException(msg);
+            throw new ActorNotFoundException(msg);
         } else {
-            return getOrCreateActor(path, cls);
+            return getOrCreateActor(path, factory);
         }
     }
 
-    private void bind(Actor actor) {
-        MessageQueue queue = getNextQueue();
-        mActorsQueueMap.put(actor, queue);
-        queue.start(actor);
+    /**
+     * Returns the actor, router or pending ask at a path in this system, creating the actor if
+     * its class is registered. Used to deliver messages from other systems.
+     * @return the ref, or null if there's nothing at the path
+     */
+    ActorRef resolveLocal(String path) {
+        ActorRefImpl ref = mActors.get(path);
+        if (ref != null) {
+            return ref;
+        }
+        Router router = mRouters.get(path);
+        if (router != null) {
+            return router;
+        }
+        ActorFactory<? extends Actor> factory = ActorRegistry.lookupFactory(path);
+        return factory == null ? null : getOrCreateActor(path, factory);
     }
 
-    private final Random mQueueSelectionRandom = new Random();
-    private MessageQueue getNextQueue() {
-        return mQueues[mQueueSelectionRandom.nextInt(N_THREADS)];
+    private Object getCreateLock(String path) {
+        int hash = path.hashCode();
+        hash ^= (hash >>> 16);
+        return mCreateLocks[(hash & Integer.MAX_VALUE) % CREATE_LOCK_STRIPES];
     }
 
-    private Actor create(Class<? extends Actor> cls) {
-        try {
-            Constructor ctor = cls.getConstructor();
-            return (Actor)ctor.newInstance();
-        } catch (NoSuchMethodException e) {
-            String msg = String.format(
-                    "Actor %s must have empty constructor.\n" +
-                    "Note that non-static inner classes can't have an empty constructor, so " +
-                    "an Actor can't currently be a non-static inner class.", cls.getName());
-            throw new RuntimeException(msg, e);
-        } catch (InvocationTargetException|InstantiationException|IllegalAccessException e) {
-            throw new RuntimeException("Could not create actor", e);
+    /**
+     * Returns the first pool matching the path, or null if the path is for a single actor.
+     */
+    private Pool getPool(String path) {
+        Integer index = mPoolPatterns.matchFirst(path, FIRST_ADDED);
+        return index != null ? mPools.get(index).pool : null;
+    }
+
+    /**
+     * Returns the passivator of the first pattern matching the path, or null if actors at the
+     * path are never passivated.
+     */
+    private Passivator getPassivator(String path) {
+        Integer index = mPassivationPatterns.matchFirst(path, FIRST_ADDED);
+        return index != null ? mPassivators.get(index) : null;
+    }
+
+    /**
+     * Returns the dispatcher of the first route matching the actor, or the default dispatcher.
+     */
+    private Dispatcher getDispatcher(String path, Class<? extends Actor> cls) {
+        Integer index = mRoutePatterns.matchFirst(path, FIRST_ADDED);
+        // A class route added before the first matching pattern still wins
+        int end = index != null ? index : mRoutes.size();
+        for (int i = 0; i < end; i++) {
+            Route route = mRoutes.get(i);
+            if (route.cls != null && route.cls.isAssignableFrom(cls)) {
+                return mNamedDispatchers.get(route.dispatcherName);
+            }
         }
+        return index != null ? mNamedDispatchers.get(mRoutes.get(index).dispatcherName)
+                : mDispatcher;
     }
 
-    void send(Actor target, Object message, ActorRef sender) {
+    boolean send(ActorCell target, Object message, ActorRef sender) {
         if (isStopped()) {
             throw new IllegalStateException("Cannot send messages to an actor after shutdown() is " +
                     "called");
         }
 
-        if (target instanceof EmptyActor) {
+        if (target.actor instanceof EmptyActor) {
             LOG.info("Message sent to empty actor: " + message);
-        } else {
-            if (message instanceof PoisonPill) {
-                MessageQueue queue = mActorsQueueMap.get(target);
-                queue.stop(target);
-                mActorsQueueMap.remove(target);
-            } else {
-                MessageQueue queue = mActorsQueueMap.get(target);
-                queue.sendMessage(target, message, sender);
+            return false;
+        } else if (target.isPassivated() && !mIsDraining) {
+            return send(reactivate(target), message, sender);
+        } else if (target.isStopped()) {
+            LOG.info("Message sent to stopped actor " + target.path + ": " + message);
+            return false;
+        } else if (message instanceof PoisonPill) {
+            stop(target);
+            return true;
+        } else if (target.sendMessage(message, sender)) {
+            return true;
+        } else if (target.awaitPassivated()) {
+            // Passivated since it was checked above
+            return send(target, message, sender);
+        }
+        return false;
+    }
+
+    void sendAll(ActorCell target, Collection<?> messages, ActorRef sender) {
+        if (isStopped()) {
+            throw new IllegalStateException("Cannot send messages to an actor after shutdown() is " +
+                    "called");
+        }
+
+        Object[] batch = messages.toArray();
+        // Bounded and priority mailboxes handle each message separately
+        boolean oneAtATime = !target.canSendBatches();
+        for (Object message : batch) {
+            // Stopping partway through the batch has to happen in order
+            oneAtATime |= message instanceof PoisonPill;
+        }
+        if (oneAtATime) {
+            for (Object each : batch) {
+                send(target, each, sender);
             }
+            return;
+        }
+
+        if (target.actor instanceof EmptyActor) {
+            LOG.info("Messages sent to empty actor: " + messages);
+        } else if (target.isPassivated() && !mIsDraining) {
+            sendAll(reactivate(target), messages, sender);
+        } else if (target.isStopped()) {
+            LOG.info("Messages sent to stopped actor " + target.path + ": " + messages);
+        } else if (!target.sendMessages(batch, sender) && target.awaitPassivated()) {
+            // Passivated since it was checked above
+            sendAll(target, messages, sender);
         }
     }
 
+    /**
+     * Returns the cell of the actor that replaces a passivated one, creating it if no one else
+     * has yet.
+     */
+    private ActorCell reactivate(ActorCell passivated) {
+        return ((ActorRefImpl) getOrCreateActor(passivated.path, passivated.factory)).getCell();
+    }
+
+    /**
+     * Passivates an actor if it has no messages waiting. Called by its passivator.
+     * @return true if the actor was passivated
+     */
+    boolean passivate(ActorCell cell) {
+        if (!cell.passivate()) {
+            return false;
+        }
+        unregister(cell);
+        cell.getPassivator().remove(cell);
+        mEventStream.unsubscribe(cell.self());
+        cell.getMailbox().stop(cell);
+        cell.unbind();
+        return true;
+    }
+
+    /**
+     * Sends the same message to many actors. Actors that share a mailbox get the message with a
+     * single enqueue, which is cheaper than calling {@link ActorRef#tell(Object, ActorRef)} on
+     * each of them.
+     *
+     * @param targets the actors to send the message to
+     * @param message the message
+     * @param sender the sender, which may be {@link #getEmptyActorRef()}
+     */
+    public void broadcast(Collection<? extends ActorRef> targets, Object message,
+                          ActorRef sender) {
+        if (isStopped()) {
+            throw new IllegalStateException("Cannot send messages to an actor after shutdown() is " +
+                    "called");
+        }
+
+        Map<Mailbox, List<ActorCell>> byMailbox = new IdentityHashMap<>();
+        for (ActorRef target : targets) {
+            if (!(target instanceof ActorRefImpl)) {
+                // Routers and asks
+                target.tell(message, sender);
+                continue;
+            }
+            ActorCell cell = ((ActorRefImpl) target).getCell();
+            if (message instanceof PoisonPill || cell.actor instanceof EmptyActor
+                    || cell.isStopped() || !cell.canSendBatches()) {
+                send(cell, message, sender);
+                continue;
+            }
+            Mailbox mailbox = cell.acquire(1);
+            if (mailbox == null) {
+                // Passivated, so it goes to the actor's next instance
+                send(cell, message, sender);
+                continue;
+            }
+            List<ActorCell> cells = byMailbox.get(mailbox);
+            if (cells == null) {
+                cells = new ArrayList<>();
+                byMailbox.put(mailbox, cells);
+            }
+            cells.add(cell);
+        }
+
+        for (Map.Entry<Mailbox, List<ActorCell>> entry : byMailbox.entrySet()) {
+            List<ActorCell> cells = entry.getValue();
+            entry.getKey().sendMessage(cells.toArray(new ActorCell[cells.size()]), cells.size(),
+                    message, sender);
+        }
+    }
+
+    ActorFuture<Object> ask(ActorRef target, Object message, long timeout, TimeUnit unit) {
+        if (isStopped()) {
+            throw new IllegalStateException("Cannot send messages to an actor after shutdown() is " +
+                    "called");
+        }
+
+        ActorFuture<Object> future = new ActorFuture<>();
+        // The reply goes straight to the future, so there's no actor to create or register
+        AskResponder responder = new AskResponder(this, future, target.getPath(),
+                unit.toMillis(timeout), mNextAskId.incrementAndGet());
+        getTimer().schedule(responder, timeout, unit);
+        future.addListener(responder);
+        if (!target.tell(message, responder)) {
+            // Dropped, rejected or sent to a stopped actor, so no reply is coming
+            responder.reject();
+        }
+        return future;
+    }
+
+    /**
+     * Selects the live actors whose paths match a pattern, such as "/user/*" for every actor
+     * directly under "/user", or "/user/**" for every actor below it. Selecting costs time in
+     * proportion to the actors that match, not to every actor in the system.
+     * @see ActorSelection
+     */
+    public ActorSelection select(String pattern) {
+        return new ActorSelection(this, pattern);
+    }
+
+    ActorTree getActorTree() {
+        if (!mIsTreeBuilt) {
+            synchronized (mActorTree) {
+                if (!mIsTreeBuilt) {
+                    // Start tracking first, so actors created while this runs aren't missed. Any
+                    // stopped meanwhile are removed again by add.
+                    mIsTrackingTree = true;
+                    for (Map.Entry<String, ActorRefImpl> entry : mActors.entrySet()) {
+                        mActorTree.add(entry.getKey(), entry.getValue());
+                    }
+                    mIsTreeBuilt = true;
+                }
+            }
+        }
+        return mActorTree;
+    }
+
+    /**
+     * Returns the stream for publishing events to the actors subscribed to them.
+     */
+    public EventStream eventStream() {
+        return mEventStream;
+    }
+
+    /**
+     * Returns the scheduler for sending messages to actors later or periodically.
+     */
+    public Scheduler scheduler() {
+        return mScheduler;
+    }
+
+    HashedWheelTimer getTimer() {
+        HashedWheelTimer timer = mTimer;
+        if (timer == null) {
+            synchronized (this) {
+                timer = mTimer;
+                if (timer == null) {
+                    if (isStopped() || mIsDraining) {
+                        throw new IllegalStateException(
+                                "Cannot schedule messages after shutdown() is called");
+                    }
+                    timer = new HashedWheelTimer();
+                    mTimer = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
     /**
      * Stops an actor. `postStop` will be called on the Actor's thread asynchronously.
      * @param target the actor to stop
@@ -166,15 +792,526 @@ public class ActorSystem {
             throw new IllegalStateException("Cannot stop an actor after shutdown() is called");
         }
 
-        Actor targetActor = ((ActorRefImpl)target).getActor();
-        MessageQueue queue = mActorsQueueMap.get(targetActor);
-        queue.stop(targetActor);
-        mActors.remove(target.getPath());
+        if (target instanceof Router) {
+            Router router = (Router) target;
+            if (router.stop()) {
+                mRouters.remove(router.getPath(), router);
+                mEventStream.unsubscribe(router);
+            }
+        } else {
+            stop(((ActorRefImpl) target).getCell());
+        }
+    }
+
+    void stop(ActorCell cell) {
+        // Only the first stop counts
+        if (!cell.markStopped()) {
+            return;
+        }
+        // Only remove the path if it still belongs to this actor, not one created after it
+        unregister(cell);
+        if (cell.getPassivator() != null) {
+            cell.getPassivator().remove(cell);
+        }
+        mEventStream.unsubscribe(cell.self());
+        cell.stop();
+        cell.unbind();
+        if (cell.getRouter() != null) {
+            cell.getRouter().onRouteeStopped(cell.self());
+        }
+    }
+
+    /**
+     * Returns the strategy for actors that don't have their own.
+     */
+    SupervisorStrategy getSupervisorStrategy() {
+        return mSupervisorStrategy;
     }
 
     public ActorRef getEmptyActorRef() {
-        return new ActorRefImpl(this, EMPTY_ACTOR, "/empty");
+        return mEmptyActorRef;
+    }
+
+    /**
+     * Returns the number of messages dropped because an actor's mailbox was full, with
+     * {@link Backpressure.Policy#DROP_NEWEST} or {@link Backpressure.Policy#DROP_OLDEST}.
+     */
+    public long getDroppedMessageCount() {
+        return mDroppedMessages.get();
+    }
+
+    /**
+     * Returns the number of messages rejected because an actor's mailbox was full, with
+     * {@link Backpressure.Policy#BLOCK} or {@link Backpressure.Policy#FAIL}.
+     */
+    public long getRejectedMessageCount() {
+        return mRejectedMessages.get();
+    }
+
+    /**
+     * Takes a snapshot of the system's mailbox depths, and of its latency histograms and thread
+     * utilization if metrics are enabled. Cheap enough to call every few seconds, but it does
+     * visit every live actor.
+     */
+    public MetricsSnapshot metrics() {
+        Map<String, Integer> mailboxDepths = new HashMap<>();
+        for (ActorRefImpl ref : mActors.values()) {
+            ActorCell cell = ref.getCell();
+            mailboxDepths.put(cell.path, cell.getPendingCount());
+        }
+        Map<String, int[]> namedQueueDepths = new HashMap<>();
+        for (Map.Entry<String, Dispatcher> entry : mNamedDispatchers.entrySet()) {
+            namedQueueDepths.put(entry.getKey(), entry.getValue().getQueueDepths());
+        }
+
+        if (mMetrics == null) {
+            return new MetricsSnapshot(System.currentTimeMillis(), mailboxDepths,
+                    mDispatcher.getQueueDepths(), namedQueueDepths,
+                    Collections.<MetricsSnapshot.Worker>emptyList(), Histogram.EMPTY,
+                    Histogram.EMPTY);
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), mailboxDepths,
+                mDispatcher.getQueueDepths(), namedQueueDepths, mMetrics.snapshotWorkers(),
+                mMetrics.getWaitTime(), mMetrics.getServiceTime());
+    }
+
+    void forgetAsk(AskResponder responder) {
+        if (mTransport != null) {
+            mTransport.forgetAsk(responder);
+        }
+    }
+
+    /**
+     * Returns the authority other systems reach this one by, which is
+     * {@link ActorRegistry#LOCAL_AUTHORITY} unless set with {@link Builder#authority(String)}.
+     */
+    public String getAuthority() {
+        return mTransport != null ? mTransport.getAuthority() : ActorRegistry.LOCAL_AUTHORITY;
+    }
+
+    /**
+     * Returns the address this system accepts connections from other systems on, or null if it
+     * doesn't. Useful after listening on port 0.
+     */
+    public InetSocketAddress getListenAddress() {
+        return mTransport != null ? mTransport.getAddress() : null;
+    }
+
+    private void startReporting(final MetricsReporter reporter, long period, TimeUnit unit) {
+        getTimer().schedule(new HashedWheelTimer.Timeout() {
+            @Override
+            void expire() {
+                reporter.report(metrics());
+            }
+        }, period, period, unit);
+    }
+
+    void onMessageDropped() {
+        mDroppedMessages.incrementAndGet();
+    }
+
+    void onMessageRejected() {
+        mRejectedMessages.incrementAndGet();
     }
 
     private static class EmptyActor extends Actor {}
+
+    /**
+     * Puts a router in front of a pool of actors at paths that match.
+     */
+    private static class PoolRoute {
+        final String pattern;
+        final Pool pool;
+
+        PoolRoute(String pattern, Pool pool) {
+            this.pattern = pattern;
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Passivates actors at paths that match.
+     */
+    private static class PassivationRoute {
+        final String pattern;
+        final Passivation passivation;
+
+        PassivationRoute(String pattern, Passivation passivation) {
+            this.pattern = pattern;
+            this.passivation = passivation;
+        }
+    }
+
+    /**
+     * Sends actors whose class or path matches to a named dispatcher.
+     */
+    private static class Route {
+        final Class<? extends Actor> cls;
+        final String pattern;
+        final String dispatcherName;
+
+        Route(Class<? extends Actor> cls, String pattern, String dispatcherName) {
+            this.cls = cls;
+            this.pattern = pattern;
+            this.dispatcherName = dispatcherName;
+        }
+    }
+
+    /**
+     * Builds a trie of the given patterns, in the order they were added, to their index. A
+     * pattern added more than once keeps its first index. Null patterns are left out.
+     */
+    private static PathTrie<Integer> indexPatterns(List<String> patterns) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            if (pattern == null) {
+                continue;
+            }
+            String normalized = PathTrie.normalize(pattern);
+            if (!indexes.containsKey(normalized)) {
+                indexes.put(normalized, i);
+            }
+        }
+        return PathTrie.build(indexes);
+    }
+
+    /**
+     * Configures and creates an {@link ActorSystem}.
+     *
+     * <pre>
+     * ActorSystem system = new ActorSystem.Builder()
+     *         .threads(4)
+     *         .threadNamePrefix("actors")
+     *         .daemon(true)
+     *         .dispatcher("io", new WorkStealingDispatcher(16, 1, new BlockingIdleStrategy()))
+     *         .route("/db/*", "io")
+     *         .build();
+     * </pre>
+     *
+     * Actors that don't match any route run on the default dispatcher, which binds each actor to
+     * one of {@code threads} threads.
+     */
+    public static class Builder {
+        private int mThreads = DEFAULT_THREADS;
+        private IdleStrategy mIdleStrategy = new BackoffIdleStrategy();
+        private String mThreadNamePrefix = "actors";
+        private int mThreadPriority = Thread.NORM_PRIORITY;
+        private boolean mDaemon = false;
+        private Dispatcher mDefaultDispatcher;
+        private Backpressure mBackpressure = Backpressure.UNBOUNDED;
+        private final Map<String, Dispatcher> mNamedDispatchers = new HashMap<>();
+        private final Map<String, Backpressure> mNamedBackpressure = new HashMap<>();
+        private final List<Route> mRoutes = new ArrayList<>();
+        private final List<PoolRoute> mPools = new ArrayList<>();
+        private final List<PassivationRoute> mPassivation = new ArrayList<>();
+        private boolean mMetrics = false;
+        private MetricsReporter mReporter;
+        private long mReportPeriod;
+        private TimeUnit mReportUnit;
+        private String mAuthority = ActorRegistry.LOCAL_AUTHORITY;
+        private InetSocketAddress mListenAddress;
+        private final Map<String, InetSocketAddress> mPeers = new HashMap<>();
+        private final Set<String> mAcceptedPeers = new HashSet<>();
+        private boolean mAcceptAnyPeer = false;
+        private MessageCodec mCodec = new BinaryMessageCodec();
+        private SupervisorStrategy mSupervisorStrategy = SupervisorStrategy.DEFAULT;
+
+        /**
+         * Sets the number of threads the default dispatcher uses. Defaults to the number of
+         * available cores.
+         */
+        public Builder threads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Must have at least one thread");
+            }
+            mThreads = threads;
+            return this;
+        }
+
+        /**
+         * Sets what the default dispatcher's threads do while they have no messages to process.
+         * Defaults to {@link BackoffIdleStrategy}.
+         */
+        public Builder idleStrategy(IdleStrategy idleStrategy) {
+            mIdleStrategy = idleStrategy;
+            return this;
+        }
+
+        /**
+         * Sets the prefix for the names of the default dispatcher's threads. Defaults to "actors".
+         */
+        public Builder threadNamePrefix(String prefix) {
+            mThreadNamePrefix = prefix;
+            return this;
+        }
+
+        /**
+         * Sets the priority of the default dispatcher's threads. Defaults to
+         * {@link Thread#NORM_PRIORITY}.
+         */
+        public Builder threadPriority(int priority) {
+            if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+                throw new IllegalArgumentException("Invalid thread priority " + priority);
+            }
+            mThreadPriority = priority;
+            return this;
+        }
+
+        /**
+         * Sets whether the default dispatcher's threads are daemon threads. Defaults to false.
+         */
+        public Builder daemon(boolean daemon) {
+            mDaemon = daemon;
+            return this;
+        }
+
+        /**
+         * Replaces the default dispatcher. The thread settings on this builder are then ignored.
+         */
+        public Builder dispatcher(Dispatcher dispatcher) {
+            mDefaultDispatcher = dispatcher;
+            return this;
+        }
+
+        /**
+         * Adds a named dispatcher that actors can be routed to.
+         */
+        public Builder dispatcher(String name, Dispatcher dispatcher) {
+            if (mNamedDispatchers.containsKey(name)) {
+                throw new IllegalStateException("The dispatcher " + name + " already exists");
+            }
+            mNamedDispatchers.put(name, dispatcher);
+            return this;
+        }
+
+        /**
+         * Limits the mailboxes of actors on the default dispatcher, and of actors on named
+         * dispatchers without their own limit. Actors can override this with
+         * {@link Actor#getBackpressure()}. Defaults to {@link Backpressure#UNBOUNDED}.
+         */
+        public Builder backpressure(Backpressure backpressure) {
+            mBackpressure = backpressure;
+            return this;
+        }
+
+        /**
+         * Limits the mailboxes of actors on the named dispatcher.
+         */
+        public Builder backpressure(String dispatcherName, Backpressure backpressure) {
+            mNamedBackpressure.put(dispatcherName, backpressure);
+            return this;
+        }
+
+        /**
+         * Runs actors whose path matches the pattern on the named dispatcher. Patterns use the
+         * same wildcards as {@link ActorRegistry}. Routes are checked in the order they were added.
+         */
+        public Builder route(String pathPattern, String dispatcherName) {
+            mRoutes.add(new Route(null, pathPattern, dispatcherName));
+            return this;
+        }
+
+        /**
+         * Runs actors of the given class, or any of its subclasses, on the named dispatcher.
+         * Routes are checked in the order they were added.
+         */
+        public Builder route(Class<? extends Actor> cls, String dispatcherName) {
+            mRoutes.add(new Route(cls, null, dispatcherName));
+            return this;
+        }
+
+        /**
+         * Makes {@link ActorSystem#getOrCreateActor(String, Class)} return a router for paths
+         * that match the pattern. The router sends each message to one of a pool of actors of the
+         * requested class, so the path's messages are processed in parallel. Patterns use the
+         * same wildcards as {@link ActorRegistry}, and are checked in the order they were added.
+         */
+        public Builder pool(String pathPattern, Pool pool) {
+            mPools.add(new PoolRoute(pathPattern, pool));
+            return this;
+        }
+
+        /**
+         * Passivates actors at paths that match the pattern once they're idle or there are too
+         * many of them. See {@link Passivation}. Patterns use the same wildcards as
+         * {@link ActorRegistry}, and are checked in the order they were added. Paths that match a
+         * pool are never passivated.
+         */
+        public Builder passivate(String pathPattern, Passivation passivation) {
+            mPassivation.add(new PassivationRoute(pathPattern, passivation));
+            return this;
+        }
+
+        /**
+         * Sets whether to record how long messages wait and take to process, and how busy each
+         * thread is, for {@link ActorSystem#metrics()}. Recording costs a few clock reads per
+         * message and never takes a lock. Defaults to false.
+         */
+        public Builder metrics(boolean enabled) {
+            mMetrics = enabled;
+            return this;
+        }
+
+        /**
+         * Enables metrics and passes a snapshot of them to the reporter at a fixed rate.
+         */
+        public Builder metricsReporter(MetricsReporter reporter, long period, TimeUnit unit) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("Report period must be positive");
+            }
+            mMetrics = true;
+            mReporter = reporter;
+            mReportPeriod = period;
+            mReportUnit = unit;
+            return this;
+        }
+
+        /**
+         * Sets the name other actor systems use to send to this one, as in
+         * "actor://authority/path". Needed to talk to other systems.
+         */
+        public Builder authority(String authority) {
+            if (authority.isEmpty() || authority.indexOf('/') >= 0) {
+                throw new IllegalArgumentException("Invalid authority " + authority);
+            }
+            mAuthority = authority;
+            return this;
+        }
+
+        /**
+         * Accepts connections from other processes on the same host, on the given port of the
+         * loopback address. Use port 0 to pick any free port, then
+         * {@link ActorSystem#getListenAddress()} to find it.
+         */
+        public Builder listen(int port) {
+            return listen(new InetSocketAddress("127.0.0.1", port));
+        }
+
+        /**
+         * Accepts connections from other actor systems on the given address, so they can send to
+         * actors in this one. Peers aren't authenticated, so anything that can reach the address
+         * can send messages by claiming to be a peer. An address like
+         * {@code new InetSocketAddress(port)} is reachable from every network the host is on, so
+         * only use one on a network you trust.
+         */
+        public Builder listen(InetSocketAddress address) {
+            mListenAddress = address;
+            return this;
+        }
+
+        /**
+         * Adds another actor system that this one can send to. Messages to uris with the peer's
+         * authority, like "actor://worker-2/jobs/7", are sent over a connection to its address.
+         * The peer may also connect to this system.
+         */
+        public Builder peer(String authority, InetSocketAddress address) {
+            mPeers.put(authority, address);
+            return this;
+        }
+
+        /**
+         * Lets a system that this one doesn't connect to itself connect to it. Its messages can
+         * be replied to over its connection. Connections from authorities that aren't peers or
+         * accepted are refused, unless {@link #acceptAnyPeer()} is set.
+         */
+        public Builder acceptPeer(String authority) {
+            mAcceptedPeers.add(authority);
+            return this;
+        }
+
+        /**
+         * Accepts connections from systems with any authority. Only use this if nothing you don't
+         * trust can reach the listening address.
+         */
+        public Builder acceptAnyPeer() {
+            mAcceptAnyPeer = true;
+            return this;
+        }
+
+        /**
+         * Sets how messages to and from other actor systems are encoded. Defaults to a
+         * {@link BinaryMessageCodec} without any serializable classes.
+         */
+        public Builder messageCodec(MessageCodec codec) {
+            mCodec = codec;
+            return this;
+        }
+
+        /**
+         * Sets what happens to actors that throw, unless they have a strategy of their own.
+         * Defaults to {@link SupervisorStrategy#DEFAULT}.
+         */
+        public Builder supervisorStrategy(SupervisorStrategy strategy) {
+            mSupervisorStrategy = strategy;
+            return this;
+        }
+
+        public ActorSystem build() {
+            boolean remote = mListenAddress != null || !mPeers.isEmpty();
+            if (remote && mAuthority.equals(ActorRegistry.LOCAL_AUTHORITY)) {
+                throw new IllegalStateException("Set an authority to talk to other systems");
+            }
+
+            for (Route route : mRoutes) {
+                if (!mNamedDispatchers.containsKey(route.dispatcherName)) {
+                    throw new IllegalStateException("No dispatcher named " + route.dispatcherName);
+                }
+            }
+            for (String name : mNamedBackpressure.keySet()) {
+                if (!mNamedDispatchers.containsKey(name)) {
+                    throw new IllegalStateException("No dispatcher named " + name);
+                }
+            }
+
+            Dispatcher dispatcher = mDefaultDispatcher;
+            if (dispatcher == null) {
+                ThreadFactory threadFactory = new ActorThreadFactory(mThreadNamePrefix,
+                        mThreadPriority, mDaemon);
+                dispatcher = new ThreadBoundDispatcher(mThreads, mIdleStrategy,
+                        new PowerOfTwoChoicesPlacementPolicy(), 0, threadFactory);
+            }
+            Map<Dispatcher, Backpressure> backpressure = new IdentityHashMap<>();
+            backpressure.put(dispatcher, mBackpressure);
+            for (Map.Entry<String, Dispatcher> entry : mNamedDispatchers.entrySet()) {
+                Backpressure named = mNamedBackpressure.get(entry.getKey());
+                backpressure.put(entry.getValue(), named != null ? named : mBackpressure);
+            }
+            List<String> routePatterns = new ArrayList<>();
+            for (Route route : mRoutes) {
+                routePatterns.add(route.pattern);
+            }
+            List<String> poolPatterns = new ArrayList<>();
+            for (PoolRoute pool : mPools) {
+                poolPatterns.add(pool.pattern);
+            }
+            List<String> passivationPatterns = new ArrayList<>();
+            for (PassivationRoute passivation : mPassivation) {
+                passivationPatterns.add(passivation.pattern);
+            }
+            ActorSystem system = new ActorSystem(dispatcher, new HashMap<>(mNamedDispatchers),
+                    new ArrayList<>(mRoutes), backpressure, new ArrayList<>(mPools),
+                    new ArrayList<>(mPassivation), indexPatterns(routePatterns),
+                    indexPatterns(poolPatterns), indexPatterns(passivationPatterns), mMetrics);
+            system.mSupervisorStrategy = mSupervisorStrategy;
+            if (mReporter != null) {
+                system.startReporting(mReporter, mReportPeriod, mReportUnit);
+            }
+            if (remote) {
+                try {
+                    Set<String> accepted = null;
+                    if (!mAcceptAnyPeer) {
+                        accepted = new HashSet<>(mAcceptedPeers);
+                        accepted.addAll(mPeers.keySet());
+                    }
+                    system.mTransport = new RemoteTransport(system, mAuthority, mListenAddress,
+                            new HashMap<>(mPeers), accepted, mCodec);
+                } catch (IOException e) {
+                    system.shutdown();
+                    throw new IllegalStateException("Could not listen on " + mListenAddress, e);
+                }
+            }
+            return system;
+        }
+    }
 }
@@ -0,0 +1,42 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered threads for a dispatcher, such as "actors-1", "actors-2" and so on, with the
+ * given priority and daemon flag.
+ */
+public class ActorThreadFactory implements ThreadFactory {
+    private final String mNamePrefix;
+    private final int mPriority;
+    private final boolean mDaemon;
+    private final AtomicInteger mNextThread = new AtomicInteger(1);
+
+    public ActorThreadFactory(String namePrefix) {
+        this(namePrefix, Thread.NORM_PRIORITY, false);
+    }
+
+    /**
+     * @param namePrefix threads are named with this prefix and a number
+     * @param priority priority of the threads, between {@link Thread#MIN_PRIORITY} and
+     *                 {@link Thread#MAX_PRIORITY}
+     * @param daemon whether the threads are daemon threads, which don't keep the JVM alive
+     */
+    public ActorThreadFactory(String namePrefix, int priority, boolean daemon) {
+        if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+            throw new IllegalArgumentException("Invalid thread priority " + priority);
+        }
+        mNamePrefix = namePrefix;
+        mPriority = priority;
+        mDaemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, mNamePrefix + "-" + mNextThread.getAndIncrement());
+        thread.setPriority(mPriority);
+        thread.setDaemon(mDaemon);
+        return thread;
+    }
+}
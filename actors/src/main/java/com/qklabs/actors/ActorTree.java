@@ -0,0 +1,231 @@
+package com.qklabs.actors;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The live actors of a system, arranged by the segments of their paths, so selecting the actors
+ * under a path or matching a wildcard only visits the part of the tree that matches rather than
+ * every actor.
+ *
+ * Lookups never lock. Changes to a node lock it, and a node that's left with no actor and no
+ * children is removed from its parent, so short-lived actors don't leave empty nodes behind. A
+ * removed node is marked as such, and anyone adding under it starts over from the root.
+ */
+class ActorTree {
+    static final String ANY = "*";
+    static final String NUMBER = "#";
+    // Only allowed as the last segment of a pattern
+    static final String DESCENDANTS = "**";
+
+    private final Node mRoot = new Node(null, null);
+
+    /**
+     * Adds an actor at its path.
+     */
+    void add(String path, ActorRefImpl ref) {
+        while (!tryAdd(path, ref)) {
+            // Raced with the removal of a node on the way, so start over
+        }
+        if (ref.getCell().isStopped()) {
+            // Stopped before it was added, so the stop didn't remove it
+            remove(path, ref);
+        }
+    }
+
+    private boolean tryAdd(String path, ActorRefImpl ref) {
+        Node node = mRoot;
+        int start = 0;
+        while (start < path.length()) {
+            int end = segmentEnd(path, start);
+            if (end > start) {
+                String segment = path.substring(start, end);
+                Node child = node.get(segment);
+                if (child == null) {
+                    synchronized (node) {
+                        if (node.removed) {
+                            return false;
+                        }
+                        child = node.get(segment);
+                        if (child == null) {
+                            child = new Node(node, segment);
+                            if (node.children == null) {
+                                node.children = new ConcurrentHashMap<>(4);
+                            }
+                            node.children.put(segment, child);
+                        }
+                    }
+                }
+                node = child;
+            }
+            start = end + 1;
+        }
+        synchronized (node) {
+            if (node.removed) {
+                return false;
+            }
+            node.ref = ref;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the actor at a path, if it's still the given one.
+     */
+    void remove(String path, ActorRefImpl ref) {
+        Node node = mRoot;
+        int start = 0;
+        while (start < path.length()) {
+            int end = segmentEnd(path, start);
+            if (end > start) {
+                node = node.get(path.substring(start, end));
+                if (node == null) {
+                    return;
+                }
+            }
+            start = end + 1;
+        }
+        synchronized (node) {
+            if (node.ref != ref) {
+                return;
+            }
+            node.ref = null;
+        }
+        prune(node);
+    }
+
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+
+    /**
+     * Removes empty nodes from the given one up towards the root.
+     */
+    private void prune(Node node) {
+        while (node != mRoot) {
+            Node parent = node.parent;
+            synchronized (parent) {
+                synchronized (node) {
+                    if (node.removed || node.ref != null || !node.isLeaf()) {
+                        return;
+                    }
+                    node.removed = true;
+                    parent.children.remove(node.segment, node);
+                }
+            }
+            node = parent;
+        }
+    }
+
+    void clear() {
+        synchronized (mRoot) {
+            for (Node child : mRoot.children()) {
+                markRemoved(child);
+            }
+            mRoot.children = null;
+        }
+    }
+
+    private static void markRemoved(Node node) {
+        synchronized (node) {
+            node.removed = true;
+        }
+        for (Node child : node.children()) {
+            markRemoved(child);
+        }
+    }
+
+    /**
+     * Adds the actors whose paths match a pattern to {@code out}. A "*" segment matches any one
+     * segment, a "#" segment matches one segment of digits, and a final "**" segment matches one
+     * or more segments.
+     */
+    void select(String[] pattern, List<ActorRefImpl> out) {
+        select(mRoot, pattern, 0, out);
+    }
+
+    private static void select(Node node, String[] pattern, int index, List<ActorRefImpl> out) {
+        if (index == pattern.length) {
+            ActorRefImpl ref = node.ref;
+            if (ref != null) {
+                out.add(ref);
+            }
+            return;
+        }
+
+        String segment = pattern[index];
+        if (segment.equals(DESCENDANTS)) {
+            for (Node child : node.children()) {
+                addAll(child, out);
+            }
+        } else if (segment.equals(ANY) || segment.equals(NUMBER)) {
+            boolean number = segment.equals(NUMBER);
+            for (Node child : node.children()) {
+                if (!number || isNumber(child.segment)) {
+                    select(child, pattern, index + 1, out);
+                }
+            }
+        } else {
+            Node child = node.get(segment);
+            if (child != null) {
+                select(child, pattern, index + 1, out);
+            }
+        }
+    }
+
+    private static void addAll(Node node, List<ActorRefImpl> out) {
+        ActorRefImpl ref = node.ref;
+        if (ref != null) {
+            out.add(ref);
+        }
+        for (Node child : node.children()) {
+            addAll(child, out);
+        }
+    }
+
+    private static boolean isNumber(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+        final Node parent;
+        final String segment;
+        // Created with the first child, since most nodes are leaves. Set while holding this node.
+        volatile ConcurrentHashMap<String, Node> children;
+        volatile ActorRefImpl ref;
+        // Guarded by this node
+        boolean removed = false;
+
+        Node(Node parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+
+        Node get(String segment) {
+            ConcurrentHashMap<String, Node> children = this.children;
+            return children == null ? null : children.get(segment);
+        }
+
+        Collection<Node> children() {
+            ConcurrentHashMap<String, Node> children = this.children;
+            return children == null ? Collections.<Node>emptyList() : children.values();
+        }
+
+        boolean isLeaf() {
+            ConcurrentHashMap<String, Node> children = this.children;
+            return children == null || children.isEmpty();
+        }
+    }
+}
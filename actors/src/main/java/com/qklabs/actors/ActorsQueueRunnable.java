@@ -1,16 +1,53 @@
 package com.qklabs.actors;
 
+import java.util.logging.Level;
+
 class ActorsQueueRunnable implements Runnable {
     private final MessageQueue mQueue;
+    private final IdleStrategy mIdleStrategy;
+    private final MetricsRegistry mMetrics;
 
-    public ActorsQueueRunnable(MessageQueue queue) {
+    /**
+     * @param metrics where to record the events processed, or null to not record them
+     */
+    public ActorsQueueRunnable(MessageQueue queue, IdleStrategy idleStrategy,
+                               MetricsRegistry metrics) {
         mQueue = queue;
+        mIdleStrategy = idleStrategy;
+        mMetrics = metrics;
     }
 
     @Override
     public void run() {
+        mQueue.setWorker(Thread.currentThread());
+        WorkerMetrics metrics = null;
+        if (mMetrics != null) {
+            metrics = mMetrics.newWorker(Thread.currentThread().getName());
+            mQueue.setMetrics(metrics);
+        }
+
+        int idleCount = 0;
         while (true) {
-            mQueue.processEvent();
+            boolean processed;
+            try {
+                processed = mQueue.processEvent();
+            } catch (Throwable e) {
+                // Actors' failures are handled by their supervisor strategy, so this is a bug,
+                // but it mustn't take the thread and every actor on it down with it
+                ActorSystem.LOG.log(Level.SEVERE, "Unexpected error processing an event", e);
+                processed = true;
+            }
+            if (processed) {
+                idleCount = 0;
+            } else {
+                if (metrics != null) {
+                    metrics.onIdle();
+                }
+                mIdleStrategy.idle(idleCount, mQueue);
+                if (idleCount < Integer.MAX_VALUE) {
+                    idleCount++;
+                }
+            }
             if (Thread.currentThread().isInterrupted()) {
                 break;
             }
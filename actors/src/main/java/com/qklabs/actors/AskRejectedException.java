@@ -0,0 +1,13 @@
+package com.qklabs.actors;
+
+/**
+ * Fails the {@link ActorFuture} of an ask when the actor didn't accept the message, for example
+ * because it was stopped or its mailbox is full. See {@link Backpressure}.
+ */
+public class AskRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public AskRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,102 @@
+package com.qklabs.actors;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sender of an ask. It isn't an actor and isn't registered in the system; it just completes
+ * the ask's future with the first message it's told. It's also the ask's timeout and the future's
+ * first listener, so an ask only allocates this and the future.
+ */
+class AskResponder extends HashedWheelTimer.Timeout
+        implements ActorRef, ActorFuture.Listener<Object> {
+
+    private final ActorSystem mSystem;
+    private final ActorFuture<Object> mFuture;
+    private final String mTargetPath;
+    private final long mTimeoutMillis;
+    private final long mId;
+
+    public AskResponder(ActorSystem system, ActorFuture<Object> future, String targetPath,
+                        long timeoutMillis, long id) {
+        mSystem = system;
+        mFuture = future;
+        mTargetPath = targetPath;
+        mTimeoutMillis = timeoutMillis;
+        mId = id;
+    }
+
+    @Override
+    public boolean tell(Object message, ActorRef sender) {
+        if (!mFuture.complete(message)) {
+            return false;
+        }
+        cancel();
+        return true;
+    }
+
+    @Override
+    public boolean tell(Object message) {
+        return tell(message, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages, ActorRef sender) {
+        Iterator<?> it = messages.iterator();
+        if (it.hasNext()) {
+            tell(it.next(), sender);
+        }
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages) {
+        tellAll(messages, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public ActorFuture<Object> ask(Object message, long timeout, TimeUnit unit) {
+        return mSystem.ask(this, message, timeout, unit);
+    }
+
+    @Override
+    public String getPath() {
+        return "/tmp/ask-" + mId;
+    }
+
+    /**
+     * Fails the ask right away, since the target didn't accept the message.
+     */
+    void reject() {
+        if (!cancel()) {
+            // Already replied to or timed out
+            return;
+        }
+        mSystem.forgetAsk(this);
+        mFuture.completeExceptionally(new AskRejectedException(mTargetPath
+                + " didn't accept the message"));
+    }
+
+    /**
+     * Stops waiting for a reply once the future is cancelled, rather than at the timeout.
+     */
+    @Override
+    public void onComplete(Object result, Throwable error) {
+        if (error instanceof CancellationException && cancel()) {
+            mSystem.forgetAsk(this);
+        }
+    }
+
+    @Override
+    void expire() {
+        mSystem.forgetAsk(this);
+        mFuture.completeExceptionally(new AskTimeoutException(
+                "No reply from " + mTargetPath + " within " + mTimeoutMillis + " ms"));
+    }
+
+    @Override
+    void abandon() {
+        mFuture.completeExceptionally(new IllegalStateException("The actor system was shut down"));
+    }
+}
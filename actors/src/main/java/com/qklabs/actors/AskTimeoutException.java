@@ -0,0 +1,14 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fails the {@link ActorFuture} of an ask when the actor doesn't reply in time.
+ */
+public class AskTimeoutException extends TimeoutException {
+    private static final long serialVersionUID = 1L;
+
+    public AskTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,58 @@
+package com.qklabs.actors;
+
+/**
+ * Spins, then yields, then parks for exponentially increasing amounts of time. Workers that are
+ * only briefly idle pick up new messages without a thread wakeup, while workers that stay idle
+ * settle into parking and stop using CPU.
+ */
+public class BackoffIdleStrategy implements IdleStrategy {
+    public static final int DEFAULT_MAX_SPINS = 100;
+    public static final int DEFAULT_MAX_YIELDS = 10;
+    public static final long DEFAULT_MIN_PARK_NANOS = 1000L;
+    public static final long DEFAULT_MAX_PARK_NANOS = 100L * 1000 * 1000;
+
+    private final int mMaxSpins;
+    private final int mMaxYields;
+    private final long mMinParkNanos;
+    private final long mMaxParkNanos;
+
+    public BackoffIdleStrategy() {
+        this(DEFAULT_MAX_SPINS, DEFAULT_MAX_YIELDS, DEFAULT_MIN_PARK_NANOS,
+                DEFAULT_MAX_PARK_NANOS);
+    }
+
+    /**
+     * @param maxSpins number of idle iterations to spin for before yielding
+     * @param maxYields number of idle iterations to yield for before parking
+     * @param minParkNanos how long to park for the first time
+     * @param maxParkNanos the longest the worker will park for at once
+     */
+    public BackoffIdleStrategy(int maxSpins, int maxYields, long minParkNanos, long maxParkNanos) {
+        if (maxSpins < 0 || maxYields < 0 || minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("Invalid backoff parameters");
+        }
+        mMaxSpins = maxSpins;
+        mMaxYields = maxYields;
+        mMinParkNanos = minParkNanos;
+        mMaxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void idle(int idleCount, Parker parker) {
+        if (idleCount < mMaxSpins) {
+            return;
+        }
+        if (idleCount < mMaxSpins + mMaxYields) {
+            Thread.yield();
+            return;
+        }
+
+        // Double the park time for every idle iteration, up to the maximum
+        int parks = idleCount - mMaxSpins - mMaxYields;
+        long nanos = mMinParkNanos;
+        for (int i = 0; i < parks && nanos < mMaxParkNanos; i++) {
+            nanos <<= 1;
+        }
+        parker.parkNanos(Math.min(nanos, mMaxParkNanos));
+    }
+}
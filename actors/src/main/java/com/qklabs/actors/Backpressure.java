@@ -0,0 +1,101 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many messages can be waiting for an actor, and says what happens to messages sent
+ * while it's full. Without a limit, an actor that falls behind its senders queues messages until
+ * the app runs out of memory.
+ *
+ * Messages that are dropped or rejected are counted by
+ * {@link ActorSystem#getDroppedMessageCount()} and {@link ActorSystem#getRejectedMessageCount()}.
+ */
+public final class Backpressure {
+
+    public enum Policy {
+        /**
+         * No limit.
+         */
+        UNBOUNDED,
+        /**
+         * Drops the message being sent, and {@code tell} returns false.
+         */
+        DROP_NEWEST,
+        /**
+         * Drops the oldest message that the actor hasn't started processing, so that the actor
+         * always sees the latest messages. {@code tell} returns true. If the actor falls further
+         * behind than twice its capacity, new messages are dropped instead so memory stays
+         * bounded.
+         */
+        DROP_OLDEST,
+        /**
+         * Blocks the sender until there's room or the timeout passes, in which case {@code tell}
+         * returns false. Don't use this for actors that other actors send to, or a full actor can
+         * stall every thread in the system. Messages from other actor systems are rejected right
+         * away instead, since waiting would stall every connection.
+         */
+        BLOCK,
+        /**
+         * Rejects the message right away, and {@code tell} returns false so the sender can decide
+         * what to do.
+         */
+        FAIL
+    }
+
+    /**
+     * The default, which never limits the mailbox.
+     */
+    public static final Backpressure UNBOUNDED = new Backpressure(Policy.UNBOUNDED, 0, 0);
+
+    final Policy policy;
+    final int capacity;
+    final long timeoutNanos;
+
+    private Backpressure(Policy policy, int capacity, long timeoutNanos) {
+        this.policy = policy;
+        this.capacity = capacity;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    public static Backpressure dropNewest(int capacity) {
+        return new Backpressure(Policy.DROP_NEWEST, checkCapacity(capacity), 0);
+    }
+
+    public static Backpressure dropOldest(int capacity) {
+        return new Backpressure(Policy.DROP_OLDEST, checkCapacity(capacity), 0);
+    }
+
+    public static Backpressure block(int capacity, long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        return new Backpressure(Policy.BLOCK, checkCapacity(capacity), unit.toNanos(timeout));
+    }
+
+    public static Backpressure fail(int capacity) {
+        return new Backpressure(Policy.FAIL, checkCapacity(capacity), 0);
+    }
+
+    private static int checkCapacity(int capacity) {
+        // Leave room to count past the capacity when dropping the oldest messages
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        return capacity;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the most messages that can be waiting for the actor, or 0 if there's no limit.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    boolean isBounded() {
+        return policy != Policy.UNBOUNDED;
+    }
+}
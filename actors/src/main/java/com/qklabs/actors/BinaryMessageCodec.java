@@ -0,0 +1,188 @@
+package com.qklabs.actors;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The default {@link MessageCodec}. Strings, boxed primitives, byte arrays and
+ * {@link PoisonPill} are written as a one byte tag followed by their value. To write your own
+ * message types compactly, implement {@link MessageCodec} and hand everything else to this one.
+ *
+ * Other {@link Serializable} classes can fall back to Java serialization, which is much bigger
+ * and slower, but only if they're passed to the constructor. Deserializing whatever a peer sends
+ * would let anyone who can connect run code in this process, so only the listed classes, the
+ * boxed primitives, String and arrays of them are read, and anything else is dropped.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Classes that serialized messages may always contain
+    private static final Class<?>[] SAFE_CLASSES = {String.class, Boolean.class, Byte.class,
+            Character.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            Number.class, Enum.class};
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte BYTES = 6;
+    private static final byte POISON_PILL = 7;
+    private static final byte SERIALIZABLE = 8;
+
+    // The names of the classes Java serialization may read
+    private final Set<String> mSerializable = new HashSet<>();
+
+    /**
+     * Creates a codec that only writes the built in types, and no other serializable classes.
+     */
+    public BinaryMessageCodec() {
+        this(new Class<?>[0]);
+    }
+
+    /**
+     * Creates a codec that also writes the given classes with Java serialization. List every
+     * class that can appear in those messages, including the classes of their fields.
+     */
+    public BinaryMessageCodec(Class<?>... serializableClasses) {
+        for (Class<?> cls : SAFE_CLASSES) {
+            mSerializable.add(cls.getName());
+        }
+        for (Class<?> cls : serializableClasses) {
+            mSerializable.add(cls.getName());
+        }
+    }
+
+    @Override
+    public void encode(Object message, DataOutputStream out) throws IOException {
+        if (message == null) {
+            out.writeByte(NULL);
+        } else if (message instanceof String) {
+            // Not writeUTF, which can't write strings over 64 KB
+            out.writeByte(STRING);
+            writeBytes(((String) message).getBytes(UTF_8), out);
+        } else if (message instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) message);
+        } else if (message instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) message);
+        } else if (message instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) message);
+        } else if (message instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) message);
+        } else if (message instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes((byte[]) message, out);
+        } else if (message instanceof PoisonPill) {
+            out.writeByte(POISON_PILL);
+        } else if (message instanceof Serializable
+                && mSerializable.contains(message.getClass().getName())) {
+            out.writeByte(SERIALIZABLE);
+            ObjectOutputStream objects = new ObjectOutputStream(out);
+            objects.writeObject(message);
+            objects.flush();
+        } else {
+            throw new NotSerializableException(message.getClass().getName());
+        }
+    }
+
+    @Override
+    public Object decode(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(readBytes(in), UTF_8);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTES:
+                return readBytes(in);
+            case POISON_PILL:
+                return new PoisonPill();
+            case SERIALIZABLE:
+                try {
+                    return new AllowListInputStream(in).readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown message class", e);
+                }
+            default:
+                throw new IOException("Unknown message tag " + tag);
+        }
+    }
+
+    /**
+     * Only reads the classes the codec was created with, checking each by name before it's
+     * loaded.
+     */
+    private class AllowListInputStream extends ObjectInputStream {
+        AllowListInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            // Arrays are named like "[[Lcom.example.Job;", or "[I" for primitives
+            int dimensions = 0;
+            while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+                dimensions++;
+            }
+            String element = name.substring(dimensions);
+            boolean allowed;
+            if (dimensions > 0 && element.length() == 1) {
+                allowed = true;
+            } else {
+                if (dimensions > 0 && element.startsWith("L") && element.endsWith(";")) {
+                    element = element.substring(1, element.length() - 1);
+                }
+                allowed = mSerializable.contains(element);
+            }
+            if (!allowed) {
+                throw new InvalidClassException(name, "Not a serializable message class");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes aren't allowed in messages");
+        }
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutputStream out) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
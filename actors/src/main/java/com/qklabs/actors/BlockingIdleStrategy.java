@@ -0,0 +1,13 @@
+package com.qklabs.actors;
+
+/**
+ * Parks idle workers until a message is sent to their queue. Idle workers use no CPU at all, but
+ * every message sent to an idle worker pays the cost of waking up a thread.
+ */
+public class BlockingIdleStrategy implements IdleStrategy {
+
+    @Override
+    public void idle(int idleCount, Parker parker) {
+        parker.park();
+    }
+}
@@ -0,0 +1,12 @@
+package com.qklabs.actors;
+
+/**
+ * Sends every message to every routee.
+ */
+public class BroadcastRoutingLogic implements RoutingLogic {
+
+    @Override
+    public int select(Object message, Routees routees) {
+        return ALL;
+    }
+}
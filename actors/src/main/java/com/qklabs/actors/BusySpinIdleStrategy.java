@@ -0,0 +1,13 @@
+package com.qklabs.actors;
+
+/**
+ * Never gives up the CPU, so messages are picked up with the lowest possible latency. Every worker
+ * thread will use a full core even when there are no messages, so this should only be used for
+ * latency-critical deployments with cores to spare.
+ */
+public class BusySpinIdleStrategy implements IdleStrategy {
+
+    @Override
+    public void idle(int idleCount, Parker parker) {
+    }
+}
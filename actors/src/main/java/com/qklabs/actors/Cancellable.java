@@ -0,0 +1,14 @@
+package com.qklabs.actors;
+
+/**
+ * Something scheduled that can be called off, such as a message from {@link Scheduler}.
+ */
+public interface Cancellable {
+    /**
+     * Cancels it, if it hasn't already happened.
+     * @return true if this cancelled it, false if it was already cancelled or has happened
+     */
+    public boolean cancel();
+
+    public boolean isCancelled();
+}
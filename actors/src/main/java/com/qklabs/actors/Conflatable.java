@@ -0,0 +1,14 @@
+package com.qklabs.actors;
+
+/**
+ * A message where only the latest value for its key matters, such as a position update. Sent to
+ * an actor whose {@link Actor#isConflating()} is true, it replaces any message with the same key
+ * that the actor hasn't started processing yet, and takes that message's place in the queue.
+ */
+public interface Conflatable {
+    /**
+     * Returns the key that identifies which messages replace each other. Must have consistent
+     * equals and hashCode methods.
+     */
+    public Object getConflationKey();
+}
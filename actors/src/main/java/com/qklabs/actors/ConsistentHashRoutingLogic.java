@@ -0,0 +1,68 @@
+package com.qklabs.actors;
+
+/**
+ * Sends messages with the same key to the same routee, so a routee can keep state for its keys,
+ * such as a cache per user.
+ *
+ * Uses jump consistent hashing, so when a pool grows from n to n + 1 routees only 1 / (n + 1) of
+ * the keys move to a different routee, and it needs no memory or locking.
+ */
+public class ConsistentHashRoutingLogic implements RoutingLogic {
+
+    /**
+     * Implemented by messages that know their own key.
+     */
+    public interface Hashable {
+        Object getHashKey();
+    }
+
+    /**
+     * Extracts the key from messages that don't implement {@link Hashable}.
+     */
+    public interface KeyMapper {
+        Object getHashKey(Object message);
+    }
+
+    private final KeyMapper mKeyMapper;
+
+    /**
+     * Uses the key of {@link Hashable} messages, and the message itself for everything else.
+     */
+    public ConsistentHashRoutingLogic() {
+        this(null);
+    }
+
+    public ConsistentHashRoutingLogic(KeyMapper keyMapper) {
+        mKeyMapper = keyMapper;
+    }
+
+    @Override
+    public int select(Object message, Routees routees) {
+        Object key;
+        if (message instanceof Hashable) {
+            key = ((Hashable) message).getHashKey();
+        } else if (mKeyMapper != null) {
+            key = mKeyMapper.getHashKey(message);
+        } else {
+            key = message;
+        }
+        return jumpHash(key == null ? 0 : key.hashCode(), routees.count());
+    }
+
+    /**
+     * Jump consistent hash, from "A Fast, Minimal Memory, Consistent Hash Algorithm" by Lamping
+     * and Veach.
+     */
+    static int jumpHash(long key, int buckets) {
+        // Spread the bits of the hash code first, since many hash codes are small integers
+        key *= 0x9E3779B97F4A7C15L;
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+}
@@ -0,0 +1,42 @@
+package com.qklabs.actors;
+
+/**
+ * A Dispatcher decides which threads an {@link ActorSystem}'s actors run on. Each actor system
+ * needs its own dispatcher.
+ *
+ * @see ThreadBoundDispatcher
+ * @see WorkStealingDispatcher
+ */
+public abstract class Dispatcher {
+
+    Dispatcher() {
+    }
+
+    /**
+     * Starts the dispatcher's threads. Called once by the actor system that owns it.
+     * @param metrics where each thread registers to record the events it processes, or null if
+     *                metrics are disabled
+     */
+    abstract void start(MetricsRegistry metrics);
+
+    /**
+     * Returns the mailbox that events for the given actor should be sent to.
+     */
+    abstract Mailbox bind(ActorCell cell);
+
+    /**
+     * Called when an actor is stopped. Its stop event may not have been processed yet.
+     */
+    void unbind(ActorCell cell) {
+    }
+
+    /**
+     * Returns the number of things waiting in each of the dispatcher's queues, for metrics.
+     */
+    abstract int[] getQueueDepths();
+
+    /**
+     * Stops the dispatcher's threads, waiting up to the given time for them to finish.
+     */
+    abstract void shutdown(long timeoutMillis) throws InterruptedException;
+}
@@ -0,0 +1,102 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs actors on a thread the host already has, such as an event loop, a game loop or a test,
+ * instead of starting threads of its own. Nothing is processed until the host calls
+ * {@link ActorSystem#runOnce(int)} or {@link ActorSystem#runUntilIdle()}, which process events
+ * inline on the calling thread:
+ *
+ * <pre>
+ * ActorSystem system = new ActorSystem.Builder()
+ *         .dispatcher(new EmbeddedDispatcher())
+ *         .build();
+ * system.getOrCreateActor("/actor", MyActor.class).tell("hello");
+ * system.runUntilIdle();
+ * </pre>
+ *
+ * Every actor shares one queue, so with a single sending thread, events are processed in exactly
+ * the order they were sent and a run is fully deterministic. Any thread may send messages, but
+ * only one thread may run the dispatcher at a time.
+ */
+public class EmbeddedDispatcher extends Dispatcher {
+    private final MessageQueue mQueue;
+    private final AtomicBoolean mRunning = new AtomicBoolean(false);
+    private MetricsRegistry mMetrics;
+    // Only touched while running
+    private WorkerMetrics mWorkerMetrics;
+
+    public EmbeddedDispatcher() {
+        this(MessageQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of events the queue holds before it spills over into a slower
+     *                 unbounded queue
+     */
+    public EmbeddedDispatcher(int capacity) {
+        mQueue = new MessageQueue(capacity);
+    }
+
+    @Override
+    void start(MetricsRegistry metrics) {
+        mMetrics = metrics;
+        if (metrics != null) {
+            mQueue.enableTiming();
+        }
+    }
+
+    @Override
+    Mailbox bind(ActorCell cell) {
+        return mQueue;
+    }
+
+    @Override
+    int[] getQueueDepths() {
+        return new int[] {mQueue.size()};
+    }
+
+    @Override
+    void shutdown(long timeoutMillis) {
+    }
+
+    /**
+     * Processes up to the given number of events on the calling thread.
+     * @return the number of events processed, which is less than the maximum if the queue ran
+     *         out
+     */
+    int runOnce(int maxEvents) {
+        if (!mRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("EmbeddedDispatcher is already running");
+        }
+        return run(maxEvents);
+    }
+
+    /**
+     * Like {@link #runOnce(int)}, but does nothing if another thread is already running the
+     * dispatcher.
+     */
+    int runIfNotRunning(int maxEvents) {
+        if (!mRunning.compareAndSet(false, true)) {
+            return 0;
+        }
+        return run(maxEvents);
+    }
+
+    private int run(int maxEvents) {
+        try {
+            if (mMetrics != null && mWorkerMetrics == null) {
+                mWorkerMetrics = mMetrics.newWorker(Thread.currentThread().getName());
+                mQueue.setMetrics(mWorkerMetrics);
+            }
+            int processed = 0;
+            while (processed < maxEvents && mQueue.processEvent()) {
+                processed++;
+            }
+            return processed;
+        } finally {
+            mRunning.set(false);
+        }
+    }
+}
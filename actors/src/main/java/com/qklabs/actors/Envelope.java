@@ -0,0 +1,153 @@
+package com.qklabs.actors;
+
+import java.util.List;
+
+/**
+ * A message and the actor that sent it, as passed to {@link Actor#onReceiveBatch(List)}.
+ *
+ * Envelopes are also the reusable slots of a {@link MessageQueue}. They store the target, message
+ * and sender directly, so sending a message doesn't need to allocate a task to run it. Because
+ * envelopes are reused, an actor must not hold on to one after onReceiveBatch returns.
+ */
+public class Envelope {
+    static final int MESSAGE = 0;
+    static final int START = 1;
+    static final int STOP = 2;
+    // A turn for an actor with a priority mailbox, which takes its message from the actor's cell
+    static final int PRIORITY_TURN = 3;
+    // A turn for the latest message with a key, which is kept in the actor's cell. The key is
+    // stored as the turn's message.
+    static final int CONFLATED_TURN = 4;
+    // Ends an actor's restart backoff
+    static final int RESUME = 5;
+
+    int kind;
+    ActorCell target;
+    Object message;
+    ActorRef sender;
+    // When the event was queued, if its mailbox is timed for metrics
+    long enqueuedAt;
+
+    /**
+     * Ring buffer sequence number used to hand the envelope between producers and the consumer.
+     * Writes to the other fields are published by writing this field.
+     */
+    volatile long sequence;
+
+    Envelope() {
+    }
+
+    Envelope(int kind, ActorCell target, Object message, ActorRef sender) {
+        set(kind, target, message, sender);
+    }
+
+    void set(int kind, ActorCell target, Object message, ActorRef sender) {
+        this.kind = kind;
+        this.target = target;
+        this.message = message;
+        this.sender = sender;
+    }
+
+    public Object getMessage() {
+        return message;
+    }
+
+    public ActorRef getSender() {
+        return sender;
+    }
+
+    void clear() {
+        target = null;
+        message = null;
+        sender = null;
+    }
+
+    /**
+     * Delivers an event to its target actor.
+     */
+    static void deliver(int kind, ActorCell target, Object message, ActorRef sender) {
+        if (target.isSuspended() && kind != STOP && kind != RESUME) {
+            // Kept until the actor is restarted, turns included so they're taken in order then
+            target.stash(kind, message, sender);
+            return;
+        }
+        if (kind == PRIORITY_TURN) {
+            Envelope next = target.pollPriorityMessage();
+            kind = MESSAGE;
+            message = next.message;
+            sender = next.sender;
+        } else if (kind == CONFLATED_TURN) {
+            Envelope latest = target.takeConflated(message);
+            kind = MESSAGE;
+            message = latest.message;
+            sender = latest.sender;
+        }
+        if (kind == MESSAGE && (target.isStopped() || target.skipDropped())) {
+            // Messages left over after the actor was stopped, or dropped for newer ones
+            target.onProcessed(1);
+            return;
+        }
+        if (kind == MESSAGE && target.isBatching()) {
+            // Batching actors get every message through onReceiveBatch
+            target.addToBatch(message, sender);
+            deliverBatch(target);
+            return;
+        }
+
+        try {
+            switch (kind) {
+                case MESSAGE:
+                    target.actor.onReceive(message, sender);
+                    break;
+                case START:
+                    target.actor.preStart();
+                    break;
+                case STOP:
+                    target.actor.postStop();
+                    break;
+                case RESUME:
+                    target.onResume();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown envelope kind " + kind);
+            }
+        } catch (Throwable e) {
+            target.onFailure(kind, e);
+        } finally {
+            target.onProcessed(1);
+        }
+    }
+
+    /**
+     * Delivers the messages collected in the target's batch.
+     */
+    static void deliverBatch(ActorCell target) {
+        int count = target.getBatchSize();
+        if (count == 0) {
+            // Every message was dropped
+            return;
+        }
+        if (target.isStopped()) {
+            target.clearBatch();
+            target.onProcessed(count);
+            return;
+        }
+        List<Envelope> batch = target.getBatch();
+        if (target.isSuspended()) {
+            // The batch's envelopes are reused, so stash copies
+            for (Envelope envelope : batch) {
+                target.stash(MESSAGE, envelope.message, envelope.sender);
+            }
+            target.clearBatch();
+            return;
+        }
+        try {
+            target.actor.onReceiveBatch(batch);
+        } catch (Throwable e) {
+            target.onFailure(MESSAGE, e);
+        } finally {
+            target.clearBatch();
+            target.onProcessed(count);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Publishes events to whichever actors have subscribed to them, so publishers don't need to keep
+ * track of their subscribers. Actors subscribe to a class of event, which also matches its
+ * subclasses, or to a topic pattern like "/prices/*", with the same wildcards as
+ * {@link ActorRegistry}. Get a system's event stream with {@link ActorSystem#eventStream()}.
+ *
+ * Subscriptions are kept in an immutable index that's copied whenever they change, so publishing
+ * never takes a lock. A published event is sent to every subscriber as the same message, with a
+ * single enqueue per mailbox as with {@link ActorSystem#broadcast(java.util.Collection, Object,
+ * ActorRef)}, so events should be immutable. Actors are unsubscribed from everything when they're
+ * stopped or passivated.
+ */
+public final class EventStream {
+    private static final int TOPIC_CACHE_SIZE = 256;
+
+    private final ActorSystem mSystem;
+    private final Object mLock = new Object();
+    // Replaced on every change, while holding mLock
+    private volatile Index mIndex = new Index(
+            Collections.<Class<?>, Set<ActorRef>>emptyMap(),
+            Collections.<String, Set<ActorRef>>emptyMap());
+
+    EventStream(ActorSystem system) {
+        mSystem = system;
+    }
+
+    /**
+     * Subscribes an actor to events of the given class and its subclasses.
+     */
+    public void subscribe(ActorRef subscriber, Class<?> eventClass) {
+        synchronized (mLock) {
+            Map<Class<?>, Set<ActorRef>> byClass = copy(mIndex.byClass);
+            add(byClass, eventClass, subscriber);
+            mIndex = new Index(byClass, mIndex.byTopic);
+        }
+    }
+
+    /**
+     * Subscribes an actor to the topics matching a pattern. A "*" segment matches any one
+     * segment, and a "#" segment matches one segment of digits.
+     */
+    public void subscribe(ActorRef subscriber, String topicPattern) {
+        String pattern = PathTrie.normalize(topicPattern);
+        synchronized (mLock) {
+            Map<String, Set<ActorRef>> byTopic = copy(mIndex.byTopic);
+            add(byTopic, pattern, subscriber);
+            mIndex = new Index(mIndex.byClass, byTopic);
+        }
+    }
+
+    /**
+     * @return false if the actor wasn't subscribed to the class
+     */
+    public boolean unsubscribe(ActorRef subscriber, Class<?> eventClass) {
+        synchronized (mLock) {
+            Map<Class<?>, Set<ActorRef>> byClass = copy(mIndex.byClass);
+            if (!remove(byClass, eventClass, subscriber)) {
+                return false;
+            }
+            mIndex = new Index(byClass, mIndex.byTopic);
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the actor wasn't subscribed to the pattern
+     */
+    public boolean unsubscribe(ActorRef subscriber, String topicPattern) {
+        String pattern = PathTrie.normalize(topicPattern);
+        synchronized (mLock) {
+            Map<String, Set<ActorRef>> byTopic = copy(mIndex.byTopic);
+            if (!remove(byTopic, pattern, subscriber)) {
+                return false;
+            }
+            mIndex = new Index(mIndex.byClass, byTopic);
+            return true;
+        }
+    }
+
+    /**
+     * Unsubscribes an actor from everything.
+     */
+    public void unsubscribe(ActorRef subscriber) {
+        // Checked without the lock, since most actors that stop never subscribed
+        if (!mIndex.subscribers.contains(subscriber)) {
+            return;
+        }
+        synchronized (mLock) {
+            Map<Class<?>, Set<ActorRef>> byClass = copy(mIndex.byClass);
+            for (Class<?> eventClass : new ArrayList<>(byClass.keySet())) {
+                remove(byClass, eventClass, subscriber);
+            }
+            Map<String, Set<ActorRef>> byTopic = copy(mIndex.byTopic);
+            for (String pattern : new ArrayList<>(byTopic.keySet())) {
+                remove(byTopic, pattern, subscriber);
+            }
+            mIndex = new Index(byClass, byTopic);
+        }
+    }
+
+    /**
+     * Sends an event to the actors subscribed to its class or any of its superclasses and
+     * interfaces.
+     */
+    public void publish(Object event) {
+        publish(event, mSystem.getEmptyActorRef());
+    }
+
+    public void publish(Object event, ActorRef sender) {
+        send(mIndex.subscribersOf(event.getClass()), event, sender);
+    }
+
+    /**
+     * Sends an event to the actors subscribed to a pattern matching the topic.
+     */
+    public void publish(String topic, Object event) {
+        publish(topic, event, mSystem.getEmptyActorRef());
+    }
+
+    public void publish(String topic, Object event, ActorRef sender) {
+        send(mIndex.subscribersOf(topic), event, sender);
+    }
+
+    private void send(ActorRef[] subscribers, Object event, ActorRef sender) {
+        if (subscribers.length == 1) {
+            subscribers[0].tell(event, sender);
+        } else if (subscribers.length > 1) {
+            mSystem.broadcast(Arrays.asList(subscribers), event, sender);
+        }
+    }
+
+    private static <K> Map<K, Set<ActorRef>> copy(Map<K, Set<ActorRef>> map) {
+        // The sets are copied when they change, so they can be shared
+        return new LinkedHashMap<>(map);
+    }
+
+    private static <K> void add(Map<K, Set<ActorRef>> map, K key, ActorRef subscriber) {
+        Set<ActorRef> subscribers = map.get(key);
+        Set<ActorRef> copy = subscribers == null
+                ? new LinkedHashSet<ActorRef>() : new LinkedHashSet<>(subscribers);
+        copy.add(subscriber);
+        map.put(key, copy);
+    }
+
+    private static <K> boolean remove(Map<K, Set<ActorRef>> map, K key, ActorRef subscriber) {
+        Set<ActorRef> subscribers = map.get(key);
+        if (subscribers == null || !subscribers.contains(subscriber)) {
+            return false;
+        }
+        Set<ActorRef> copy = new LinkedHashSet<>(subscribers);
+        copy.remove(subscriber);
+        if (copy.isEmpty()) {
+            map.remove(key);
+        } else {
+            map.put(key, copy);
+        }
+        return true;
+    }
+
+    /**
+     * An immutable snapshot of the subscriptions. Resolving which actors receive an event is
+     * cached, so publishing the same class or topic again doesn't allocate anything but the
+     * send itself.
+     */
+    private static final class Index {
+        private static final ActorRef[] NONE = new ActorRef[0];
+
+        final Map<Class<?>, Set<ActorRef>> byClass;
+        final Map<String, Set<ActorRef>> byTopic;
+        final Set<ActorRef> subscribers = new HashSet<>();
+        private final PathTrie<Set<ActorRef>> mTopics;
+        private final ConcurrentHashMap<Class<?>, ActorRef[]> mResolvedClasses =
+                new ConcurrentHashMap<>();
+        // Direct-mapped cache of recently published topics
+        private final AtomicReferenceArray<TopicEntry> mResolvedTopics =
+                new AtomicReferenceArray<>(TOPIC_CACHE_SIZE);
+
+        Index(Map<Class<?>, Set<ActorRef>> byClass, Map<String, Set<ActorRef>> byTopic) {
+            this.byClass = byClass;
+            this.byTopic = byTopic;
+            mTopics = PathTrie.build(byTopic);
+            for (Set<ActorRef> each : byClass.values()) {
+                subscribers.addAll(each);
+            }
+            for (Set<ActorRef> each : byTopic.values()) {
+                subscribers.addAll(each);
+            }
+        }
+
+        ActorRef[] subscribersOf(Class<?> eventClass) {
+            ActorRef[] resolved = mResolvedClasses.get(eventClass);
+            if (resolved != null) {
+                return resolved;
+            }
+            Set<ActorRef> matching = new LinkedHashSet<>();
+            for (Map.Entry<Class<?>, Set<ActorRef>> entry : byClass.entrySet()) {
+                if (entry.getKey().isAssignableFrom(eventClass)) {
+                    matching.addAll(entry.getValue());
+                }
+            }
+            resolved = toArray(matching);
+            mResolvedClasses.put(eventClass, resolved);
+            return resolved;
+        }
+
+        ActorRef[] subscribersOf(String topic) {
+            if (byTopic.isEmpty()) {
+                return NONE;
+            }
+            int index = (topic.hashCode() ^ (topic.hashCode() >>> 16)) & (TOPIC_CACHE_SIZE - 1);
+            TopicEntry cached = mResolvedTopics.get(index);
+            if (cached != null && cached.topic.equals(topic)) {
+                return cached.subscribers;
+            }
+            List<Set<ActorRef>> matches = new ArrayList<>();
+            mTopics.matchAll(topic, matches);
+            Set<ActorRef> matching = new LinkedHashSet<>();
+            for (Set<ActorRef> each : matches) {
+                matching.addAll(each);
+            }
+            ActorRef[] resolved = toArray(matching);
+            mResolvedTopics.set(index, new TopicEntry(topic, resolved));
+            return resolved;
+        }
+
+        private static ActorRef[] toArray(Set<ActorRef> subscribers) {
+            return subscribers.isEmpty() ? NONE : subscribers.toArray(new ActorRef[0]);
+        }
+    }
+
+    private static final class TopicEntry {
+        final String topic;
+        final ActorRef[] subscribers;
+
+        TopicEntry(String topic, ActorRef[] subscribers) {
+            this.topic = topic;
+            this.subscribers = subscribers;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Runs timeouts on a single thread using a hashed timing wheel, which makes scheduling and
+ * cancelling O(1) no matter how many timeouts are pending.
+ *
+ * The wheel is a ring of buckets, each a linked list of timeouts. The timer thread wakes up once
+ * per tick, moves newly scheduled timeouts into their buckets, and expires the bucket for the
+ * current tick. Timeouts further away than one turn of the wheel wait out the extra rounds in
+ * their bucket. Timeouts may therefore fire up to one tick late, but never early.
+ */
+class HashedWheelTimer implements Runnable {
+    static final long DEFAULT_TICK_MILLIS = 10;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long mTickNanos;
+    private final Bucket[] mWheel;
+    private final int mMask;
+    private final long mStartTime;
+    // Timeouts are handed to the timer thread through these, so only it touches the buckets
+    private final ConcurrentLinkedQueue<Timeout> mScheduled = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> mCancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+    private final Thread mThread;
+    private volatile boolean mShutdown = false;
+    // Only used by the timer thread
+    private long mTick = 0;
+
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tick how often the timer wakes up, which is how precise it is
+     * @param unit the unit of tick
+     * @param wheelSize number of buckets in the wheel. Rounded up to a power of two.
+     */
+    public HashedWheelTimer(long tick, TimeUnit unit, int wheelSize) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("Wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        mTickNanos = unit.toNanos(tick);
+        mWheel = new Bucket[size];
+        mMask = size - 1;
+        for (int i = 0; i < size; i++) {
+            mWheel[i] = new Bucket();
+        }
+        mStartTime = System.nanoTime();
+        mThread = new ActorThreadFactory("actors-timer", Thread.NORM_PRIORITY, true)
+                .newThread(this);
+        mThread.start();
+    }
+
+    /**
+     * Schedules a timeout to expire after the delay. Safe to call from any thread.
+     */
+    public void schedule(Timeout timeout, long delay, TimeUnit unit) {
+        schedule(timeout, delay, 0, unit);
+    }
+
+    /**
+     * Schedules a timeout to expire after the initial delay, and then once every period until
+     * it's cancelled. Safe to call from any thread.
+     */
+    public void schedule(Timeout timeout, long initialDelay, long period, TimeUnit unit) {
+        if (mShutdown) {
+            throw new IllegalStateException("Cannot schedule after shutdown() is called");
+        }
+        timeout.timer = this;
+        timeout.deadline = System.nanoTime() - mStartTime
+                + Math.max(0, unit.toNanos(initialDelay));
+        timeout.period = unit.toNanos(period);
+        mPendingCount.incrementAndGet();
+        mScheduled.add(timeout);
+    }
+
+    /**
+     * Returns the number of timeouts that haven't expired or been cancelled.
+     */
+    int pendingCount() {
+        return mPendingCount.get();
+    }
+
+    @Override
+    public void run() {
+        while (!mShutdown) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            removeCancelled();
+            transferScheduled();
+            expire(mWheel[(int) mTick & mMask]);
+            mTick++;
+        }
+
+        // Let whatever is still pending know it won't expire
+        removeCancelled();
+        List<Timeout> abandoned = new ArrayList<>();
+        for (Bucket bucket : mWheel) {
+            bucket.drainTo(abandoned);
+        }
+        Timeout timeout;
+        while ((timeout = mScheduled.poll()) != null) {
+            abandoned.add(timeout);
+        }
+        for (Timeout each : abandoned) {
+            if (each.finish(Timeout.PENDING)) {
+                each.abandon();
+            }
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                bucket.remove(timeout);
+                if (timeout.start()) {
+                    try {
+                        timeout.expire();
+                    } catch (RuntimeException e) {
+                        ActorSystem.LOG.warning("Timeout threw " + e);
+                    }
+                    if (timeout.period <= 0 || !timeout.repeat()) {
+                        timeout.finish(Timeout.RUNNING);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     * @return false if the timer was shut down
+     */
+    private boolean waitForNextTick() {
+        long deadline = mTickNanos * (mTick + 1);
+        while (true) {
+            long remaining = deadline - (System.nanoTime() - mStartTime);
+            if (remaining <= 0) {
+                return true;
+            }
+            try {
+                Thread.sleep((remaining + 999999) / 1000000);
+            } catch (InterruptedException e) {
+                if (mShutdown) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = mScheduled.poll()) != null) {
+            if (!timeout.isCancelled()) {
+                add(timeout);
+            }
+        }
+    }
+
+    private void add(Timeout timeout) {
+        long ticks = timeout.deadline / mTickNanos;
+        timeout.remainingRounds = (ticks - mTick) / mWheel.length;
+        // Timeouts that are already due go in the current bucket, rather than one we've passed
+        mWheel[(int) Math.max(ticks, mTick) & mMask].add(timeout);
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = mCancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Stops the timer thread. Timeouts that haven't expired are abandoned.
+     */
+    public void shutdown() {
+        mShutdown = true;
+        mThread.interrupt();
+    }
+
+    /**
+     * Something to do when a timeout expires. Each instance can only be scheduled once, but a
+     * periodic timeout keeps expiring until it's cancelled.
+     */
+    abstract static class Timeout implements Cancellable {
+        static final int PENDING = 0;
+        static final int RUNNING = 1;
+        static final int CANCELLED = 2;
+        static final int DONE = 3;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "mState");
+
+        private volatile int mState = PENDING;
+        HashedWheelTimer timer;
+        // Relative to the timer's start time
+        long deadline;
+        long period;
+        // Only used by the timer thread
+        long remainingRounds;
+        Bucket bucket;
+        Timeout next;
+        Timeout prev;
+
+        /**
+         * Called on the timer thread when the timeout expires.
+         */
+        abstract void expire();
+
+        /**
+         * Called on the timer thread if the timer is shut down before the timeout expires.
+         */
+        void abandon() {
+        }
+
+        @Override
+        public boolean cancel() {
+            while (true) {
+                int state = mState;
+                if (state == CANCELLED || state == DONE) {
+                    return false;
+                }
+                if (STATE.compareAndSet(this, state, CANCELLED)) {
+                    timer.mPendingCount.decrementAndGet();
+                    if (state == PENDING) {
+                        // Let the timer thread unlink it from its bucket
+                        timer.mCancelled.add(this);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mState == CANCELLED;
+        }
+
+        boolean start() {
+            return STATE.compareAndSet(this, PENDING, RUNNING);
+        }
+
+        /**
+         * Schedules the next run of a periodic timeout, unless it was cancelled while running.
+         */
+        boolean repeat() {
+            if (!STATE.compareAndSet(this, RUNNING, PENDING)) {
+                return false;
+            }
+            // Fixed rate, so late runs don't push back later ones
+            deadline += period;
+            timer.mScheduled.add(this);
+            return true;
+        }
+
+        boolean finish(int from) {
+            if (!STATE.compareAndSet(this, from, DONE)) {
+                return false;
+            }
+            timer.mPendingCount.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, so any timeout can be removed in O(1).
+     */
+    private static class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.next = null;
+            timeout.prev = null;
+        }
+
+        void drainTo(List<Timeout> timeouts) {
+            while (head != null) {
+                Timeout timeout = head;
+                remove(timeout);
+                timeouts.add(timeout);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.qklabs.actors;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A snapshot of a distribution of durations in nanoseconds, such as how long messages wait in
+ * their mailbox.
+ *
+ * Values are counted in a fixed set of buckets that grow exponentially, with four buckets per
+ * power of two. That keeps the memory used the same no matter how many values are recorded,
+ * while any percentile is accurate to within about 25%.
+ */
+public final class Histogram {
+    // Each power of two is split into 1 << SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    static final Histogram EMPTY = new Histogram(new long[BUCKETS], 0, 0);
+
+    private final long[] mCounts;
+    private final long mCount;
+    private final long mSum;
+    private final long mMax;
+
+    Histogram(long[] counts, long sum, long max) {
+        mCounts = counts;
+        long count = 0;
+        for (long each : counts) {
+            count += each;
+        }
+        mCount = count;
+        mSum = sum;
+        mMax = max;
+    }
+
+    /**
+     * Returns the bucket a value is counted in. Negative values count as zero.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the smallest value counted in a bucket.
+     */
+    public static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     */
+    public static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+
+    /**
+     * Returns the number of buckets, for reporters that export the whole distribution.
+     */
+    public int getBucketCount() {
+        return BUCKETS;
+    }
+
+    /**
+     * Returns the number of values counted in a bucket.
+     */
+    public long getCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    /**
+     * Returns the number of values recorded.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the mean of the values recorded, or 0 if there are none.
+     */
+    public double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * Returns the largest value recorded, or 0 if there are none.
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of the values recorded, or 0 if there are
+     * none.
+     * @param percentile between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile " + percentile);
+        }
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(mCount * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * Returns the values recorded since an earlier snapshot of the same histogram, for reporters
+     * that want each report to cover only its own interval. The max is still the max overall.
+     */
+    public Histogram since(Histogram earlier) {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = Math.max(mCounts[i] - earlier.mCounts[i], 0);
+        }
+        return new Histogram(counts, Math.max(mSum - earlier.mSum, 0), mMax);
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{count=" + mCount + ", mean=" + (long) getMean()
+                + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99)
+                + ", max=" + mMax + "}";
+    }
+
+    /**
+     * Records values into a histogram. Only one thread may record into each recorder, which is
+     * what makes recording cheap: there's no contention, so each count is updated with an ordered
+     * store rather than a CAS. Any thread may take a snapshot.
+     */
+    static final class Recorder {
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            int bucket = bucketOf(value);
+            mCounts.lazySet(bucket, mCounts.get(bucket) + 1);
+            mSum.lazySet(mSum.get() + value);
+            if (value > mMax.get()) {
+                mMax.lazySet(value);
+            }
+        }
+    }
+
+    /**
+     * Merges the values of several recorders into one snapshot.
+     */
+    static Histogram merge(List<Recorder> recorders) {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+        for (Recorder recorder : recorders) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += recorder.mCounts.get(i);
+            }
+            sum += recorder.mSum.get();
+            max = Math.max(max, recorder.mMax.get());
+        }
+        return new Histogram(counts, sum, max);
+    }
+}
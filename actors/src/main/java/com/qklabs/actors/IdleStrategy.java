@@ -0,0 +1,36 @@
+package com.qklabs.actors;
+
+/**
+ * An IdleStrategy decides what a worker thread does when its queue has no messages to process.
+ *
+ * Implementations must be stateless, since one instance is shared by every worker thread in an
+ * {@link ActorSystem}. Any state (such as how long the worker has been idle) is passed in.
+ */
+public interface IdleStrategy {
+
+    /**
+     * Called by a worker thread each time it finds its queue empty.
+     *
+     * @param idleCount how many times in a row the worker has found its queue empty, starting at 0
+     * @param parker parks the worker until a message is sent to its queue
+     */
+    void idle(int idleCount, Parker parker);
+
+    /**
+     * Parks a worker thread. A parked worker is woken up as soon as a message is sent to its queue,
+     * so parking never delays delivery.
+     */
+    interface Parker {
+        /**
+         * Parks the calling worker until a message arrives or the thread is interrupted.
+         */
+        void park();
+
+        /**
+         * Parks the calling worker until a message arrives, the thread is interrupted or the
+         * timeout elapses.
+         * @param nanos the maximum number of nanoseconds to park for
+         */
+        void parkNanos(long nanos);
+    }
+}
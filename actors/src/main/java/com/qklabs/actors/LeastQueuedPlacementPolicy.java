@@ -0,0 +1,28 @@
+package com.qklabs.actors;
+
+/**
+ * Binds each new actor to the queue with the fewest waiting events. Ties go to the queue with the
+ * fewest actors bound to it.
+ *
+ * This looks at every queue for every new actor. With many threads,
+ * {@link PowerOfTwoChoicesPlacementPolicy} is nearly as good and cheaper.
+ */
+public class LeastQueuedPlacementPolicy implements PlacementPolicy {
+
+    @Override
+    public int place(String path, Queues queues) {
+        int best = 0;
+        int bestDepth = queues.depth(0);
+        int bestActors = queues.actorCount(0);
+        for (int i = 1; i < queues.count(); i++) {
+            int depth = queues.depth(i);
+            int actors = queues.actorCount(i);
+            if (depth < bestDepth || (depth == bestDepth && actors < bestActors)) {
+                best = i;
+                bestDepth = depth;
+                bestActors = actors;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,46 @@
+package com.qklabs.actors;
+
+/**
+ * Where events for an actor are queued until they are processed. Depending on the dispatcher, a
+ * mailbox may be shared by many actors or belong to a single actor.
+ */
+interface Mailbox {
+    void sendMessage(ActorCell target, Object message, ActorRef sender);
+
+    /**
+     * Queues several messages for one actor at once.
+     */
+    void sendMessages(ActorCell target, Object[] messages, ActorRef sender);
+
+    /**
+     * Queues the same message for the first {@code count} of the given actors at once.
+     */
+    void sendMessage(ActorCell[] targets, int count, Object message, ActorRef sender);
+
+    /**
+     * Queues a turn for an actor with a priority mailbox, which receives its most urgent message
+     * when the turn comes up.
+     */
+    void sendPriorityTurn(ActorCell target);
+
+    /**
+     * Queues a turn for an actor with a conflating mailbox, which receives the latest message
+     * with the given key when the turn comes up.
+     */
+    void sendConflatedTurn(ActorCell target, Object key);
+
+    /**
+     * Queues preStart. Lifecycle events are processed before any queued messages.
+     */
+    void start(ActorCell target);
+
+    /**
+     * Queues postStop. Lifecycle events are processed before any queued messages.
+     */
+    void stop(ActorCell target);
+
+    /**
+     * Queues the end of an actor's restart backoff, as a lifecycle event.
+     */
+    void resume(ActorCell target);
+}
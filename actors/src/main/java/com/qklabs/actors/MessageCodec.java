@@ -0,0 +1,26 @@
+package com.qklabs.actors;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Turns messages into bytes and back, so they can be sent to actors in another process. See
+ * {@link ActorSystem.Builder#peer(String, java.net.InetSocketAddress)}. Both processes must use
+ * the same codec.
+ *
+ * Codecs are only called from the transport's thread, so they don't need to be thread safe.
+ */
+public interface MessageCodec {
+    /**
+     * Writes a message.
+     * @throws java.io.NotSerializableException if the codec can't write messages of its type,
+     *                                          in which case the message is dropped
+     */
+    public void encode(Object message, DataOutputStream out) throws IOException;
+
+    /**
+     * Reads a message written by {@link #encode(Object, DataOutputStream)}.
+     */
+    public Object decode(DataInputStream in) throws IOException;
+}
@@ -0,0 +1,33 @@
+package com.qklabs.actors;
+
+import java.util.Comparator;
+
+/**
+ * Orders for priority mailboxes. See {@link Actor#getMessagePriority()}.
+ */
+public final class MessagePriority {
+    private MessagePriority() {
+    }
+
+    /**
+     * Orders messages by the first of the given classes they're an instance of, so messages of
+     * the first class are the most urgent. Messages of any other class come last.
+     */
+    public static Comparator<Object> byClass(final Class<?>... mostUrgentFirst) {
+        return new Comparator<Object>() {
+            @Override
+            public int compare(Object a, Object b) {
+                return rank(a) - rank(b);
+            }
+
+            private int rank(Object message) {
+                for (int i = 0; i < mostUrgentFirst.length; i++) {
+                    if (mostUrgentFirst[i].isInstance(message)) {
+                        return i;
+                    }
+                }
+                return mostUrgentFirst.length;
+            }
+        };
+    }
+}
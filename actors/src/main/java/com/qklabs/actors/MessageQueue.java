@@ -1,44 +1,457 @@
 package com.qklabs.actors;
 
-import android.os.Handler;
-import android.os.Message;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-import java.util.concurrent.LinkedBlockingQueue;
+/**
+ * A multi-producer, single-consumer queue of events for the actors bound to one worker thread.
+ *
+ * Events are stored in a pre-allocated ring of {@link Envelope}s, so sending a message doesn't
+ * allocate. If the ring fills up, events spill over into an unbounded overflow queue until the
+ * worker catches up. Events sent by any one thread are always processed in the order they were
+ * sent.
+ *
+ * Lifecycle events go in a separate lane that's always drained first, so starting or stopping an
+ * actor doesn't wait behind a backlog of messages.
+ */
+class MessageQueue implements Mailbox, IdleStrategy.Parker {
+    static final int DEFAULT_CAPACITY = 1024;
+    // Only one in this many messages sent through the ring is timed, since reading the clock
+    // costs senders more than the rest of sending a message
+    static final int WAIT_SAMPLE_INTERVAL = 8;
 
-class MessageQueue {
-    private final LinkedBlockingQueue<Runnable> mQueue = new LinkedBlockingQueue<>();
+    private final Envelope[] mRing;
+    private final int mMask;
+    private final AtomicLong mTail = new AtomicLong();
+    // Only written by the worker thread
+    private volatile long mHead = 0;
 
-    public void sendMessage(final Actor target, final Object message, final ActorRef sender) {
-        mQueue.add(new Runnable() {
-            @Override
-            public void run() {
-                target.onReceive(message, sender);
+    // Most queues never overflow, so this starts at the smallest size
+    private final ArrayDeque<Envelope> mOverflow = new ArrayDeque<>(1);
+    private volatile boolean mOverflowing = false;
+    private volatile int mOverflowSize = 0;
+
+    // Lifecycle events. They're rare, so allocating for each is fine.
+    private final ConcurrentLinkedQueue<Envelope> mSystemLane = new ConcurrentLinkedQueue<>();
+
+    private volatile Thread mWorker;
+    private volatile boolean mParked = false;
+
+    // Whether senders stamp events with the time they were queued. Set before the queue is used.
+    private boolean mTimed = false;
+    // Only used by the worker thread, and null unless metrics are enabled
+    private WorkerMetrics mMetrics;
+
+    public MessageQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of envelopes in the ring. Rounded up to a power of two.
+     */
+    public MessageQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mRing = new Envelope[size];
+        mMask = size - 1;
+        for (int i = 0; i < size; i++) {
+            mRing[i] = new Envelope();
+            mRing[i].sequence = i;
+        }
+    }
+
+    /**
+     * Returns the number of envelopes in the ring.
+     */
+    int getCapacity() {
+        return mRing.length;
+    }
+
+    @Override
+    public void sendMessage(ActorCell target, Object message, ActorRef sender) {
+        enqueue(Envelope.MESSAGE, target, message, sender);
+    }
+
+    @Override
+    public void sendMessages(ActorCell target, Object[] messages, ActorRef sender) {
+        enqueueBatch(target, null, null, messages, messages.length, sender);
+    }
+
+    @Override
+    public void sendMessage(ActorCell[] targets, int count, Object message, ActorRef sender) {
+        enqueueBatch(null, targets, message, null, count, sender);
+    }
+
+    @Override
+    public void sendPriorityTurn(ActorCell target) {
+        enqueue(Envelope.PRIORITY_TURN, target, null, null);
+    }
+
+    @Override
+    public void sendConflatedTurn(ActorCell target, Object key) {
+        enqueue(Envelope.CONFLATED_TURN, target, key, null);
+    }
+
+    @Override
+    public void start(ActorCell target) {
+        mSystemLane.add(stamp(new Envelope(Envelope.START, target, null, null)));
+        signal();
+    }
+
+    @Override
+    public void stop(ActorCell target) {
+        mSystemLane.add(stamp(new Envelope(Envelope.STOP, target, null, null)));
+        signal();
+    }
+
+    @Override
+    public void resume(ActorCell target) {
+        mSystemLane.add(stamp(new Envelope(Envelope.RESUME, target, null, null)));
+        signal();
+    }
+
+    private void enqueue(int kind, ActorCell target, Object message, ActorRef sender) {
+        if (mOverflowing || !offerToRing(kind, target, message, sender)) {
+            offerToOverflow(kind, target, message, sender);
+        }
+        signal();
+    }
+
+    /**
+     * Queues a batch of messages with a single claim on the ring and a single wakeup. Each
+     * message's target comes from {@code targets} if it's not null, otherwise it's {@code target}.
+     * Likewise for {@code messages} and {@code message}.
+     */
+    private void enqueueBatch(ActorCell target, ActorCell[] targets, Object message,
+                              Object[] messages, int count, ActorRef sender) {
+        if (count == 0) {
+            return;
+        }
+        if (mOverflowing
+                || !offerBatchToRing(target, targets, message, messages, count, sender)) {
+            synchronized (mOverflow) {
+                if (mOverflowing
+                        || !offerBatchToRing(target, targets, message, messages, count, sender)) {
+                    for (int i = 0; i < count; i++) {
+                        mOverflow.add(stampOverflow(new Envelope(Envelope.MESSAGE,
+                                targets != null ? targets[i] : target,
+                                messages != null ? messages[i] : message, sender)));
+                    }
+                    mOverflowSize = mOverflow.size();
+                    mOverflowing = true;
+                }
+            }
+        }
+        signal();
+    }
+
+    private Envelope stamp(Envelope envelope) {
+        envelope.enqueuedAt = mTimed ? System.nanoTime() : 0;
+        return envelope;
+    }
+
+    /**
+     * Like {@link #stamp(Envelope)}, but only for a sample of the events added to the overflow
+     * queue. Must hold its lock.
+     */
+    private Envelope stampOverflow(Envelope envelope) {
+        boolean sampled = mOverflow.size() % WAIT_SAMPLE_INTERVAL == 0;
+        envelope.enqueuedAt = mTimed && sampled ? System.nanoTime() : 0;
+        return envelope;
+    }
+
+    /**
+     * Called after an event has been queued to let the worker know about it.
+     */
+    void signal() {
+        // Only pay for a wakeup if the worker is actually parked
+        if (mParked) {
+            LockSupport.unpark(mWorker);
+        }
+    }
+
+    private boolean offerToRing(int kind, ActorCell target, Object message, ActorRef sender) {
+        long tail = mTail.get();
+        while (true) {
+            Envelope envelope = mRing[(int) tail & mMask];
+            long diff = envelope.sequence - tail;
+            if (diff == 0) {
+                if (mTail.compareAndSet(tail, tail + 1)) {
+                    envelope.set(kind, target, message, sender);
+                    envelope.enqueuedAt = mTimed && tail % WAIT_SAMPLE_INTERVAL == 0
+                            ? System.nanoTime() : 0;
+                    envelope.sequence = tail + 1;
+                    return true;
+                }
+                tail = mTail.get();
+            } else if (diff < 0) {
+                // The ring is full
+                return false;
+            } else {
+                // Another producer claimed this slot first
+                tail = mTail.get();
+            }
+        }
+    }
+
+    private boolean offerBatchToRing(ActorCell target, ActorCell[] targets, Object message,
+                                     Object[] messages, int count, ActorRef sender) {
+        if (count > mRing.length) {
+            return false;
+        }
+        long tail = mTail.get();
+        while (true) {
+            // The consumer frees slots in order, so if the last slot we need is free, they all are
+            long last = tail + count - 1;
+            long diff = mRing[(int) last & mMask].sequence - last;
+            if (diff == 0) {
+                if (mTail.compareAndSet(tail, tail + count)) {
+                    // Only the first message is timed, since that's all a batch records
+                    long now = mTimed ? System.nanoTime() : 0;
+                    for (int i = 0; i < count; i++) {
+                        Envelope envelope = mRing[(int) (tail + i) & mMask];
+                        envelope.set(Envelope.MESSAGE,
+                                targets != null ? targets[i] : target,
+                                messages != null ? messages[i] : message, sender);
+                        envelope.enqueuedAt = i == 0 ? now : 0;
+                        envelope.sequence = tail + i + 1;
+                    }
+                    return true;
+                }
+                tail = mTail.get();
+            } else if (diff < 0) {
+                // Not enough room in the ring
+                return false;
+            } else {
+                // Another producer claimed these slots first
+                tail = mTail.get();
             }
-        });
+        }
     }
 
-    public void start(final Actor actor) {
-        mQueue.add(new Runnable() {
-            @Override
-            public void run() {
-                actor.preStart();
+    private void offerToOverflow(int kind, ActorCell target, Object message, ActorRef sender) {
+        synchronized (mOverflow) {
+            // Once anything is in the overflow queue, everything goes there until it's drained so
+            // that later events can't overtake earlier ones.
+            if (!mOverflowing && offerToRing(kind, target, message, sender)) {
+                return;
             }
-        });
+            mOverflow.add(stampOverflow(new Envelope(kind, target, message, sender)));
+            mOverflowSize = mOverflow.size();
+            mOverflowing = true;
+        }
     }
 
-    public void stop(final Actor actor) {
-        mQueue.add(new Runnable() {
-            @Override
-            public void run() {
-                actor.postStop();
+    /**
+     * Processes the next event in the queue, if there is one.
+     * @return true if an event was processed, false if the queue was empty
+     */
+    public boolean processEvent() {
+        Envelope system = mSystemLane.poll();
+        if (system != null) {
+            deliver(system.kind, system.target, null, null, system.enqueuedAt);
+            return true;
+        }
+
+        long head = mHead;
+        Envelope envelope = mRing[(int) head & mMask];
+        if (envelope.sequence == head + 1) {
+            int kind = envelope.kind;
+            ActorCell target = envelope.target;
+            Object message = envelope.message;
+            ActorRef sender = envelope.sender;
+            long enqueuedAt = envelope.enqueuedAt;
+            // Release the slot before delivering so producers can reuse it right away
+            envelope.clear();
+            envelope.sequence = head + mRing.length;
+            mHead = head + 1;
+
+            if (kind == Envelope.MESSAGE && target.isBatching()) {
+                target.addToBatch(message, sender);
+                collectBatch(target);
+                deliverBatch(target, enqueuedAt);
+            } else {
+                deliver(kind, target, message, sender, enqueuedAt);
+            }
+            return true;
+        }
+
+        if (mTail.get() != head) {
+            // A producer has claimed the next slot but hasn't filled it in yet
+            return false;
+        }
+
+        // The ring is empty, so the overflow queue only holds events sent after everything that
+        // has been processed from the ring.
+        if (mOverflowing) {
+            Envelope overflow;
+            boolean batched = false;
+            synchronized (mOverflow) {
+                overflow = mOverflow.poll();
+                if (overflow != null && overflow.kind == Envelope.MESSAGE
+                        && overflow.target.isBatching()) {
+                    collectOverflowBatch(overflow);
+                    batched = true;
+                }
+                mOverflowSize = mOverflow.size();
+                if (mOverflow.isEmpty()) {
+                    mOverflowing = false;
+                }
             }
-        });
+            if (batched) {
+                deliverBatch(overflow.target, overflow.enqueuedAt);
+                return true;
+            } else if (overflow != null) {
+                deliver(overflow.kind, overflow.target, overflow.message, overflow.sender,
+                        overflow.enqueuedAt);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deliver(int kind, ActorCell target, Object message, ActorRef sender,
+                         long enqueuedAt) {
+        WorkerMetrics metrics = mMetrics;
+        if (metrics == null) {
+            Envelope.deliver(kind, target, message, sender);
+            return;
+        }
+        long start = metrics.startTime();
+        try {
+            Envelope.deliver(kind, target, message, sender);
+        } finally {
+            metrics.onProcessed(enqueuedAt, start, System.nanoTime(), 1);
+        }
     }
 
-    public void processEvent() {
-        Runnable task = mQueue.poll();
-        if (task != null) {
-            task.run();
+    private void deliverBatch(ActorCell target, long enqueuedAt) {
+        WorkerMetrics metrics = mMetrics;
+        if (metrics == null) {
+            Envelope.deliverBatch(target);
+            return;
+        }
+        int count = target.getBatchSize();
+        long start = metrics.startTime();
+        try {
+            Envelope.deliverBatch(target);
+        } finally {
+            metrics.onProcessed(enqueuedAt, start, System.nanoTime(), count);
+        }
+    }
+
+    /**
+     * Moves the messages for the target at the head of the ring into its batch, until the batch is
+     * full or the next event is for something else.
+     */
+    private void collectBatch(ActorCell target) {
+        long head = mHead;
+        while (target.getBatchSize() < target.maxBatchSize) {
+            Envelope envelope = mRing[(int) head & mMask];
+            if (envelope.sequence != head + 1
+                    || envelope.kind != Envelope.MESSAGE
+                    || envelope.target != target) {
+                break;
+            }
+            target.addToBatch(envelope.message, envelope.sender);
+            envelope.clear();
+            envelope.sequence = head + mRing.length;
+            head++;
+        }
+        mHead = head;
+    }
+
+    /**
+     * Like {@link #collectBatch(ActorCell)}, but for the overflow queue. Must hold its lock.
+     */
+    private void collectOverflowBatch(Envelope first) {
+        ActorCell target = first.target;
+        target.addToBatch(first.message, first.sender);
+        while (target.getBatchSize() < target.maxBatchSize) {
+            Envelope envelope = mOverflow.peek();
+            if (envelope == null
+                    || envelope.kind != Envelope.MESSAGE
+                    || envelope.target != target) {
+                break;
+            }
+            mOverflow.poll();
+            target.addToBatch(envelope.message, envelope.sender);
+        }
+    }
+
+    /**
+     * Returns the approximate number of events waiting to be processed. Safe to call from any
+     * thread.
+     */
+    int size() {
+        long size = mTail.get() - mHead + mOverflowSize;
+        return (int) Math.min(Math.max(size, 0), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if there are no events left to process. Must be called from the worker.
+     */
+    boolean isEmpty() {
+        return mTail.get() == mHead && !mOverflowing && mSystemLane.isEmpty();
+    }
+
+    /**
+     * Sets the thread that processes this queue, which is the thread woken up by new messages.
+     */
+    void setWorker(Thread worker) {
+        mWorker = worker;
+    }
+
+    /**
+     * Makes senders stamp events with the time they were queued, so the worker can record how
+     * long they waited. Must be called before the queue is used.
+     */
+    void enableTiming() {
+        mTimed = true;
+    }
+
+    /**
+     * Sets where the worker records the events it processes, or null to not record them. Must be
+     * called from the worker.
+     */
+    void setMetrics(WorkerMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    @Override
+    public void park() {
+        park(0);
+    }
+
+    @Override
+    public void parkNanos(long nanos) {
+        if (nanos > 0) {
+            park(nanos);
+        }
+    }
+
+    private void park(long nanos) {
+        // Publish that we're parked before re-checking the queue, so that a message sent in between
+        // is guaranteed to see the flag and unpark us.
+        mParked = true;
+        try {
+            if (!isEmpty()) {
+                return;
+            }
+            if (nanos > 0) {
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+        } finally {
+            mParked = false;
         }
     }
 }
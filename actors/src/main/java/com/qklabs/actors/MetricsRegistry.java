@@ -0,0 +1,62 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of the metrics recorded by each worker thread of an actor system, and merges them
+ * when a snapshot is taken. Recording never touches the registry, so it's only locked while
+ * taking a snapshot.
+ */
+class MetricsRegistry {
+    private final List<WorkerMetrics> mWorkers = new CopyOnWriteArrayList<>();
+    // Guarded by this
+    private long mLastSnapshotNanos = System.nanoTime();
+
+    /**
+     * Registers a worker thread. Called by the worker itself when it starts.
+     */
+    WorkerMetrics newWorker(String name) {
+        WorkerMetrics worker = new WorkerMetrics(name);
+        mWorkers.add(worker);
+        return worker;
+    }
+
+    /**
+     * Returns the rates of each worker since the previous snapshot, and starts a new interval.
+     */
+    synchronized List<MetricsSnapshot.Worker> snapshotWorkers() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(now - mLastSnapshotNanos, 1);
+        mLastSnapshotNanos = now;
+
+        List<MetricsSnapshot.Worker> result = new ArrayList<>(mWorkers.size());
+        for (WorkerMetrics worker : mWorkers) {
+            long processed = worker.getProcessedCount();
+            long busy = worker.getBusyNanos();
+            double perSecond = (processed - worker.lastProcessed) * 1e9 / elapsed;
+            double busyRatio = Math.min((double) (busy - worker.lastBusyNanos) / elapsed, 1);
+            worker.lastProcessed = processed;
+            worker.lastBusyNanos = busy;
+            result.add(new MetricsSnapshot.Worker(worker.name, processed, perSecond, busyRatio));
+        }
+        return result;
+    }
+
+    Histogram getWaitTime() {
+        List<Histogram.Recorder> recorders = new ArrayList<>(mWorkers.size());
+        for (WorkerMetrics worker : mWorkers) {
+            recorders.add(worker.waitTime);
+        }
+        return Histogram.merge(recorders);
+    }
+
+    Histogram getServiceTime() {
+        List<Histogram.Recorder> recorders = new ArrayList<>(mWorkers.size());
+        for (WorkerMetrics worker : mWorkers) {
+            recorders.add(worker.serviceTime);
+        }
+        return Histogram.merge(recorders);
+    }
+}
@@ -0,0 +1,14 @@
+package com.qklabs.actors;
+
+/**
+ * Receives a snapshot of an actor system's metrics at a fixed rate, so they can be pushed to a
+ * monitoring system. See {@link ActorSystem.Builder#metricsReporter(MetricsReporter, long,
+ * java.util.concurrent.TimeUnit)}.
+ */
+public interface MetricsReporter {
+    /**
+     * Called on the system's timer thread, which also runs timeouts and scheduled messages, so
+     * slow work like network calls should be handed off to another thread.
+     */
+    public void report(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,172 @@
+package com.qklabs.actors;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A point-in-time view of an actor system's backlog and performance, returned by
+ * {@link ActorSystem#metrics()}.
+ *
+ * Mailbox and queue depths are always available. The histograms and worker rates are only
+ * recorded if metrics were enabled with {@link ActorSystem.Builder#metrics(boolean)}; otherwise
+ * they're empty.
+ */
+public final class MetricsSnapshot {
+    private final long mTimeMillis;
+    private final Map<String, Integer> mMailboxDepths;
+    private final int[] mQueueDepths;
+    private final Map<String, int[]> mNamedQueueDepths;
+    private final List<Worker> mWorkers;
+    private final Histogram mWaitTime;
+    private final Histogram mServiceTime;
+
+    MetricsSnapshot(long timeMillis, Map<String, Integer> mailboxDepths, int[] queueDepths,
+                    Map<String, int[]> namedQueueDepths, List<Worker> workers,
+                    Histogram waitTime, Histogram serviceTime) {
+        mTimeMillis = timeMillis;
+        mMailboxDepths = Collections.unmodifiableMap(mailboxDepths);
+        mQueueDepths = queueDepths;
+        mNamedQueueDepths = namedQueueDepths;
+        mWorkers = Collections.unmodifiableList(workers);
+        mWaitTime = waitTime;
+        mServiceTime = serviceTime;
+    }
+
+    /**
+     * Returns when the snapshot was taken, in {@link System#currentTimeMillis()} time.
+     */
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    /**
+     * Returns the number of events each live actor hasn't finished processing, by path.
+     */
+    public Map<String, Integer> getMailboxDepths() {
+        return mMailboxDepths;
+    }
+
+    /**
+     * Returns the number of events the actor at the path hasn't finished processing, or 0 if
+     * there's no such actor.
+     */
+    public int getMailboxDepth(String path) {
+        Integer depth = mMailboxDepths.get(path);
+        return depth != null ? depth : 0;
+    }
+
+    /**
+     * Returns the depth of each of the default dispatcher's queues. For a
+     * {@link ThreadBoundDispatcher} that's the number of events waiting for each thread; for a
+     * {@link WorkStealingDispatcher} it's the number of mailboxes waiting for each thread.
+     */
+    public int[] getQueueDepths() {
+        return mQueueDepths.clone();
+    }
+
+    /**
+     * Like {@link #getQueueDepths()}, for a named dispatcher.
+     */
+    public int[] getQueueDepths(String dispatcherName) {
+        int[] depths = mNamedQueueDepths.get(dispatcherName);
+        if (depths == null) {
+            throw new IllegalArgumentException("No dispatcher named " + dispatcherName);
+        }
+        return depths.clone();
+    }
+
+    /**
+     * Returns the rates of each worker thread that has started, across all dispatchers.
+     */
+    public List<Worker> getWorkers() {
+        return mWorkers;
+    }
+
+    /**
+     * Returns how long events waited in their mailbox before being processed, in nanoseconds.
+     * To keep sending cheap, this is sampled from about one in eight messages. Batched messages
+     * count once per batch, with the wait of the first message.
+     */
+    public Histogram getWaitTime() {
+        return mWaitTime;
+    }
+
+    /**
+     * Returns how long actors took to process each event, in nanoseconds. Batched messages count
+     * once per batch.
+     */
+    public Histogram getServiceTime() {
+        return mServiceTime;
+    }
+
+    /**
+     * Returns the number of events processed per second by all worker threads together.
+     */
+    public double getMessagesPerSecond() {
+        double total = 0;
+        for (Worker worker : mWorkers) {
+            total += worker.mMessagesPerSecond;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{actors=" + mMailboxDepths.size()
+                + ", messagesPerSecond=" + (long) getMessagesPerSecond()
+                + ", waitTime=" + mWaitTime + ", serviceTime=" + mServiceTime
+                + ", workers=" + mWorkers + "}";
+    }
+
+    /**
+     * How busy one worker thread was. Rates cover the time since the previous snapshot of the
+     * same system, so a reporter taking snapshots at a fixed rate gets the rate for each interval.
+     */
+    public static final class Worker {
+        private final String mName;
+        private final long mProcessedCount;
+        private final double mMessagesPerSecond;
+        private final double mBusyRatio;
+
+        Worker(String name, long processedCount, double messagesPerSecond, double busyRatio) {
+            mName = name;
+            mProcessedCount = processedCount;
+            mMessagesPerSecond = messagesPerSecond;
+            mBusyRatio = busyRatio;
+        }
+
+        /**
+         * Returns the name of the thread.
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the number of events the thread has processed since it started.
+         */
+        public long getProcessedCount() {
+            return mProcessedCount;
+        }
+
+        public double getMessagesPerSecond() {
+            return mMessagesPerSecond;
+        }
+
+        /**
+         * Returns the fraction of time the thread spent processing events rather than idle,
+         * between 0 and 1.
+         */
+        public double getBusyRatio() {
+            return mBusyRatio;
+        }
+
+        @Override
+        public String toString() {
+            return mName + "{processed=" + mProcessedCount
+                    + ", messagesPerSecond=" + (long) mMessagesPerSecond
+                    + ", busy=" + Math.round(mBusyRatio * 100) + "%}";
+        }
+    }
+}
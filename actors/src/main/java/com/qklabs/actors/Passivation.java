@@ -0,0 +1,67 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many actors stay in memory. Actors that go idle are passivated: they get
+ * {@code postStop} and are removed from the system, and the next message sent to their path
+ * creates a new instance before it's delivered, so senders never notice. Only use it for actors
+ * that keep their state somewhere else, or can rebuild it in {@code preStart}.
+ *
+ * An actor is only passivated while it has no messages waiting, so no message is ever lost.
+ */
+public final class Passivation {
+    final int maxActors;
+    final long idleTimeoutNanos;
+
+    private Passivation(int maxActors, long idleTimeoutNanos) {
+        this.maxActors = maxActors;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+    }
+
+    /**
+     * Keeps at most the given number of actors, passivating the least recently used ones when
+     * there are more.
+     */
+    public static Passivation maxActors(int maxActors) {
+        return of(maxActors, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Passivates actors that haven't been sent a message for the given time.
+     */
+    public static Passivation afterIdle(long timeout, TimeUnit unit) {
+        return of(0, timeout, unit);
+    }
+
+    /**
+     * @param maxActors the most actors to keep, or 0 for no limit
+     * @param idleTimeout how long an actor can go without messages, or 0 to keep it forever
+     */
+    public static Passivation of(int maxActors, long idleTimeout, TimeUnit unit) {
+        if (maxActors < 0) {
+            throw new IllegalArgumentException("Invalid max actors " + maxActors);
+        }
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout must not be negative");
+        }
+        if (maxActors == 0 && idleTimeout == 0) {
+            throw new IllegalArgumentException("Passivation needs a max actors or idle timeout");
+        }
+        return new Passivation(maxActors, unit.toNanos(idleTimeout));
+    }
+
+    /**
+     * Returns the most actors to keep, or 0 if there's no limit.
+     */
+    public int getMaxActors() {
+        return maxActors;
+    }
+
+    /**
+     * Returns how long an actor can go without messages, or 0 if it's kept forever.
+     */
+    public long getIdleTimeout(TimeUnit unit) {
+        return unit.convert(idleTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+}
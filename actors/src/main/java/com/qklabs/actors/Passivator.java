@@ -0,0 +1,133 @@
+package com.qklabs.actors;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies a {@link Passivation} to the actors at paths matching one pattern. It's also the timer
+ * that periodically sweeps them.
+ *
+ * Rather than reading the clock on every send, each actor records the current tick, which only
+ * the sweep advances. Idle times are then measured in ticks, and least recently used means the
+ * oldest tick. That's accurate to one sweep interval, which is plenty for evicting actors.
+ */
+class Passivator extends HashedWheelTimer.Timeout {
+    private static final long MAX_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    final Passivation passivation;
+
+    private final ActorSystem mSystem;
+    private final Set<ActorCell> mCells =
+            Collections.newSetFromMap(new ConcurrentHashMap<ActorCell, Boolean>());
+    private final AtomicInteger mCount = new AtomicInteger();
+    private final AtomicBoolean mEvictionScheduled = new AtomicBoolean(false);
+    private final long mSweepIntervalNanos;
+    // Number of sweeps an actor must be idle for, or 0 if idle actors are kept
+    private final int mIdleTicks;
+    private volatile int mTick;
+
+    Passivator(ActorSystem system, Passivation passivation) {
+        this.passivation = passivation;
+        mSystem = system;
+        long ttl = passivation.idleTimeoutNanos;
+        if (ttl > 0) {
+            // Sweep a few times per timeout, so actors live at most a quarter longer than it, but
+            // no more often than the timer can fire
+            long minInterval = TimeUnit.MILLISECONDS.toNanos(HashedWheelTimer.DEFAULT_TICK_MILLIS);
+            mSweepIntervalNanos = Math.max(minInterval,
+                    Math.min(ttl / 4, MAX_SWEEP_INTERVAL_NANOS));
+            mIdleTicks = (int) Math.min((ttl + mSweepIntervalNanos - 1) / mSweepIntervalNanos,
+                    Integer.MAX_VALUE);
+        } else {
+            mSweepIntervalNanos = MAX_SWEEP_INTERVAL_NANOS;
+            mIdleTicks = 0;
+        }
+    }
+
+    void startSweeping() {
+        mSystem.getTimer().schedule(this, mSweepIntervalNanos, mSweepIntervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    int tick() {
+        return mTick;
+    }
+
+    /**
+     * Starts tracking a new actor, evicting others soon if that puts it over the limit.
+     */
+    void add(ActorCell cell) {
+        mCells.add(cell);
+        int max = passivation.maxActors;
+        if (mCount.incrementAndGet() > max && max > 0
+                && mEvictionScheduled.compareAndSet(false, true)) {
+            mSystem.getTimer().schedule(new HashedWheelTimer.Timeout() {
+                @Override
+                void expire() {
+                    mEvictionScheduled.set(false);
+                    evictOverLimit();
+                }
+            }, 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops tracking an actor that was stopped or passivated.
+     */
+    void remove(ActorCell cell) {
+        if (mCells.remove(cell)) {
+            mCount.decrementAndGet();
+        }
+    }
+
+    int getActorCount() {
+        return mCount.get();
+    }
+
+    @Override
+    void expire() {
+        mTick++;
+        if (mIdleTicks > 0) {
+            evictIdle();
+        }
+        evictOverLimit();
+    }
+
+    private void evictIdle() {
+        int tick = mTick;
+        for (ActorCell cell : mCells) {
+            if (tick - cell.getLastUsed() >= mIdleTicks) {
+                mSystem.passivate(cell);
+            }
+        }
+    }
+
+    private void evictOverLimit() {
+        int max = passivation.maxActors;
+        int excess = mCount.get() - max;
+        if (max == 0 || excess <= 0) {
+            return;
+        }
+
+        // Sort by a snapshot of each actor's age, since senders keep updating them
+        ActorCell[] cells = mCells.toArray(new ActorCell[0]);
+        long[] byAge = new long[cells.length];
+        int tick = mTick;
+        for (int i = 0; i < cells.length; i++) {
+            long age = Math.max(tick - cells[i].getLastUsed(), 0);
+            byAge[i] = (age << 32) | i;
+        }
+        Arrays.sort(byAge);
+        // Oldest first. Actors with messages waiting are skipped.
+        for (int i = byAge.length - 1; i >= 0 && excess > 0; i--) {
+            if (mSystem.passivate(cells[(int) byAge[i]])) {
+                excess--;
+            }
+        }
+    }
+}
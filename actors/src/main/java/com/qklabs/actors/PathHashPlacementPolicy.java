@@ -0,0 +1,17 @@
+package com.qklabs.actors;
+
+/**
+ * Binds each actor to a queue picked by hashing its path, so an actor recreated at the same path
+ * always runs on the same thread. Useful when actors at related paths share thread-confined
+ * resources, but it ignores load entirely.
+ */
+public class PathHashPlacementPolicy implements PlacementPolicy {
+
+    @Override
+    public int place(String path, Queues queues) {
+        int hash = path.hashCode();
+        // Spread the high bits, since paths often differ only near the end
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % queues.count();
+    }
+}
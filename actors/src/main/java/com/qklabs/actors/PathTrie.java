@@ -0,0 +1,340 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable trie of path patterns, split into segments on '/'. A "*" segment in a pattern
+ * matches any one segment, and a "#" segment matches one segment of digits. When more than one
+ * pattern matches a path, exact segments win over "#", which wins over "*".
+ *
+ * Matching works directly on the characters of the path, so it doesn't allocate. Since the trie
+ * never changes once built, it can be shared between threads without locking.
+ *
+ * @param <V> the value stored for each pattern
+ */
+class PathTrie<V> {
+    private static final String ANY = "*";
+    private static final String NUMBER = "#";
+
+    private final Node<V> mRoot;
+
+    private PathTrie(Node<V> root) {
+        mRoot = root;
+    }
+
+    /**
+     * Builds a trie from the given patterns and their values.
+     */
+    static <V> PathTrie<V> build(Map<String, V> patterns) {
+        BuilderNode<V> root = new BuilderNode<>();
+        for (Map.Entry<String, V> entry : patterns.entrySet()) {
+            BuilderNode<V> node = root;
+            for (String segment : split(entry.getKey())) {
+                BuilderNode<V> child = node.children.get(segment);
+                if (child == null) {
+                    child = new BuilderNode<>();
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+            node.value = entry.getValue();
+        }
+        return new PathTrie<>(root.freeze());
+    }
+
+    /**
+     * Splits a path into its non-empty segments.
+     */
+    static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    /**
+     * Returns the form a pattern is stored under, like "/prices/*", so patterns that differ only
+     * in their slashes compare equal.
+     */
+    static String normalize(String pattern) {
+        StringBuilder builder = new StringBuilder();
+        for (String segment : split(pattern)) {
+            builder.append('/').append(segment);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the value of the best pattern matching the given path, or null if none match.
+     */
+    V match(String path) {
+        return match((String) null, path, 0, path.length());
+    }
+
+    /**
+     * Returns the value of the best pattern matching a path made of {@code firstSegment} followed
+     * by the segments in {@code path} between {@code start} and {@code end}.
+     *
+     * @param firstSegment an extra segment to match before the path, or null for none
+     */
+    V match(String firstSegment, String path, int start, int end) {
+        if (firstSegment == null) {
+            return matchFrom(mRoot, path, start, end);
+        }
+
+        Node<V> exact = mRoot.child(firstSegment, 0, firstSegment.length());
+        if (exact != null) {
+            V value = matchFrom(exact, path, start, end);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (mRoot.number != null && isNumber(firstSegment, 0, firstSegment.length())) {
+            V value = matchFrom(mRoot.number, path, start, end);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (mRoot.any != null && !firstSegment.isEmpty()) {
+            return matchFrom(mRoot.any, path, start, end);
+        }
+        return null;
+    }
+
+    private static <V> V matchFrom(Node<V> node, String path, int start, int end) {
+        // Skip empty segments
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        if (start == end) {
+            return node.value;
+        }
+
+        int segmentEnd = path.indexOf('/', start);
+        if (segmentEnd < 0 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+
+        Node<V> exact = node.child(path, start, segmentEnd);
+        if (exact != null) {
+            V value = matchFrom(exact, path, segmentEnd, end);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (node.number != null && isNumber(path, start, segmentEnd)) {
+            V value = matchFrom(node.number, path, segmentEnd, end);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (node.any != null) {
+            return matchFrom(node.any, path, segmentEnd, end);
+        }
+        return null;
+    }
+
+    /**
+     * Adds the values of every pattern matching the given path to {@code out}, rather than only
+     * the best one.
+     */
+    void matchAll(String path, List<V> out) {
+        matchAllFrom(mRoot, path, 0, path.length(), out);
+    }
+
+    private static <V> void matchAllFrom(Node<V> node, String path, int start, int end,
+                                         List<V> out) {
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        if (start == end) {
+            if (node.value != null) {
+                out.add(node.value);
+            }
+            return;
+        }
+
+        int segmentEnd = path.indexOf('/', start);
+        if (segmentEnd < 0 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+
+        Node<V> exact = node.child(path, start, segmentEnd);
+        if (exact != null) {
+            matchAllFrom(exact, path, segmentEnd, end, out);
+        }
+        if (node.number != null && isNumber(path, start, segmentEnd)) {
+            matchAllFrom(node.number, path, segmentEnd, end, out);
+        }
+        if (node.any != null) {
+            matchAllFrom(node.any, path, segmentEnd, end, out);
+        }
+    }
+
+    /**
+     * Returns the value that comes first in the given order among every pattern matching the
+     * path, rather than the best match, or null if none match.
+     */
+    V matchFirst(String path, Comparator<? super V> order) {
+        return matchFirstFrom(mRoot, path, 0, path.length(), order);
+    }
+
+    private static <V> V matchFirstFrom(Node<V> node, String path, int start, int end,
+                                        Comparator<? super V> order) {
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        if (start == end) {
+            return node.value;
+        }
+
+        int segmentEnd = path.indexOf('/', start);
+        if (segmentEnd < 0 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+
+        V first = null;
+        Node<V> exact = node.child(path, start, segmentEnd);
+        if (exact != null) {
+            first = matchFirstFrom(exact, path, segmentEnd, end, order);
+        }
+        if (node.number != null && isNumber(path, start, segmentEnd)) {
+            first = first(first, matchFirstFrom(node.number, path, segmentEnd, end, order), order);
+        }
+        if (node.any != null) {
+            first = first(first, matchFirstFrom(node.any, path, segmentEnd, end, order), order);
+        }
+        return first;
+    }
+
+    private static <V> V first(V a, V b, Comparator<? super V> order) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return order.compare(a, b) <= 0 ? a : b;
+    }
+
+    private static boolean isNumber(String s, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the same hash as {@link String#hashCode()} for part of a string.
+     */
+    private static int hash(String s, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Node<V> {
+        // Open addressing hash table of exact segments
+        final String[] keys;
+        final Node<V>[] children;
+        final int mask;
+
+        final Node<V> number;
+        final Node<V> any;
+        final V value;
+
+        Node(String[] keys, Node<V>[] children, Node<V> number, Node<V> any, V value) {
+            this.keys = keys;
+            this.children = children;
+            this.mask = keys.length - 1;
+            this.number = number;
+            this.any = any;
+            this.value = value;
+        }
+
+        Node<V> child(String s, int start, int end) {
+            if (keys.length == 0) {
+                return null;
+            }
+            int length = end - start;
+            int i = spread(hash(s, start, end)) & mask;
+            while (true) {
+                String key = keys[i];
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == length && s.regionMatches(start, key, 0, length)) {
+                    return children[i];
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
+    private static final class BuilderNode<V> {
+        final Map<String, BuilderNode<V>> children = new LinkedHashMap<>();
+        V value;
+
+        @SuppressWarnings("unchecked")
+        Node<V> freeze() {
+            Node<V> number = null;
+            Node<V> any = null;
+            int exactCount = 0;
+            for (Map.Entry<String, BuilderNode<V>> entry : children.entrySet()) {
+                if (entry.getKey().equals(NUMBER)) {
+                    number = entry.getValue().freeze();
+                } else if (entry.getKey().equals(ANY)) {
+                    any = entry.getValue().freeze();
+                } else {
+                    exactCount++;
+                }
+            }
+
+            // Keep the table at most half full so probes stay short
+            int size = 0;
+            if (exactCount > 0) {
+                size = Integer.highestOneBit(exactCount) << 2;
+            }
+            String[] keys = new String[size];
+            Node<V>[] nodes = (Node<V>[]) new Node<?>[size];
+            for (Map.Entry<String, BuilderNode<V>> entry : children.entrySet()) {
+                String key = entry.getKey();
+                if (key.equals(NUMBER) || key.equals(ANY)) {
+                    continue;
+                }
+                int i = spread(key.hashCode()) & (size - 1);
+                while (keys[i] != null) {
+                    i = (i + 1) & (size - 1);
+                }
+                keys[i] = key;
+                nodes[i] = entry.getValue().freeze();
+            }
+            return new Node<>(keys, nodes, number, any, value);
+        }
+    }
+}
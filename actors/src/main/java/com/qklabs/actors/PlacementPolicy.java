@@ -0,0 +1,39 @@
+package com.qklabs.actors;
+
+/**
+ * A PlacementPolicy decides which thread a new actor is bound to by a
+ * {@link ThreadBoundDispatcher}.
+ *
+ * Implementations must be thread safe, since actors may be created from any thread.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Picks the queue a new actor should be bound to.
+     *
+     * @param path the path of the new actor
+     * @param queues the dispatcher's queues, one per thread
+     * @return the index of the chosen queue, from 0 to {@code queues.count() - 1}
+     */
+    int place(String path, Queues queues);
+
+    /**
+     * A read-only view of a dispatcher's queues.
+     */
+    interface Queues {
+        /**
+         * Returns the number of queues.
+         */
+        int count();
+
+        /**
+         * Returns the approximate number of events waiting in a queue.
+         */
+        int depth(int index);
+
+        /**
+         * Returns the number of actors currently bound to a queue.
+         */
+        int actorCount(int index);
+    }
+}
@@ -0,0 +1,48 @@
+package com.qklabs.actors;
+
+/**
+ * Configures a router: a path that fronts several actors of the same class, called routees, so
+ * that messages to the path can be processed in parallel. See
+ * {@link ActorSystem.Builder#pool(String, Pool)}.
+ *
+ * A resizable pool grows by one routee when every routee is backed up, and shrinks by one when
+ * most of them are idle.
+ */
+public class Pool {
+    /**
+     * The pool checks whether to resize after this many messages.
+     */
+    static final int RESIZE_INTERVAL = 64;
+    /**
+     * A routee is backed up when it has this many messages waiting, besides the one it's on.
+     */
+    static final int PRESSURE_THRESHOLD = 1;
+
+    final int minRoutees;
+    final int maxRoutees;
+    final RoutingLogic logic;
+
+    /**
+     * Creates a pool with a fixed number of routees.
+     */
+    public Pool(int routees, RoutingLogic logic) {
+        this(routees, routees, logic);
+    }
+
+    /**
+     * Creates a pool that resizes between the given numbers of routees, depending on load.
+     */
+    public Pool(int minRoutees, int maxRoutees, RoutingLogic logic) {
+        if (minRoutees <= 0 || maxRoutees < minRoutees) {
+            throw new IllegalArgumentException("Invalid pool size " + minRoutees + " to "
+                    + maxRoutees);
+        }
+        this.minRoutees = minRoutees;
+        this.maxRoutees = maxRoutees;
+        this.logic = logic;
+    }
+
+    boolean isResizable() {
+        return minRoutees < maxRoutees;
+    }
+}
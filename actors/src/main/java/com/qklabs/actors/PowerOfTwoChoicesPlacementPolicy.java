@@ -0,0 +1,30 @@
+package com.qklabs.actors;
+
+import java.util.Random;
+
+/**
+ * Picks two queues at random and binds each new actor to the one with fewer waiting events. This
+ * spreads load almost as evenly as always picking the least loaded queue, without having to look
+ * at every queue.
+ */
+public class PowerOfTwoChoicesPlacementPolicy implements PlacementPolicy {
+    private final Random mRandom = new Random();
+
+    @Override
+    public int place(String path, Queues queues) {
+        int count = queues.count();
+        int first = mRandom.nextInt(count);
+        if (count == 1) {
+            return first;
+        }
+        // Pick a second queue that's different from the first
+        int second = (first + 1 + mRandom.nextInt(count - 1)) % count;
+
+        int firstDepth = queues.depth(first);
+        int secondDepth = queues.depth(second);
+        if (firstDepth != secondDepth) {
+            return firstDepth < secondDepth ? first : second;
+        }
+        return queues.actorCount(first) <= queues.actorCount(second) ? first : second;
+    }
+}
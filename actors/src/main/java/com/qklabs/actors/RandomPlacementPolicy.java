@@ -0,0 +1,15 @@
+package com.qklabs.actors;
+
+import java.util.Random;
+
+/**
+ * Binds each new actor to a queue picked uniformly at random.
+ */
+public class RandomPlacementPolicy implements PlacementPolicy {
+    private final Random mRandom = new Random();
+
+    @Override
+    public int place(String path, Queues queues) {
+        return mRandom.nextInt(queues.count());
+    }
+}
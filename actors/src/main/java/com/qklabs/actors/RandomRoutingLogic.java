@@ -0,0 +1,15 @@
+package com.qklabs.actors;
+
+import java.util.Random;
+
+/**
+ * Sends each message to a routee picked uniformly at random.
+ */
+public class RandomRoutingLogic implements RoutingLogic {
+    private final Random mRandom = new Random();
+
+    @Override
+    public int select(Object message, Routees routees) {
+        return mRandom.nextInt(routees.count());
+    }
+}
@@ -0,0 +1,61 @@
+package com.qklabs.actors;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates actors of a class through its empty constructor. The constructor is looked up once per
+ * class and cached, so creating an actor by class costs a single reflective call.
+ */
+final class ReflectiveActorFactory implements ActorFactory<Actor> {
+    private static final ConcurrentMap<Class<? extends Actor>, ReflectiveActorFactory> sFactories =
+            new ConcurrentHashMap<>();
+
+    final Class<? extends Actor> cls;
+    private final Constructor<? extends Actor> mConstructor;
+
+    private ReflectiveActorFactory(Class<? extends Actor> cls) {
+        this.cls = cls;
+        try {
+            mConstructor = cls.getConstructor();
+        } catch (NoSuchMethodException e) {
+            String msg = String.format(
+                    "Actor %s must have empty constructor.\n" +
+                    "Note that non-static inner classes can't have an empty constructor, so " +
+                    "an Actor can't currently be a non-static inner class.", cls.getName());
+            throw new RuntimeException(msg, e);
+        }
+        try {
+            // Skips the access check on every call
+            mConstructor.setAccessible(true);
+        } catch (SecurityException e) {
+            // Still works, just a little slower
+        }
+    }
+
+    /**
+     * Returns the factory for a class, creating it the first time.
+     */
+    static ReflectiveActorFactory forClass(Class<? extends Actor> cls) {
+        ReflectiveActorFactory factory = sFactories.get(cls);
+        if (factory == null) {
+            factory = new ReflectiveActorFactory(cls);
+            ReflectiveActorFactory existing = sFactories.putIfAbsent(cls, factory);
+            if (existing != null) {
+                factory = existing;
+            }
+        }
+        return factory;
+    }
+
+    @Override
+    public Actor create() {
+        try {
+            return mConstructor.newInstance();
+        } catch (InvocationTargetException|InstantiationException|IllegalAccessException e) {
+            throw new RuntimeException("Could not create actor", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.qklabs.actors;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reference to an actor in another actor system. Unlike {@link ActorRefImpl} there can be many
+ * refs to the same actor, so they're equal if their uris are.
+ */
+class RemoteActorRef implements ActorRef {
+
+    private final ActorSystem mSystem;
+    private final RemoteTransport mTransport;
+    private final String mAuthority;
+    private final String mPath;
+
+    RemoteActorRef(ActorSystem system, RemoteTransport transport, String authority,
+                   String path) {
+        mSystem = system;
+        mTransport = transport;
+        mAuthority = authority;
+        mPath = path;
+    }
+
+    /**
+     * @return true if the message was queued for the other system. There's no way to know if it
+     *         was delivered.
+     */
+    @Override
+    public boolean tell(Object message, ActorRef sender) {
+        return mTransport.send(mAuthority, mPath, message, sender);
+    }
+
+    @Override
+    public boolean tell(Object message) {
+        return tell(message, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages, ActorRef sender) {
+        // Messages queued together are sent in the same frame anyway
+        for (Object message : messages) {
+            tell(message, sender);
+        }
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages) {
+        tellAll(messages, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public ActorFuture<Object> ask(Object message, long timeout, TimeUnit unit) {
+        return mSystem.ask(this, message, timeout, unit);
+    }
+
+    /**
+     * Returns the actor's uri, such as "actor://worker-2/jobs/7".
+     */
+    @Override
+    public String getPath() {
+        return ActorRegistry.ACTOR_SCHEME + "://" + mAuthority + mPath;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RemoteActorRef)) {
+            return false;
+        }
+        RemoteActorRef other = (RemoteActorRef) o;
+        return mAuthority.equals(other.mAuthority) && mPath.equals(other.mPath);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mAuthority.hashCode() + mPath.hashCode();
+    }
+}
@@ -0,0 +1,704 @@
+package com.qklabs.actors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends messages to actors in other actor systems over TCP, usually other processes on the same
+ * host. Each system has an authority, and a message to "actor://worker-2/jobs/7" goes to the
+ * actor at "/jobs/7" in the system whose authority is "worker-2".
+ *
+ * There's one connection per peer, whichever side opened it, and everything sent to the peer is
+ * multiplexed over it. A single thread does all of the I/O through a selector. Senders only queue
+ * the message and wake the thread if it isn't already due to write, and the thread packs
+ * everything queued into one length-prefixed frame per write. Each side of a connection sends a
+ * path in full the first time and as a small number after that.
+ *
+ * Delivery is at most once: messages queued for a connection that fails are dropped, and the next
+ * message reconnects.
+ *
+ * Peers aren't authenticated. A connection is only accepted if the authority it claims is a
+ * known peer, unless the system accepts any peer, but anything that can reach the listening
+ * address can claim to be one.
+ */
+class RemoteTransport implements Runnable {
+    private static final String URI_PREFIX = ActorRegistry.ACTOR_SCHEME + "://";
+
+    // A frame is written once it reaches this size, though a single large message can exceed it
+    static final int FRAME_BYTES = 64 * 1024;
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    /** The largest frame a peer can send before its hello: a type byte and a UTF string. */
+    private static final int MAX_HELLO_BYTES = 1 + 2 + 65535;
+    // The most distinct strings each side of a connection remembers
+    private static final int MAX_STRINGS = 4096;
+
+    private static final byte HELLO = 1;
+    private static final byte MESSAGES = 2;
+
+    private final ActorSystem mSystem;
+    private final String mAuthority;
+    private final Map<String, InetSocketAddress> mPeers;
+    // The authorities allowed to connect, or null to allow any
+    private final Set<String> mAcceptedAuthorities;
+    private final MessageCodec mCodec;
+    private final Selector mSelector;
+    // Null if this system doesn't accept connections
+    private final ServerSocketChannel mServer;
+    private final Thread mThread;
+    // The connection used to send to each peer
+    private final ConcurrentHashMap<String, Connection> mConnections = new ConcurrentHashMap<>();
+    // Outgoing connections for the I/O thread to open
+    private final ConcurrentLinkedQueue<Connection> mNewConnections =
+            new ConcurrentLinkedQueue<>();
+    // Connections with messages queued that the I/O thread hasn't picked up yet
+    private final ConcurrentLinkedQueue<Connection> mWrites = new ConcurrentLinkedQueue<>();
+    // Asks waiting for a reply from another system, by the responder's path. Responder paths are
+    // easy to guess, so only the peer the ask went to may reply.
+    private final ConcurrentHashMap<String, PendingAsk> mAsks = new ConcurrentHashMap<>();
+
+    // Only touched by the I/O thread
+    private final Frame mScratch = new Frame();
+    private final DataOutputStream mScratchOut = new DataOutputStream(mScratch);
+
+    private volatile boolean mShutdown = false;
+    private volatile long mShutdownDeadline;
+
+    RemoteTransport(ActorSystem system, String authority, InetSocketAddress listenAddress,
+                    Map<String, InetSocketAddress> peers, Set<String> acceptedAuthorities,
+                    MessageCodec codec) throws IOException {
+        mSystem = system;
+        mAuthority = authority;
+        mPeers = peers;
+        mAcceptedAuthorities = acceptedAuthorities;
+        mCodec = codec;
+        mSelector = Selector.open();
+        if (listenAddress != null) {
+            mServer = ServerSocketChannel.open();
+            mServer.configureBlocking(false);
+            mServer.socket().bind(listenAddress);
+            mServer.register(mSelector, SelectionKey.OP_ACCEPT);
+        } else {
+            mServer = null;
+        }
+        mThread = new IoThread(this);
+        mThread.start();
+    }
+
+    /**
+     * Returns true on a transport's I/O thread, which mustn't wait for room in a full mailbox.
+     */
+    static boolean isIoThread() {
+        return Thread.currentThread() instanceof IoThread;
+    }
+
+    String getAuthority() {
+        return mAuthority;
+    }
+
+    /**
+     * Returns the address this system accepts connections on, or null if it doesn't.
+     */
+    InetSocketAddress getAddress() {
+        return mServer == null ? null
+                : (InetSocketAddress) mServer.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the authority of an "actor://authority/path" uri, or null if it has none.
+     */
+    static String authorityOf(String uri) {
+        if (!uri.startsWith(URI_PREFIX)) {
+            return null;
+        }
+        int end = uri.indexOf('/', URI_PREFIX.length());
+        return uri.substring(URI_PREFIX.length(), end < 0 ? uri.length() : end);
+    }
+
+    /**
+     * Returns the path of an "actor://authority/path" uri.
+     */
+    static String pathOf(String uri) {
+        int end = uri.indexOf('/', URI_PREFIX.length());
+        return end < 0 ? "/" : uri.substring(end);
+    }
+
+    /**
+     * Returns a ref to an actor in another system.
+     * @throws ActorNotFoundException if the authority isn't a known peer
+     */
+    ActorRef actorFor(String authority, String path) {
+        if (!mPeers.containsKey(authority) && !mConnections.containsKey(authority)) {
+            throw new ActorNotFoundException("No peer with the authority " + authority);
+        }
+        return new RemoteActorRef(mSystem, this, authority, path);
+    }
+
+    /**
+     * Queues a message for a peer.
+     * @return false if there's no way to reach the peer
+     */
+    boolean send(String authority, String path, Object message, ActorRef sender) {
+        if (mShutdown) {
+            return false;
+        }
+        Connection connection = connectionTo(authority);
+        if (connection == null) {
+            ActorSystem.LOG.info("Message sent to unknown peer " + authority + ": " + message);
+            return false;
+        }
+        connection.queue.add(new Outgoing(path, message, uriOf(sender, authority)));
+        if (connection.writeScheduled.compareAndSet(false, true)) {
+            mWrites.add(connection);
+            mSelector.wakeup();
+        }
+        return true;
+    }
+
+    /**
+     * Stops waiting for the reply to an ask that timed out or was cancelled.
+     */
+    void forgetAsk(AskResponder responder) {
+        mAsks.remove(responder.getPath());
+    }
+
+    private Connection connectionTo(String authority) {
+        Connection connection = mConnections.get(authority);
+        if (connection != null) {
+            return connection;
+        }
+        InetSocketAddress address = mPeers.get(authority);
+        if (address == null) {
+            return null;
+        }
+        synchronized (mConnections) {
+            connection = mConnections.get(authority);
+            if (connection == null) {
+                connection = new Connection(authority, address);
+                mConnections.put(authority, connection);
+                mNewConnections.add(connection);
+                mSelector.wakeup();
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * @param authority the peer the sender is being sent to
+     */
+    private String uriOf(ActorRef sender, String authority) {
+        if (sender == null || sender == mSystem.getEmptyActorRef()) {
+            return "";
+        } else if (sender instanceof RemoteActorRef) {
+            return sender.getPath();
+        } else if (sender instanceof AskResponder) {
+            mAsks.put(sender.getPath(), new PendingAsk(authority, sender));
+        }
+        return URI_PREFIX + mAuthority + sender.getPath();
+    }
+
+    /**
+     * Flushes what's already queued, waiting up to the given time, then closes every connection.
+     */
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        mShutdownDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        mShutdown = true;
+        mSelector.wakeup();
+        mThread.join(Math.max(timeoutMillis, 1));
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!mShutdown || (hasPendingWrites()
+                    && System.nanoTime() - mShutdownDeadline < 0)) {
+                if (mShutdown) {
+                    mSelector.select(10);
+                } else {
+                    mSelector.select();
+                }
+                openNewConnections();
+                flushScheduled();
+
+                Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) {
+                            finishConnect(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    } catch (IOException e) {
+                        close(connection, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ActorSystem.LOG.warning("The transport failed: " + e);
+        } finally {
+            for (SelectionKey key : mSelector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    close((Connection) key.attachment(), null);
+                }
+            }
+            try {
+                if (mServer != null) {
+                    mServer.close();
+                }
+                mSelector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private boolean hasPendingWrites() {
+        for (Connection connection : mConnections.values()) {
+            if (!connection.closed && (connection.writeBuffer.hasRemaining()
+                    || !connection.queue.isEmpty())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void openNewConnections() {
+        Connection connection;
+        while ((connection = mNewConnections.poll()) != null) {
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                connection.channel = channel;
+                connection.key = channel.register(mSelector, 0, connection);
+                if (channel.connect(connection.address)) {
+                    finishConnect(connection);
+                } else {
+                    connection.key.interestOps(SelectionKey.OP_CONNECT);
+                }
+            } catch (IOException e) {
+                close(connection, e);
+            }
+        }
+    }
+
+    private void flushScheduled() {
+        Connection connection;
+        while ((connection = mWrites.poll()) != null) {
+            // Cleared first, so anything queued from here on schedules another write
+            connection.writeScheduled.set(false);
+            if (connection.closed) {
+                connection.queue.clear();
+            } else if (connection.connected) {
+                try {
+                    flush(connection);
+                } catch (IOException e) {
+                    close(connection, e);
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = mServer.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            // The peer says who it is in its first frame
+            Connection connection = new Connection(null, null);
+            connection.channel = channel;
+            connection.connected = true;
+            connection.key = channel.register(mSelector, SelectionKey.OP_READ, connection);
+        } catch (IOException e) {
+            ActorSystem.LOG.warning("Could not accept a connection: " + e);
+        }
+    }
+
+    private void finishConnect(Connection connection) throws IOException {
+        if (!connection.channel.finishConnect()) {
+            return;
+        }
+        connection.connected = true;
+        connection.key.interestOps(SelectionKey.OP_READ);
+
+        Frame frame = connection.frame;
+        frame.reset();
+        connection.out.writeInt(0);
+        connection.out.writeByte(HELLO);
+        connection.out.writeUTF(mAuthority);
+        connection.writeBuffer = frame.finish();
+        flush(connection);
+    }
+
+    /**
+     * Writes until everything queued is written or the socket is full, in which case the
+     * selector says when to carry on.
+     */
+    private void flush(Connection connection) throws IOException {
+        while (true) {
+            if (connection.writeBuffer.hasRemaining()) {
+                connection.channel.write(connection.writeBuffer);
+                if (connection.writeBuffer.hasRemaining()) {
+                    connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            if (!encodeFrame(connection)) {
+                connection.key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Encodes as many queued messages as fit into the next frame.
+     * @return false if nothing was queued
+     */
+    private boolean encodeFrame(Connection connection) throws IOException {
+        Frame frame = connection.frame;
+        DataOutputStream out = connection.out;
+        frame.reset();
+        out.writeInt(0);
+        out.writeByte(MESSAGES);
+        int count = 0;
+        Outgoing next;
+        while (frame.size() < FRAME_BYTES && (next = connection.queue.poll()) != null) {
+            // Encode the message first, so a message that can't be encoded doesn't leave its
+            // path in one side's string table but not the other's
+            mScratch.reset();
+            try {
+                mCodec.encode(next.message, mScratchOut);
+                mScratchOut.flush();
+            } catch (IOException | RuntimeException e) {
+                ActorSystem.LOG.warning("Dropped a message to " + next.path
+                        + " that couldn't be encoded: " + e);
+                continue;
+            }
+            writeString(connection, next.path);
+            writeString(connection, next.senderUri);
+            writeVarint(out, mScratch.size());
+            mScratch.writeTo(out);
+            count++;
+        }
+        if (count == 0) {
+            return false;
+        }
+        connection.writeBuffer = frame.finish();
+        return true;
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        if (connection.channel.read(buffer) < 0) {
+            close(connection, null);
+            return;
+        }
+
+        buffer.flip();
+        int needed = 0;
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            int maxLength = connection.authority == null ? MAX_HELLO_BYTES : MAX_FRAME_BYTES;
+            if (length <= 0 || length > maxLength) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (buffer.remaining() < 4 + length) {
+                needed = 4 + length;
+                break;
+            }
+            int start = buffer.position() + 4;
+            readFrame(connection, buffer.array(), buffer.arrayOffset() + start, length);
+            buffer.position(start + length);
+        }
+        buffer.compact();
+
+        if (needed > buffer.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(Integer.highestOneBit(needed - 1) << 1);
+            buffer.flip();
+            bigger.put(buffer);
+            connection.readBuffer = bigger;
+        }
+    }
+
+    private void readFrame(Connection connection, byte[] bytes, int offset, int length)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+        byte type = in.readByte();
+        if (type == HELLO) {
+            if (connection.authority != null) {
+                throw new IOException("Unexpected hello from " + connection.authority);
+            }
+            String authority = in.readUTF();
+            if (authority.equals(mAuthority) || (mAcceptedAuthorities != null
+                    && !mAcceptedAuthorities.contains(authority))) {
+                throw new IOException("Refused a connection from unknown peer " + authority);
+            }
+            connection.authority = authority;
+            // Reply over this connection, unless there's already one to the same peer
+            mConnections.putIfAbsent(connection.authority, connection);
+            return;
+        } else if (type != MESSAGES) {
+            throw new IOException("Unknown frame type " + type);
+        } else if (connection.authority == null) {
+            throw new IOException("Messages from a peer that didn't say who it is");
+        }
+
+        while (in.available() > 0) {
+            String path = readString(connection, in);
+            String senderUri = readString(connection, in);
+            int size = readVarint(in);
+            int start = offset + length - in.available();
+            if (size < 0 || size > in.available()) {
+                throw new IOException("Invalid message length " + size);
+            }
+            in.skipBytes(size);
+
+            Object message;
+            try {
+                message = mCodec.decode(new DataInputStream(
+                        new ByteArrayInputStream(bytes, start, size)));
+            } catch (IOException | RuntimeException e) {
+                ActorSystem.LOG.warning("Dropped a message to " + path
+                        + " that couldn't be decoded: " + e);
+                continue;
+            }
+            deliver(connection, path, message, senderFor(connection, senderUri));
+        }
+    }
+
+    private void deliver(Connection connection, String path, Object message, ActorRef sender) {
+        try {
+            ActorRef target;
+            PendingAsk ask = mAsks.get(path);
+            if (ask != null) {
+                if (!ask.authority.equals(connection.authority)) {
+                    ActorSystem.LOG.warning("Dropped a reply to " + path + " from "
+                            + connection.authority + ", which wasn't asked");
+                    return;
+                }
+                if (!mAsks.remove(path, ask)) {
+                    // Timed out in the meantime
+                    return;
+                }
+                target = ask.responder;
+            } else {
+                target = mSystem.resolveLocal(path);
+            }
+            if (target == null) {
+                ActorSystem.LOG.info("Message sent to unknown actor " + path + " from "
+                        + sender.getPath() + ": " + message);
+                return;
+            }
+            // Never blocks, even for a BLOCK mailbox that's full, since that would stall every
+            // connection. See isIoThread().
+            if (!target.tell(message, sender)) {
+                ActorSystem.LOG.info("Dropped a message to " + path + " from "
+                        + sender.getPath() + ": " + message);
+            }
+        } catch (RuntimeException e) {
+            // Such as the system shutting down
+            ActorSystem.LOG.warning("Could not deliver a message to " + path + ": " + e);
+        }
+    }
+
+    private ActorRef senderFor(Connection connection, String uri) {
+        if (uri.isEmpty()) {
+            return mSystem.getEmptyActorRef();
+        }
+        ActorRef sender = connection.senders.get(uri);
+        if (sender != null) {
+            return sender;
+        }
+        String authority = authorityOf(uri);
+        if (authority == null || authority.equals(mAuthority)) {
+            ActorRef local = mSystem.resolveLocal(authority == null ? uri : pathOf(uri));
+            return local != null ? local : mSystem.getEmptyActorRef();
+        }
+        sender = new RemoteActorRef(mSystem, this, authority, pathOf(uri));
+        if (connection.senders.size() < MAX_STRINGS) {
+            connection.senders.put(uri, sender);
+        }
+        return sender;
+    }
+
+    private static void writeString(Connection connection, String value) throws IOException {
+        Integer id = connection.outStrings.get(value);
+        if (id != null) {
+            writeVarint(connection.out, id + 1);
+            return;
+        }
+        writeVarint(connection.out, 0);
+        connection.out.writeUTF(value);
+        if (connection.outStrings.size() < MAX_STRINGS) {
+            connection.outStrings.put(value, connection.outStrings.size());
+        }
+    }
+
+    private static String readString(Connection connection, DataInputStream in)
+            throws IOException {
+        int id = readVarint(in);
+        if (id > 0) {
+            if (id > connection.inStrings.size()) {
+                throw new IOException("Unknown string " + id);
+            }
+            return connection.inStrings.get(id - 1);
+        }
+        String value = in.readUTF();
+        if (connection.inStrings.size() < MAX_STRINGS) {
+            connection.inStrings.add(value);
+        }
+        return value;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private void close(Connection connection, IOException cause) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        try {
+            if (connection.channel != null) {
+                connection.channel.close();
+            }
+        } catch (IOException ignored) {
+        }
+        if (connection.authority != null) {
+            mConnections.remove(connection.authority, connection);
+        }
+        int dropped = connection.queue.size();
+        connection.queue.clear();
+        if (cause != null || dropped > 0) {
+            ActorSystem.LOG.warning("Closed the connection to " + connection.authority
+                    + (cause != null ? " after " + cause : "") + ", dropping " + dropped
+                    + " messages");
+        }
+    }
+
+    private static class Outgoing {
+        final String path;
+        final Object message;
+        final String senderUri;
+
+        Outgoing(String path, Object message, String senderUri) {
+            this.path = path;
+            this.message = message;
+            this.senderUri = senderUri;
+        }
+    }
+
+    /**
+     * A frame being encoded, which can be written straight from its array.
+     */
+    private static class Frame extends ByteArrayOutputStream {
+        Frame() {
+            super(FRAME_BYTES);
+        }
+
+        /**
+         * Fills in the length prefix and returns the frame for writing.
+         */
+        ByteBuffer finish() {
+            int length = count - 4;
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private static class Connection {
+        final InetSocketAddress address;
+        final ConcurrentLinkedQueue<Outgoing> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+        volatile boolean closed = false;
+
+        // Only touched by the I/O thread
+        String authority;
+        SocketChannel channel;
+        SelectionKey key;
+        boolean connected = false;
+        ByteBuffer writeBuffer = ByteBuffer.allocate(0);
+        ByteBuffer readBuffer = ByteBuffer.allocate(FRAME_BYTES);
+        final Frame frame = new Frame();
+        final DataOutputStream out = new DataOutputStream(frame);
+        final Map<String, Integer> outStrings = new HashMap<>();
+        final List<String> inStrings = new ArrayList<>();
+        final Map<String, ActorRef> senders = new HashMap<>();
+
+        Connection(String authority, InetSocketAddress address) {
+            this.authority = authority;
+            this.address = address;
+        }
+    }
+
+    private static final class PendingAsk {
+        final String authority;
+        final ActorRef responder;
+
+        PendingAsk(String authority, ActorRef responder) {
+            this.authority = authority;
+            this.responder = responder;
+        }
+    }
+
+    private static final class IoThread extends Thread {
+        IoThread(Runnable runnable) {
+            super(runnable, "actors-transport");
+            setDaemon(true);
+        }
+    }
+}
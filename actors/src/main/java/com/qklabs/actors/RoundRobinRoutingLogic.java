@@ -0,0 +1,15 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends messages to each routee in turn.
+ */
+public class RoundRobinRoutingLogic implements RoutingLogic {
+    private final AtomicInteger mNext = new AtomicInteger();
+
+    @Override
+    public int select(Object message, Routees routees) {
+        return (mNext.getAndIncrement() & Integer.MAX_VALUE) % routees.count();
+    }
+}
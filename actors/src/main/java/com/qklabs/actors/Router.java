@@ -0,0 +1,242 @@
+package com.qklabs.actors;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Fronts a pool of routees at one path. The router isn't an actor itself: messages are routed on
+ * the sender's thread straight into a routee's mailbox, so the router never becomes the
+ * bottleneck it's there to remove.
+ *
+ * Routees are ordinary actors at paths like "/events/$1". Resizing swaps in a new array of
+ * routees, so routing never takes a lock.
+ */
+class Router implements ActorRef {
+    /**
+     * How long a routee removed by shrinking the pool has to finish the messages sent to it.
+     */
+    static final long RETIRE_DELAY_MILLIS = 1000;
+
+    private final ActorSystem mSystem;
+    private final String mPath;
+    private final ActorFactory<? extends Actor> mFactory;
+    private final Pool mPool;
+    private volatile RouteeSet mRoutees;
+    private final AtomicBoolean mResizing = new AtomicBoolean(false);
+    // Guarded by mResizing
+    private int mNextRouteeId = 0;
+    // Only used to decide when to check the pool size, so lost updates don't matter
+    private int mMessageCount = 0;
+    private final AtomicBoolean mStopped = new AtomicBoolean(false);
+
+    Router(ActorSystem system, String path, ActorFactory<? extends Actor> factory, Pool pool) {
+        mSystem = system;
+        mPath = path;
+        mFactory = factory;
+        mPool = pool;
+        ActorRefImpl[] routees = new ActorRefImpl[pool.minRoutees];
+        for (int i = 0; i < routees.length; i++) {
+            routees[i] = createRoutee();
+        }
+        mRoutees = new RouteeSet(routees);
+    }
+
+    private ActorRefImpl createRoutee() {
+        return mSystem.createRoutee(mPath + "/$" + (mNextRouteeId++), mFactory, this);
+    }
+
+    @Override
+    public boolean tell(Object message, ActorRef sender) {
+        if (mStopped.get()) {
+            ActorSystem.LOG.info("Message sent to stopped router " + mPath + ": " + message);
+            return false;
+        }
+        if (message instanceof PoisonPill) {
+            mSystem.stop(this);
+            return true;
+        }
+        if (mPool.isResizable() && (++mMessageCount & (Pool.RESIZE_INTERVAL - 1)) == 0) {
+            resize();
+        }
+
+        RouteeSet routees = mRoutees;
+        int index = mPool.logic.select(message, routees);
+        if (index == RoutingLogic.ALL) {
+            mSystem.broadcast(Arrays.asList(routees.refs), message, sender);
+            return true;
+        }
+        return routees.refs[index].tell(message, sender);
+    }
+
+    @Override
+    public boolean tell(Object message) {
+        return tell(message, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages, ActorRef sender) {
+        for (Object message : messages) {
+            tell(message, sender);
+        }
+    }
+
+    @Override
+    public void tellAll(Collection<?> messages) {
+        tellAll(messages, mSystem.getEmptyActorRef());
+    }
+
+    @Override
+    public ActorFuture<Object> ask(Object message, long timeout, TimeUnit unit) {
+        return mSystem.ask(this, message, timeout, unit);
+    }
+
+    @Override
+    public String getPath() {
+        return mPath;
+    }
+
+    ActorRefImpl[] getRoutees() {
+        return mRoutees.refs;
+    }
+
+    /**
+     * Grows the pool if every routee is backed up, or shrinks it if most are idle.
+     */
+    void resize() {
+        if (!mResizing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (mStopped.get()) {
+                return;
+            }
+            ActorRefImpl[] refs = mRoutees.refs;
+            int busy = 0;
+            int idle = 0;
+            for (ActorRefImpl ref : refs) {
+                int pending = ref.getCell().getPendingCount();
+                if (pending > Pool.PRESSURE_THRESHOLD) {
+                    busy++;
+                } else if (pending == 0) {
+                    idle++;
+                }
+            }
+
+            if (busy == refs.length && refs.length < mPool.maxRoutees) {
+                ActorRefImpl[] grown = Arrays.copyOf(refs, refs.length + 1);
+                grown[refs.length] = createRoutee();
+                mRoutees = new RouteeSet(grown);
+            } else if (idle > refs.length / 2 && refs.length > mPool.minRoutees) {
+                // Always remove the last routee, so consistent hashing only moves its keys
+                ActorRefImpl retired = refs[refs.length - 1];
+                mRoutees = new RouteeSet(Arrays.copyOf(refs, refs.length - 1));
+                retire(retired);
+            }
+        } finally {
+            mResizing.set(false);
+        }
+    }
+
+    /**
+     * Stops a routee that's no longer in the pool once it has finished its messages. Senders may
+     * still hold the old routees for a moment, so it isn't stopped right away.
+     */
+    private void retire(final ActorRefImpl routee) {
+        mSystem.getTimer().schedule(new HashedWheelTimer.Timeout() {
+            @Override
+            void expire() {
+                if (routee.getCell().getPendingCount() == 0 || mStopped.get()) {
+                    mSystem.stop(routee);
+                } else {
+                    retire(routee);
+                }
+            }
+        }, RETIRE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replaces a routee that stopped while still in the pool, for example because its supervisor
+     * stopped it, so messages aren't routed to it any more.
+     */
+    void onRouteeStopped(ActorRefImpl routee) {
+        // Wait out any resize, unless the router is stopping, in which case it holds the flag
+        // for good and there's nothing to replace
+        while (!mResizing.compareAndSet(false, true)) {
+            if (mStopped.get()) {
+                return;
+            }
+            Thread.yield();
+        }
+        try {
+            RouteeSet routees = mRoutees;
+            // Null while the constructor is still creating the first routees
+            if (mStopped.get() || routees == null || mSystem.isShuttingDown()) {
+                return;
+            }
+            ActorRefImpl[] refs = routees.refs;
+            for (int i = 0; i < refs.length; i++) {
+                if (refs[i] != routee) {
+                    continue;
+                }
+                ActorRefImpl[] replaced = Arrays.copyOf(refs, refs.length);
+                try {
+                    // In the same place, so consistent hashing doesn't move any other keys
+                    replaced[i] = createRoutee();
+                } catch (RuntimeException e) {
+                    ActorSystem.LOG.log(Level.SEVERE, "Could not replace routee " + routee.getPath()
+                            + " of " + mPath, e);
+                    if (refs.length == 1) {
+                        return;
+                    }
+                    replaced = new ActorRefImpl[refs.length - 1];
+                    System.arraycopy(refs, 0, replaced, 0, i);
+                    System.arraycopy(refs, i + 1, replaced, i, refs.length - i - 1);
+                }
+                mRoutees = new RouteeSet(replaced);
+                return;
+            }
+            // Otherwise it was retired by a resize
+        } finally {
+            mResizing.set(false);
+        }
+    }
+
+    /**
+     * Stops the router and all of its routees.
+     * @return false if it was already stopped
+     */
+    boolean stop() {
+        if (!mStopped.compareAndSet(false, true)) {
+            return false;
+        }
+        // Wait out any resize in progress, and never release the flag so there are no more
+        while (!mResizing.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        for (ActorRefImpl routee : mRoutees.refs) {
+            mSystem.stop(routee);
+        }
+        return true;
+    }
+
+    private static class RouteeSet implements RoutingLogic.Routees {
+        final ActorRefImpl[] refs;
+
+        RouteeSet(ActorRefImpl[] refs) {
+            this.refs = refs;
+        }
+
+        @Override
+        public int count() {
+            return refs.length;
+        }
+
+        @Override
+        public int pendingCount(int index) {
+            return refs[index].getCell().getPendingCount();
+        }
+    }
+}
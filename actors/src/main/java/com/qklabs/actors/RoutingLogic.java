@@ -0,0 +1,39 @@
+package com.qklabs.actors;
+
+/**
+ * A RoutingLogic decides which of a router's routees gets each message. See {@link Pool}.
+ *
+ * Implementations must be thread safe, since messages may be sent to a router from any thread.
+ */
+public interface RoutingLogic {
+    /**
+     * Returned by {@link #select(Object, Routees)} to send the message to every routee.
+     */
+    int ALL = -1;
+
+    /**
+     * Picks the routee for a message.
+     *
+     * @param message the message being sent
+     * @param routees the router's current routees
+     * @return the index of the chosen routee, from 0 to {@code routees.count() - 1}, or
+     *         {@link #ALL}
+     */
+    int select(Object message, Routees routees);
+
+    /**
+     * A read-only view of a router's routees.
+     */
+    interface Routees {
+        /**
+         * Returns the number of routees. Always at least 1.
+         */
+        int count();
+
+        /**
+         * Returns the approximate number of messages a routee has been sent but hasn't finished
+         * processing.
+         */
+        int pendingCount(int index);
+    }
+}
@@ -0,0 +1,80 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages to actors later, or periodically. Get one from {@link ActorSystem#scheduler()}.
+ *
+ * Every message is sent from a single timer thread straight into the target's mailbox, and
+ * scheduling or cancelling costs the same no matter how many messages are pending, so it's fine
+ * to keep a timer per user session or request. Messages are sent up to 10 ms late, but never
+ * early.
+ */
+public class Scheduler {
+
+    private final ActorSystem mSystem;
+
+    Scheduler(ActorSystem system) {
+        mSystem = system;
+    }
+
+    /**
+     * Sends a message to an actor after a delay.
+     * @return a handle that cancels the message if it hasn't been sent yet
+     */
+    public Cancellable scheduleOnce(long delay, TimeUnit unit, ActorRef target, Object message) {
+        return scheduleOnce(delay, unit, target, message, mSystem.getEmptyActorRef());
+    }
+
+    public Cancellable scheduleOnce(long delay, TimeUnit unit, ActorRef target, Object message,
+                                    ActorRef sender) {
+        ScheduledMessage scheduled = new ScheduledMessage(target, message, sender);
+        mSystem.getTimer().schedule(scheduled, delay, unit);
+        return scheduled;
+    }
+
+    /**
+     * Sends a message to an actor after an initial delay, and then once every period until it's
+     * cancelled or the actor stops. Late sends don't delay the ones after them.
+     * @return a handle that stops the messages
+     */
+    public Cancellable scheduleAtFixedRate(long initialDelay, long period, TimeUnit unit,
+                                           ActorRef target, Object message) {
+        return scheduleAtFixedRate(initialDelay, period, unit, target, message,
+                mSystem.getEmptyActorRef());
+    }
+
+    public Cancellable scheduleAtFixedRate(long initialDelay, long period, TimeUnit unit,
+                                           ActorRef target, Object message, ActorRef sender) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        ScheduledMessage scheduled = new ScheduledMessage(target, message, sender);
+        mSystem.getTimer().schedule(scheduled, initialDelay, period, unit);
+        return scheduled;
+    }
+
+    private static class ScheduledMessage extends HashedWheelTimer.Timeout {
+        private final ActorRef mTarget;
+        private final Object mMessage;
+        private final ActorRef mSender;
+
+        ScheduledMessage(ActorRef target, Object message, ActorRef sender) {
+            mTarget = target;
+            mMessage = message;
+            mSender = sender;
+        }
+
+        @Override
+        void expire() {
+            if (period > 0 && mTarget instanceof ActorRefImpl
+                    && ((ActorRefImpl) mTarget).getCell().isStopped()
+                    && !((ActorRefImpl) mTarget).getCell().isPassivated()) {
+                // Nobody will ever get these. A passivated actor gets them as a new instance.
+                cancel();
+                return;
+            }
+            mTarget.tell(mMessage, mSender);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.qklabs.actors;
+
+/**
+ * What was left over when {@link ActorSystem#shutdown(long, java.util.concurrent.TimeUnit)}
+ * returned.
+ */
+public final class ShutdownReport {
+    private final int mRemainingActors;
+    private final int mRemainingMessages;
+
+    ShutdownReport(int remainingActors, int remainingMessages) {
+        mRemainingActors = remainingActors;
+        mRemainingMessages = remainingMessages;
+    }
+
+    /**
+     * Returns true if every message was processed and every actor's {@code postStop} finished
+     * before the deadline.
+     */
+    public boolean isComplete() {
+        return mRemainingActors == 0 && mRemainingMessages == 0;
+    }
+
+    /**
+     * Returns the number of actors whose {@code postStop} hadn't finished by the deadline.
+     */
+    public int getRemainingActorCount() {
+        return mRemainingActors;
+    }
+
+    /**
+     * Returns the number of messages that were never processed, because they were still waiting
+     * when the actors had to be stopped.
+     */
+    public int getRemainingMessageCount() {
+        return mRemainingMessages;
+    }
+
+    @Override
+    public String toString() {
+        return "ShutdownReport{remainingActors=" + mRemainingActors
+                + ", remainingMessages=" + mRemainingMessages + "}";
+    }
+}
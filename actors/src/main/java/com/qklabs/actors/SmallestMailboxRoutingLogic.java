@@ -0,0 +1,22 @@
+package com.qklabs.actors;
+
+/**
+ * Sends each message to the routee with the fewest messages waiting. Looks at every routee for
+ * each message, so it suits pools of slow, uneven work more than very high message rates.
+ */
+public class SmallestMailboxRoutingLogic implements RoutingLogic {
+
+    @Override
+    public int select(Object message, Routees routees) {
+        int best = 0;
+        int bestPending = routees.pendingCount(0);
+        for (int i = 1, count = routees.count(); i < count && bestPending > 0; i++) {
+            int pending = routees.pendingCount(i);
+            if (pending < bestPending) {
+                best = i;
+                bestPending = pending;
+            }
+        }
+        return best;
+    }
+}
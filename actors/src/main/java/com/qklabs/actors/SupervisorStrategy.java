@@ -0,0 +1,153 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides what happens to an actor when it throws from {@code preStart} or while receiving a
+ * message. The message it failed on is dropped either way, and the thread it was running on goes
+ * on to the next message. Actors use the strategy from {@link Actor#getSupervisorStrategy()}, or
+ * else the actor system's. See {@link ActorSystem.Builder#supervisorStrategy(SupervisorStrategy)}.
+ *
+ * An actor that keeps failing is restarted after a backoff that doubles with each restart, and
+ * stopped for good once it's been restarted too often within the restart window, so a failure
+ * loop can't spin a thread.
+ */
+public final class SupervisorStrategy {
+
+    public enum Directive {
+        /**
+         * Keeps the actor as it is, and goes on to its next message.
+         */
+        RESUME,
+        /**
+         * Replaces the actor with a new instance of its class. The old instance gets
+         * {@code postStop} and the new one {@code preStart}, and the new one receives the rest of
+         * the messages waiting for the old one.
+         */
+        RESTART,
+        /**
+         * Stops the actor, as {@link ActorSystem#stop(ActorRef)} would.
+         */
+        STOP,
+        /**
+         * Leaves the decision to the actor system's strategy. If the actor system's strategy
+         * escalates, the actor is stopped and the error is logged as severe.
+         */
+        ESCALATE
+    }
+
+    public interface Decider {
+        Directive decide(Throwable error);
+    }
+
+    /**
+     * The default for actor systems: restarts the actor, backing off from 100 ms up to 10 s if it
+     * keeps failing, and stops it after 10 restarts within a minute.
+     */
+    public static final SupervisorStrategy DEFAULT = restart()
+            .withRestartLimit(10, 1, TimeUnit.MINUTES)
+            .withBackoff(100, 10000, TimeUnit.MILLISECONDS);
+
+    /**
+     * How long restarts are counted for backoff, unless set by {@link #withRestartLimit}.
+     */
+    static final long DEFAULT_WINDOW_MINUTES = 1;
+
+    final Decider decider;
+    final int maxRestarts;
+    final long windowNanos;
+    final long minBackoffNanos;
+    final long maxBackoffNanos;
+
+    private SupervisorStrategy(Decider decider, int maxRestarts, long windowNanos,
+                               long minBackoffNanos, long maxBackoffNanos) {
+        this.decider = decider;
+        this.maxRestarts = maxRestarts;
+        this.windowNanos = windowNanos;
+        this.minBackoffNanos = minBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+    }
+
+    /**
+     * Decides by the type of error. Returning null is the same as {@link Directive#ESCALATE}.
+     */
+    public static SupervisorStrategy of(Decider decider) {
+        return new SupervisorStrategy(decider, Integer.MAX_VALUE,
+                TimeUnit.MINUTES.toNanos(DEFAULT_WINDOW_MINUTES), 0, 0);
+    }
+
+    public static SupervisorStrategy resume() {
+        return always(Directive.RESUME);
+    }
+
+    /**
+     * Restarts the actor right away on every failure, with no limit.
+     */
+    public static SupervisorStrategy restart() {
+        return always(Directive.RESTART);
+    }
+
+    public static SupervisorStrategy stop() {
+        return always(Directive.STOP);
+    }
+
+    public static SupervisorStrategy escalate() {
+        return always(Directive.ESCALATE);
+    }
+
+    private static SupervisorStrategy always(final Directive directive) {
+        return of(new Decider() {
+            @Override
+            public Directive decide(Throwable error) {
+                return directive;
+            }
+        });
+    }
+
+    /**
+     * Stops the actor instead of restarting it once it's been restarted the given number of times
+     * within the window.
+     */
+    public SupervisorStrategy withRestartLimit(int maxRestarts, long window, TimeUnit unit) {
+        if (maxRestarts < 0 || window <= 0) {
+            throw new IllegalArgumentException("Invalid restart limit");
+        }
+        return new SupervisorStrategy(decider, maxRestarts, unit.toNanos(window),
+                minBackoffNanos, maxBackoffNanos);
+    }
+
+    /**
+     * Delays restarts after the first within the restart window, starting from the minimum
+     * backoff and doubling each time up to the maximum. The window is a minute unless set by
+     * {@link #withRestartLimit(int, long, TimeUnit)}. The actor's messages wait in the
+     * meantime, without holding up other actors.
+     */
+    public SupervisorStrategy withBackoff(long minBackoff, long maxBackoff, TimeUnit unit) {
+        if (minBackoff <= 0 || maxBackoff < minBackoff) {
+            throw new IllegalArgumentException("Invalid backoff");
+        }
+        return new SupervisorStrategy(decider, maxRestarts, windowNanos, unit.toNanos(minBackoff),
+                unit.toNanos(maxBackoff));
+    }
+
+    Directive decide(Throwable error) {
+        Directive directive = decider.decide(error);
+        return directive != null ? directive : Directive.ESCALATE;
+    }
+
+    /**
+     * Returns how long to wait before the given restart within the window, counting from 1.
+     */
+    long backoffNanos(int restart) {
+        if (restart <= 1 || minBackoffNanos == 0) {
+            return 0;
+        }
+        int doublings = Math.min(restart - 2, 62);
+        long backoff = minBackoffNanos << doublings;
+        if (backoff <= 0 || backoff >> doublings != minBackoffNanos) {
+            // Overflowed
+            return maxBackoffNanos;
+        }
+        return Math.min(backoff, maxBackoffNanos);
+    }
+}
@@ -0,0 +1,254 @@
+package com.qklabs.actors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds every actor to one of a fixed number of threads. Each thread processes a single
+ * {@link MessageQueue} shared by all of the actors bound to it, and a {@link PlacementPolicy}
+ * decides which thread a new actor is bound to.
+ *
+ * This has very low overhead per message, but a slow actor delays every other actor that shares
+ * its thread. To limit that, the dispatcher can periodically rebalance: actors with no events in
+ * flight are moved off the most backed up queue onto the least backed up one. Actors are only
+ * moved between messages, so the order of their events never changes. See
+ * {@link WorkStealingDispatcher} for an alternative.
+ */
+public class ThreadBoundDispatcher extends Dispatcher {
+    /**
+     * Queues are only rebalanced when the busiest one has at least this many more events waiting
+     * than the idlest one.
+     */
+    static final int REBALANCE_MIN_IMBALANCE = 64;
+    static final int MAX_MIGRATIONS_PER_REBALANCE = 32;
+
+    private final int mThreads;
+    private final IdleStrategy mIdleStrategy;
+    private final PlacementPolicy mPlacementPolicy;
+    private final long mRebalanceIntervalMillis;
+    private final ThreadFactory mThreadFactory;
+    private final MessageQueue[] mQueues;
+    // Cells bound to each queue, guarded by itself
+    private final List<Set<ActorCell>> mBound;
+    private final PlacementPolicy.Queues mQueuesView = new QueuesView();
+
+    private ExecutorService mExecutor;
+    private ScheduledExecutorService mRebalancer;
+
+    public ThreadBoundDispatcher() {
+        this(ActorSystem.DEFAULT_THREADS, new BackoffIdleStrategy());
+    }
+
+    /**
+     * @param threads number of threads to run actors on
+     * @param idleStrategy what threads do while they have no messages to process
+     */
+    public ThreadBoundDispatcher(int threads, IdleStrategy idleStrategy) {
+        this(threads, idleStrategy, new PowerOfTwoChoicesPlacementPolicy(), 0);
+    }
+
+    /**
+     * @param threads number of threads to run actors on
+     * @param idleStrategy what threads do while they have no messages to process
+     * @param placementPolicy picks the thread each new actor is bound to
+     * @param rebalanceIntervalMillis how often to move idle actors off backed up threads, or 0 to
+     *                                never rebalance
+     */
+    public ThreadBoundDispatcher(int threads, IdleStrategy idleStrategy,
+                                 PlacementPolicy placementPolicy, long rebalanceIntervalMillis) {
+        this(threads, idleStrategy, placementPolicy, rebalanceIntervalMillis,
+                new ActorThreadFactory("ThreadBoundDispatcher"));
+    }
+
+    /**
+     * @param threads number of threads to run actors on
+     * @param idleStrategy what threads do while they have no messages to process
+     * @param placementPolicy picks the thread each new actor is bound to
+     * @param rebalanceIntervalMillis how often to move idle actors off backed up threads, or 0 to
+     *                                never rebalance
+     * @param threadFactory creates the dispatcher's threads
+     */
+    public ThreadBoundDispatcher(int threads, IdleStrategy idleStrategy,
+                                 PlacementPolicy placementPolicy, long rebalanceIntervalMillis,
+                                 ThreadFactory threadFactory) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Must have at least one thread");
+        }
+        if (rebalanceIntervalMillis < 0) {
+            throw new IllegalArgumentException("Rebalance interval can't be negative");
+        }
+        mThreads = threads;
+        mIdleStrategy = idleStrategy;
+        mPlacementPolicy = placementPolicy;
+        mRebalanceIntervalMillis = rebalanceIntervalMillis;
+        mThreadFactory = threadFactory;
+        mQueues = new MessageQueue[threads];
+        mBound = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            mQueues[i] = new MessageQueue();
+            mBound.add(new HashSet<ActorCell>());
+        }
+    }
+
+    @Override
+    void start(MetricsRegistry metrics) {
+        mExecutor = Executors.newFixedThreadPool(mThreads, mThreadFactory);
+        for (MessageQueue queue : mQueues) {
+            if (metrics != null) {
+                queue.enableTiming();
+            }
+            mExecutor.execute(new ActorsQueueRunnable(queue, mIdleStrategy, metrics));
+        }
+
+        if (mRebalanceIntervalMillis > 0) {
+            mRebalancer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ThreadBoundDispatcher-rebalancer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            mRebalancer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    rebalance();
+                }
+            }, mRebalanceIntervalMillis, mRebalanceIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    Mailbox bind(ActorCell cell) {
+        int index = mPlacementPolicy.place(cell.path, mQueuesView);
+        if (index < 0 || index >= mThreads) {
+            throw new IllegalStateException("Placement policy picked queue " + index + " of "
+                    + mThreads);
+        }
+        Set<ActorCell> bound = mBound.get(index);
+        synchronized (bound) {
+            bound.add(cell);
+        }
+        return mQueues[index];
+    }
+
+    @Override
+    void unbind(ActorCell cell) {
+        while (true) {
+            int index = indexOf(cell.getMailbox());
+            if (index < 0) {
+                return;
+            }
+            Set<ActorCell> bound = mBound.get(index);
+            synchronized (bound) {
+                // Migrations hold the locks of both sets, so the mailbox can't change while we
+                // hold this one. If one ran since we read it, the cell is in another set now.
+                if (cell.getMailbox() == mQueues[index]) {
+                    bound.remove(cell);
+                    return;
+                }
+            }
+        }
+    }
+
+    private int indexOf(Mailbox mailbox) {
+        for (int i = 0; i < mThreads; i++) {
+            if (mQueues[i] == mailbox) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves idle actors from the most backed up queue to the least backed up one.
+     * @return the number of actors moved
+     */
+    int rebalance() {
+        int busiest = 0;
+        int idlest = 0;
+        for (int i = 1; i < mThreads; i++) {
+            if (mQueues[i].size() > mQueues[busiest].size()) {
+                busiest = i;
+            }
+            if (mQueues[i].size() < mQueues[idlest].size()) {
+                idlest = i;
+            }
+        }
+        int busiestDepth = mQueues[busiest].size();
+        int idlestDepth = mQueues[idlest].size();
+        if (busiest == idlest || busiestDepth - idlestDepth < REBALANCE_MIN_IMBALANCE) {
+            return 0;
+        }
+
+        Set<ActorCell> from = mBound.get(busiest);
+        Set<ActorCell> to = mBound.get(idlest);
+        List<ActorCell> candidates;
+        synchronized (from) {
+            candidates = new ArrayList<>(from);
+        }
+
+        int moved = 0;
+        for (ActorCell cell : candidates) {
+            if (moved >= MAX_MIGRATIONS_PER_REBALANCE) {
+                break;
+            }
+            // Lock both sets so the cell can't be unbound halfway through the move
+            synchronized (from) {
+                synchronized (to) {
+                    if (from.contains(cell) && cell.migrate(mQueues[idlest])) {
+                        from.remove(cell);
+                        to.add(cell);
+                        moved++;
+                    }
+                }
+            }
+        }
+        return moved;
+    }
+
+    @Override
+    int[] getQueueDepths() {
+        int[] depths = new int[mThreads];
+        for (int i = 0; i < mThreads; i++) {
+            depths[i] = mQueues[i].size();
+        }
+        return depths;
+    }
+
+    @Override
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        if (mRebalancer != null) {
+            mRebalancer.shutdownNow();
+        }
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private class QueuesView implements PlacementPolicy.Queues {
+        @Override
+        public int count() {
+            return mThreads;
+        }
+
+        @Override
+        public int depth(int index) {
+            return mQueues[index].size();
+        }
+
+        @Override
+        public int actorCount(int index) {
+            Set<ActorCell> bound = mBound.get(index);
+            synchronized (bound) {
+                return bound.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.qklabs.actors;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives every actor its own mailbox, and drains each mailbox that has events on a thread of its
+ * own. With virtual threads, an actor that blocks on I/O only parks its own thread, so other
+ * actors keep running and there can be hundreds of thousands of blocked actors without growing
+ * the pool of platform threads. Each actor still processes one event at a time.
+ *
+ * Virtual threads need Java 21 or later, and aren't available on Android; check
+ * {@link #isAvailable()}. Route only the actors that block to this dispatcher, since starting a
+ * thread costs more per message than {@link ThreadBoundDispatcher} or
+ * {@link WorkStealingDispatcher}:
+ *
+ * <pre>
+ * new ActorSystem.Builder()
+ *         .dispatcher("io", new VirtualThreadDispatcher())
+ *         .route(UserActor.class, "io")
+ *         .build();
+ * </pre>
+ *
+ * Latency histograms and thread utilization aren't recorded for actors on this dispatcher, since
+ * its threads don't outlive a single drain of a mailbox.
+ */
+public class VirtualThreadDispatcher extends Dispatcher {
+    /**
+     * Starting a thread for every few events would cost more than the events, so a mailbox
+     * processes more events per drain than on {@link WorkStealingDispatcher}.
+     */
+    public static final int DEFAULT_THROUGHPUT = 64;
+    /**
+     * Every actor has its own mailbox, and most of them sit idle, so each ring only holds a couple
+     * of events. Bursts spill over into the mailbox's overflow queue.
+     */
+    static final int MAILBOX_CAPACITY = 2;
+
+    private final ThreadFactory mThreadFactory;
+    private final int mThroughput;
+    private final Set<Thread> mRunning =
+            Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    private volatile boolean mShutdown = false;
+    private final Executor mMailboxExecutor = new Executor() {
+        @Override
+        public void execute(Runnable mailbox) {
+            if (mShutdown) {
+                return;
+            }
+            mThreadFactory.newThread(new Drain(mailbox)).start();
+        }
+    };
+
+    /**
+     * Creates a dispatcher that runs actors on virtual threads.
+     * @throws UnsupportedOperationException if virtual threads aren't available
+     */
+    public VirtualThreadDispatcher() {
+        this(newVirtualThreadFactory("actors-virtual-"), DEFAULT_THROUGHPUT);
+    }
+
+    /**
+     * @param threadFactory creates a thread for each drain of a mailbox. Meant for virtual
+     *                      threads, such as {@code Thread.ofVirtual().factory()}.
+     * @param throughput maximum number of events an actor processes before its thread ends and
+     *                   another is started for the rest
+     */
+    public VirtualThreadDispatcher(ThreadFactory threadFactory, int throughput) {
+        if (throughput <= 0) {
+            throw new IllegalArgumentException("Throughput must be positive");
+        }
+        mThreadFactory = threadFactory;
+        mThroughput = throughput;
+    }
+
+    /**
+     * Returns true if this runtime has virtual threads.
+     */
+    public static boolean isAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Calls {@code Thread.ofVirtual().name(prefix, 0).factory()} reflectively, so the library
+     * still builds for Java 7 and Android.
+     */
+    private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+        } catch (ClassNotFoundException | IllegalAccessException
+                | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Could not create virtual threads", e);
+        }
+    }
+
+    @Override
+    void start(MetricsRegistry metrics) {
+    }
+
+    @Override
+    Mailbox bind(ActorCell cell) {
+        return new ActorMailbox(mMailboxExecutor, MAILBOX_CAPACITY, mThroughput);
+    }
+
+    /**
+     * There are no shared queues, so this reports the number of mailboxes being drained.
+     */
+    @Override
+    int[] getQueueDepths() {
+        return new int[] {mRunning.size()};
+    }
+
+    @Override
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        mShutdown = true;
+        for (Thread thread : mRunning) {
+            thread.interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Thread thread : mRunning) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                break;
+            }
+            thread.join(remaining);
+        }
+    }
+
+    /**
+     * Drains a mailbox once on the current thread, keeping track of the thread so shutdown can
+     * interrupt it.
+     */
+    private class Drain implements Runnable {
+        private final Runnable mMailbox;
+
+        Drain(Runnable mailbox) {
+            mMailbox = mailbox;
+        }
+
+        @Override
+        public void run() {
+            Thread thread = Thread.currentThread();
+            mRunning.add(thread);
+            try {
+                if (!mShutdown) {
+                    mMailbox.run();
+                }
+            } finally {
+                mRunning.remove(thread);
+            }
+        }
+    }
+}
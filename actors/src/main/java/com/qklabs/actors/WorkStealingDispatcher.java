@@ -0,0 +1,254 @@
+package com.qklabs.actors;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gives every actor its own mailbox, and runs mailboxes that have events on a pool of threads
+ * that steal work from each other. A slow actor only holds up one thread, and idle threads take
+ * over the rest of its thread's backlog.
+ *
+ * Each time a mailbox runs, its actor processes at most {@code throughput} events before the
+ * thread moves on to another mailbox. Lower values share threads more fairly between actors,
+ * higher values have less scheduling overhead.
+ */
+public class WorkStealingDispatcher extends Dispatcher {
+    public static final int DEFAULT_THROUGHPUT = 5;
+    static final int DEFAULT_MAILBOX_CAPACITY = 16;
+
+    private final int mThroughput;
+    private final IdleStrategy mIdleStrategy;
+    private final ThreadFactory mThreadFactory;
+    private final Worker[] mWorkers;
+    private final ThreadLocal<Worker> mCurrentWorker = new ThreadLocal<>();
+    private final AtomicInteger mNextWorker = new AtomicInteger();
+    private final AtomicInteger mParkedWorkers = new AtomicInteger();
+    private MetricsRegistry mRegistry;
+    private final Executor mMailboxExecutor = new Executor() {
+        @Override
+        public void execute(Runnable mailbox) {
+            WorkStealingDispatcher.this.execute((ActorMailbox) mailbox);
+        }
+    };
+
+    public WorkStealingDispatcher() {
+        this(ActorSystem.DEFAULT_THREADS, DEFAULT_THROUGHPUT, new BackoffIdleStrategy());
+    }
+
+    /**
+     * @param threads number of threads to run actors on
+     * @param throughput maximum number of events an actor processes before giving up its thread
+     * @param idleStrategy what threads do while there are no mailboxes to run
+     */
+    public WorkStealingDispatcher(int threads, int throughput, IdleStrategy idleStrategy) {
+        this(threads, throughput, idleStrategy, new ActorThreadFactory("WorkStealingDispatcher"));
+    }
+
+    /**
+     * @param threads number of threads to run actors on
+     * @param throughput maximum number of events an actor processes before giving up its thread
+     * @param idleStrategy what threads do while there are no mailboxes to run
+     * @param threadFactory creates the dispatcher's threads
+     */
+    public WorkStealingDispatcher(int threads, int throughput, IdleStrategy idleStrategy,
+                                  ThreadFactory threadFactory) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Must have at least one thread");
+        }
+        if (throughput <= 0) {
+            throw new IllegalArgumentException("Throughput must be positive");
+        }
+        mThroughput = throughput;
+        mIdleStrategy = idleStrategy;
+        mThreadFactory = threadFactory;
+        mWorkers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            mWorkers[i] = new Worker(i);
+        }
+    }
+
+    @Override
+    void start(MetricsRegistry metrics) {
+        mRegistry = metrics;
+        for (Worker worker : mWorkers) {
+            worker.mThread = mThreadFactory.newThread(worker);
+            worker.mThread.start();
+        }
+    }
+
+    @Override
+    Mailbox bind(ActorCell cell) {
+        ActorMailbox mailbox = new ActorMailbox(mMailboxExecutor, DEFAULT_MAILBOX_CAPACITY,
+                mThroughput);
+        if (mRegistry != null) {
+            mailbox.enableTiming();
+        }
+        return mailbox;
+    }
+
+    @Override
+    int[] getQueueDepths() {
+        int[] depths = new int[mWorkers.length];
+        for (int i = 0; i < mWorkers.length; i++) {
+            synchronized (mWorkers[i].mDeque) {
+                depths[i] = mWorkers[i].mDeque.size();
+            }
+        }
+        return depths;
+    }
+
+    @Override
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        for (Worker worker : mWorkers) {
+            worker.mThread.interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Worker worker : mWorkers) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                break;
+            }
+            worker.mThread.join(remaining);
+        }
+    }
+
+    /**
+     * Schedules a mailbox to run. Mailboxes scheduled from one of our own workers go to that
+     * worker's deque, since the actor is likely to be talking to actors it already has cached.
+     * Other mailboxes are spread across workers round-robin.
+     */
+    void execute(ActorMailbox mailbox) {
+        Worker target = mCurrentWorker.get();
+        if (target == null) {
+            int next = mNextWorker.getAndIncrement() & Integer.MAX_VALUE;
+            target = mWorkers[next % mWorkers.length];
+        }
+        target.push(mailbox);
+
+        if (target.mParked) {
+            LockSupport.unpark(target.mThread);
+        } else if (mParkedWorkers.get() > 0) {
+            // The target is busy, so let an idle worker steal the mailbox
+            for (Worker worker : mWorkers) {
+                if (worker.mParked) {
+                    LockSupport.unpark(worker.mThread);
+                    break;
+                }
+            }
+        }
+    }
+
+    private class Worker implements Runnable, IdleStrategy.Parker {
+        private final int mIndex;
+        private final ArrayDeque<ActorMailbox> mDeque = new ArrayDeque<>();
+        private volatile boolean mParked = false;
+        private Thread mThread;
+        // Null unless metrics are enabled
+        private WorkerMetrics mMetrics;
+
+        Worker(int index) {
+            mIndex = index;
+        }
+
+        void push(ActorMailbox mailbox) {
+            synchronized (mDeque) {
+                mDeque.addLast(mailbox);
+            }
+        }
+
+        private ActorMailbox pollOwn() {
+            synchronized (mDeque) {
+                return mDeque.pollFirst();
+            }
+        }
+
+        private ActorMailbox stealFrom(Worker victim) {
+            synchronized (victim.mDeque) {
+                return victim.mDeque.pollLast();
+            }
+        }
+
+        private boolean hasWork(Worker worker) {
+            synchronized (worker.mDeque) {
+                return !worker.mDeque.isEmpty();
+            }
+        }
+
+        private ActorMailbox next() {
+            ActorMailbox mailbox = pollOwn();
+            if (mailbox != null) {
+                return mailbox;
+            }
+            for (int i = 1; i < mWorkers.length; i++) {
+                mailbox = stealFrom(mWorkers[(mIndex + i) % mWorkers.length]);
+                if (mailbox != null) {
+                    return mailbox;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            mCurrentWorker.set(this);
+            if (mRegistry != null) {
+                mMetrics = mRegistry.newWorker(Thread.currentThread().getName());
+            }
+            int idleCount = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                ActorMailbox mailbox = next();
+                if (mailbox != null) {
+                    idleCount = 0;
+                    mailbox.setMetrics(mMetrics);
+                    mailbox.run();
+                } else {
+                    if (mMetrics != null) {
+                        mMetrics.onIdle();
+                    }
+                    mIdleStrategy.idle(idleCount, this);
+                    if (idleCount < Integer.MAX_VALUE) {
+                        idleCount++;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void park() {
+            park(0);
+        }
+
+        @Override
+        public void parkNanos(long nanos) {
+            if (nanos > 0) {
+                park(nanos);
+            }
+        }
+
+        private void park(long nanos) {
+            // Publish that we're parked before re-checking for work, so that a mailbox scheduled
+            // in between is guaranteed to see the flag and unpark us.
+            mParked = true;
+            mParkedWorkers.incrementAndGet();
+            try {
+                for (Worker worker : mWorkers) {
+                    if (hasWork(worker)) {
+                        return;
+                    }
+                }
+                if (nanos > 0) {
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+            } finally {
+                mParked = false;
+                mParkedWorkers.decrementAndGet();
+            }
+        }
+    }
+}
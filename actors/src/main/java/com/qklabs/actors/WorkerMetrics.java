@@ -0,0 +1,66 @@
+package com.qklabs.actors;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What one worker thread records about the events it processes. Only that thread records, so
+ * workers never contend with each other or with senders.
+ */
+class WorkerMetrics {
+    final String name;
+    final Histogram.Recorder waitTime = new Histogram.Recorder();
+    final Histogram.Recorder serviceTime = new Histogram.Recorder();
+    private final AtomicLong mProcessed = new AtomicLong();
+    private final AtomicLong mBusyNanos = new AtomicLong();
+    // When the previous event finished processing, or 0 if the worker has been idle since
+    private long mLastEnd;
+
+    // The totals at the previous snapshot, guarded by the registry
+    long lastProcessed;
+    long lastBusyNanos;
+
+    WorkerMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the time to record as the start of processing the next event. While the worker
+     * processes events back to back, that's when the previous one finished, which saves reading
+     * the clock for every event.
+     */
+    long startTime() {
+        return mLastEnd != 0 ? mLastEnd : System.nanoTime();
+    }
+
+    /**
+     * Called when the worker runs out of events, so the time it spends idle isn't counted as
+     * processing the next one.
+     */
+    void onIdle() {
+        mLastEnd = 0;
+    }
+
+    /**
+     * Records processing one or more events that were delivered together.
+     * @param enqueuedAt when the first event was queued, or 0 if it wasn't timed
+     * @param start when processing started
+     * @param end when processing finished
+     */
+    void onProcessed(long enqueuedAt, long start, long end, int count) {
+        if (enqueuedAt != 0) {
+            waitTime.record(start - enqueuedAt);
+        }
+        serviceTime.record(end - start);
+        mLastEnd = end;
+        mProcessed.lazySet(mProcessed.get() + count);
+        mBusyNanos.lazySet(mBusyNanos.get() + end - start);
+    }
+
+    long getProcessedCount() {
+        return mProcessed.get();
+    }
+
+    long getBusyNanos() {
+        return mBusyNanos.get();
+    }
+}
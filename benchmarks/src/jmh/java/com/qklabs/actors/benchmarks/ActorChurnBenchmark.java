@@ -0,0 +1,87 @@
+package com.qklabs.actors.benchmarks;
+
+import com.qklabs.actors.Actor;
+import com.qklabs.actors.ActorFactory;
+import com.qklabs.actors.ActorRef;
+import com.qklabs.actors.ActorSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of {@link ActorSystem#getOrCreateActor(String, Class)}, both for actors that already
+ * exist and for short-lived actors that are created and stopped right away, compared with
+ * creating them through an {@link ActorFactory} and with {@link ActorSystem#spawnTemporary}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ActorChurnBenchmark {
+    static final int EXISTING = 1024;
+    private static final ActorFactory<Idle> FACTORY = new ActorFactory<Idle>() {
+        @Override
+        public Idle create() {
+            return new Idle();
+        }
+    };
+
+    @Param({Benchmarks.THREAD_BOUND, Benchmarks.WORK_STEALING})
+    public String dispatcher;
+
+    private ActorSystem mSystem;
+    private String[] mExistingPaths;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mSystem = Benchmarks.newSystem(dispatcher, 2);
+        mExistingPaths = new String[EXISTING];
+        for (int i = 0; i < EXISTING; i++) {
+            mExistingPaths[i] = "/existing/" + i;
+            mSystem.getOrCreateActor(mExistingPaths[i], Idle.class);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSystem.shutdown();
+    }
+
+    @Benchmark
+    public ActorRef getExisting() {
+        return mSystem.getOrCreateActor(mExistingPaths[mNext++ & (EXISTING - 1)], Idle.class);
+    }
+
+    @Benchmark
+    public ActorRef createAndStop() {
+        ActorRef actor = mSystem.getOrCreateActor("/churn/" + mNext++, Idle.class);
+        mSystem.stop(actor);
+        return actor;
+    }
+
+    @Benchmark
+    public ActorRef createAndStopWithFactory() {
+        ActorRef actor = mSystem.getOrCreateActor("/churn/" + mNext++, FACTORY);
+        mSystem.stop(actor);
+        return actor;
+    }
+
+    @Benchmark
+    public ActorRef spawnTemporaryAndStop() {
+        ActorRef actor = mSystem.spawnTemporary(FACTORY);
+        mSystem.stop(actor);
+        return actor;
+    }
+
+    public static class Idle extends Actor {
+    }
+}
@@ -0,0 +1,98 @@
+package com.qklabs.actors.benchmarks;
+
+import com.qklabs.actors.ActorSystem;
+import com.qklabs.actors.BackoffIdleStrategy;
+import com.qklabs.actors.BlockingIdleStrategy;
+import com.qklabs.actors.BusySpinIdleStrategy;
+import com.qklabs.actors.EmbeddedDispatcher;
+import com.qklabs.actors.IdleStrategy;
+import com.qklabs.actors.LeastQueuedPlacementPolicy;
+import com.qklabs.actors.ThreadBoundDispatcher;
+import com.qklabs.actors.WorkStealingDispatcher;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers shared by the benchmarks.
+ */
+final class Benchmarks {
+    static final String THREAD_BOUND = "threadBound";
+    static final String WORK_STEALING = "workStealing";
+    // Runs on the benchmark thread, which has to pump it. Ignores the thread settings.
+    static final String EMBEDDED = "embedded";
+
+    private Benchmarks() {}
+
+    /**
+     * Creates an actor system on the named kind of dispatcher. Thread bound systems spread actors
+     * evenly over their threads, so the same actors always talk across the same threads.
+     */
+    static ActorSystem newSystem(String dispatcher, int threads, IdleStrategy idleStrategy,
+                                 ThreadFactory threadFactory) {
+        switch (dispatcher) {
+            case THREAD_BOUND:
+                return new ActorSystem(new ThreadBoundDispatcher(threads, idleStrategy,
+                        new LeastQueuedPlacementPolicy(), 0, threadFactory));
+            case WORK_STEALING:
+                return new ActorSystem(new WorkStealingDispatcher(threads,
+                        WorkStealingDispatcher.DEFAULT_THROUGHPUT, idleStrategy, threadFactory));
+            case EMBEDDED:
+                return new ActorSystem(new EmbeddedDispatcher());
+            default:
+                throw new IllegalArgumentException("Unknown dispatcher " + dispatcher);
+        }
+    }
+
+    static ActorSystem newSystem(String dispatcher, int threads) {
+        return newSystem(dispatcher, threads, new BackoffIdleStrategy(),
+                new DaemonThreadFactory());
+    }
+
+    static IdleStrategy newIdleStrategy(String name) {
+        switch (name) {
+            case "busySpin":
+                return new BusySpinIdleStrategy();
+            case "backoff":
+                return new BackoffIdleStrategy();
+            case "blocking":
+                return new BlockingIdleStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown idle strategy " + name);
+        }
+    }
+
+    /**
+     * Waits for the latch, failing the benchmark rather than hanging if messages were lost.
+     */
+    static void await(CountDownLatch latch) throws InterruptedException {
+        if (!latch.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Timed out waiting for the actors");
+        }
+    }
+
+    /**
+     * Sent after a run of messages. Since messages from one sender arrive in order, the actor has
+     * processed the whole run once it counts down the latch.
+     */
+    static final class Barrier {
+        final CountDownLatch latch;
+
+        Barrier(CountDownLatch latch) {
+            this.latch = latch;
+        }
+    }
+
+    /**
+     * Lets the JVM exit even if a benchmark fails before shutting its system down.
+     */
+    static class DaemonThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "bench-actors");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
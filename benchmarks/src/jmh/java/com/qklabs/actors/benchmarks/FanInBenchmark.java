@@ -0,0 +1,100 @@
+package com.qklabs.actors.benchmarks;
+
+import com.qklabs.actors.Actor;
+import com.qklabs.actors.ActorRef;
+import com.qklabs.actors.ActorSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many actors sending to one: throughput of a single sink fed by N producers, which stresses the
+ * multi-producer side of the mailbox.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FanInBenchmark {
+    static final int MESSAGES = 16384;
+    private static final Object MESSAGE = new Object();
+
+    @Param({Benchmarks.THREAD_BOUND, Benchmarks.WORK_STEALING})
+    public String dispatcher;
+
+    @Param({"1", "4", "16"})
+    public int producers;
+
+    private ActorSystem mSystem;
+    private ActorRef mSink;
+    private List<ActorRef> mProducers;
+
+    @Setup
+    public void setUp() {
+        mSystem = Benchmarks.newSystem(dispatcher, Runtime.getRuntime().availableProcessors());
+        mSink = mSystem.getOrCreateActor("/sink", Sink.class);
+        mProducers = new ArrayList<>(producers);
+        for (int i = 0; i < producers; i++) {
+            mProducers.add(mSystem.getOrCreateActor("/producers/" + i, Producer.class));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSystem.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void fanIn() throws InterruptedException {
+        Go go = new Go(mSink, MESSAGES / producers, new CountDownLatch(producers));
+        for (ActorRef producer : mProducers) {
+            producer.tell(go);
+        }
+        Benchmarks.await(go.done);
+    }
+
+    static final class Go {
+        final ActorRef sink;
+        final int messages;
+        final CountDownLatch done;
+
+        Go(ActorRef sink, int messages, CountDownLatch done) {
+            this.sink = sink;
+            this.messages = messages;
+            this.done = done;
+        }
+    }
+
+    public static class Producer extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            Go go = (Go) message;
+            for (int i = 0; i < go.messages; i++) {
+                go.sink.tell(MESSAGE, self());
+            }
+            go.sink.tell(new Benchmarks.Barrier(go.done), self());
+        }
+    }
+
+    public static class Sink extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if (message instanceof Benchmarks.Barrier) {
+                ((Benchmarks.Barrier) message).latch.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.qklabs.actors.benchmarks;
+
+import com.qklabs.actors.Actor;
+import com.qklabs.actors.ActorRef;
+import com.qklabs.actors.ActorSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One actor sending to many: throughput of a source actor spreading messages over N sinks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FanOutBenchmark {
+    static final int MESSAGES = 16384;
+    private static final Object MESSAGE = new Object();
+
+    @Param({Benchmarks.THREAD_BOUND, Benchmarks.WORK_STEALING})
+    public String dispatcher;
+
+    @Param({"1", "4", "16"})
+    public int sinks;
+
+    private ActorSystem mSystem;
+    private ActorRef mSource;
+    private List<ActorRef> mSinks;
+
+    @Setup
+    public void setUp() {
+        mSystem = Benchmarks.newSystem(dispatcher, Runtime.getRuntime().availableProcessors());
+        mSource = mSystem.getOrCreateActor("/source", Source.class);
+        mSinks = new ArrayList<>(sinks);
+        for (int i = 0; i < sinks; i++) {
+            mSinks.add(mSystem.getOrCreateActor("/sinks/" + i, Sink.class));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSystem.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void fanOut() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(sinks);
+        mSource.tell(new Go(mSinks, MESSAGES / sinks, done));
+        Benchmarks.await(done);
+    }
+
+    static final class Go {
+        final List<ActorRef> sinks;
+        final int messagesPerSink;
+        final CountDownLatch done;
+
+        Go(List<ActorRef> sinks, int messagesPerSink, CountDownLatch done) {
+            this.sinks = sinks;
+            this.messagesPerSink = messagesPerSink;
+            this.done = done;
+        }
+    }
+
+    public static class Source extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            Go go = (Go) message;
+            for (int i = 0; i < go.messagesPerSink; i++) {
+                for (ActorRef sink : go.sinks) {
+                    sink.tell(MESSAGE, self());
+                }
+            }
+            Benchmarks.Barrier barrier = new Benchmarks.Barrier(go.done);
+            for (ActorRef sink : go.sinks) {
+                sink.tell(barrier, self());
+            }
+        }
+    }
+
+    public static class Sink extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if (message instanceof Benchmarks.Barrier) {
+                ((Benchmarks.Barrier) message).latch.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.qklabs.actors.benchmarks;
+
+import com.qklabs.actors.Actor;
+import com.qklabs.actors.ActorRef;
+import com.qklabs.actors.ActorSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The trade-off each idle strategy makes: how long a message sent to a system that has gone idle
+ * takes to be processed, and how much CPU the idle threads burn meanwhile. The latency is the
+ * benchmark's score; the CPU use is printed after each iteration as a percentage of one core per
+ * worker thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdleBenchmark {
+    static final int THREADS = 4;
+    static final long IDLE_MILLIS = 1;
+
+    @Param({Benchmarks.THREAD_BOUND, Benchmarks.WORK_STEALING})
+    public String dispatcher;
+
+    @Param({"busySpin", "backoff", "blocking"})
+    public String idleStrategy;
+
+    private final List<Thread> mThreads = new CopyOnWriteArrayList<>();
+    private final ThreadMXBean mThreadBean = ManagementFactory.getThreadMXBean();
+    private ActorSystem mSystem;
+    private ActorRef mEcho;
+    private long mIterationStart;
+    private long mIterationCpuStart;
+
+    @Setup
+    public void setUp() {
+        mSystem = Benchmarks.newSystem(dispatcher, THREADS,
+                Benchmarks.newIdleStrategy(idleStrategy), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "idle-bench-" + mThreads.size());
+                        thread.setDaemon(true);
+                        mThreads.add(thread);
+                        return thread;
+                    }
+                });
+        mEcho = mSystem.getOrCreateActor("/echo", Echo.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSystem.shutdown();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        mIterationStart = System.nanoTime();
+        mIterationCpuStart = workerCpuTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void finishIteration() {
+        long wall = System.nanoTime() - mIterationStart;
+        long cpu = workerCpuTime() - mIterationCpuStart;
+        System.out.printf("%n%s idle CPU: %.1f%% of a core per thread%n", idleStrategy,
+                100.0 * cpu / wall / THREADS);
+    }
+
+    /**
+     * Gives the workers time to settle into their idle strategy before each message.
+     */
+    @Setup(Level.Invocation)
+    public void goIdle() throws InterruptedException {
+        Thread.sleep(IDLE_MILLIS);
+    }
+
+    @Benchmark
+    public void wakeUp() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        mEcho.tell(new Benchmarks.Barrier(done));
+        Benchmarks.await(done);
+    }
+
+    private long workerCpuTime() {
+        long total = 0;
+        for (Thread thread : mThreads) {
+            long cpu = mThreadBean.getThreadCpuTime(thread.getId());
+            if (cpu > 0) {
+                total += cpu;
+            }
+        }
+        return total;
+    }
+
+    public static class Echo extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            ((Benchmarks.Barrier) message).latch.countDown();
+        }
+    }
+}
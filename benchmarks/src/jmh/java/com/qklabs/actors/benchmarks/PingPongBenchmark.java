@@ -0,0 +1,99 @@
+package com.qklabs.actors.benchmarks;
+
+import com.qklabs.actors.Actor;
+import com.qklabs.actors.ActorRef;
+import com.qklabs.actors.ActorSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip latency between two actors on different threads, which is dominated by how quickly
+ * an idle thread notices a new message. The embedded dispatcher runs both actors on the
+ * benchmark thread, as the baseline without any handoff between threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PingPongBenchmark {
+    static final int ROUND_TRIPS = 1000;
+    private static final Object BALL = new Object();
+
+    @Param({Benchmarks.THREAD_BOUND, Benchmarks.WORK_STEALING, Benchmarks.EMBEDDED})
+    public String dispatcher;
+
+    private ActorSystem mSystem;
+    private ActorRef mPinger;
+    private ActorRef mPonger;
+
+    @Setup
+    public void setUp() {
+        mSystem = Benchmarks.newSystem(dispatcher, 2);
+        mPinger = mSystem.getOrCreateActor("/pinger", Pinger.class);
+        mPonger = mSystem.getOrCreateActor("/ponger", Ponger.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSystem.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUND_TRIPS)
+    public void roundTrip() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        mPinger.tell(new Rally(mPonger, ROUND_TRIPS, done));
+        if (dispatcher.equals(Benchmarks.EMBEDDED)) {
+            mSystem.runUntilIdle();
+        }
+        Benchmarks.await(done);
+    }
+
+    static final class Rally {
+        final ActorRef ponger;
+        final int roundTrips;
+        final CountDownLatch done;
+
+        Rally(ActorRef ponger, int roundTrips, CountDownLatch done) {
+            this.ponger = ponger;
+            this.roundTrips = roundTrips;
+            this.done = done;
+        }
+    }
+
+    public static class Pinger extends Actor {
+        private Rally mRally;
+        private int mRemaining;
+
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            if (message instanceof Rally) {
+                mRally = (Rally) message;
+                mRemaining = mRally.roundTrips;
+                mRally.ponger.tell(BALL, self());
+            } else if (--mRemaining > 0) {
+                sender.tell(BALL, self());
+            } else {
+                mRally.done.countDown();
+            }
+        }
+    }
+
+    public static class Ponger extends Actor {
+        @Override
+        public void onReceive(Object message, ActorRef sender) {
+            sender.tell(message, self());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.qklabs.actors.benchmarks;
+
+import com.qklabs.actors.Actor;
+import com.qklabs.actors.ActorRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up actor classes by path in {@link ActorRegistry}, for paths that were resolved
+ * recently, paths that weren't, and paths that match nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegistryLookupBenchmark {
+    static final int SERVICES = 64;
+    static final int HOT_PATHS = 16;
+    // Many more than the registry caches, so nearly every lookup resolves against the trie
+    static final int COLD_PATHS = 16384;
+
+    private String[] mHotPaths;
+    private String[] mColdPaths;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        ActorRegistry.clear();
+        for (int i = 0; i < SERVICES; i++) {
+            ActorRegistry.register("/service" + i + "/*/items/#", Item.class);
+            ActorRegistry.register("/service" + i + "/*", Service.class);
+        }
+        ActorRegistry.register("actor://remote/users/*", Service.class);
+
+        mHotPaths = new String[HOT_PATHS];
+        for (int i = 0; i < HOT_PATHS; i++) {
+            mHotPaths[i] = "/service" + i + "/user" + i + "/items/" + i;
+        }
+        mColdPaths = new String[COLD_PATHS];
+        for (int i = 0; i < COLD_PATHS; i++) {
+            mColdPaths[i] = "/service" + (i % SERVICES) + "/user" + i + "/items/" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ActorRegistry.clear();
+    }
+
+    @Benchmark
+    public Class<? extends Actor> lookupCached() {
+        return ActorRegistry.lookup(mHotPaths[mNext++ & (HOT_PATHS - 1)]);
+    }
+
+    @Benchmark
+    public Class<? extends Actor> lookupUncached() {
+        return ActorRegistry.lookup(mColdPaths[mNext++ & (COLD_PATHS - 1)]);
+    }
+
+    @Benchmark
+    public Class<? extends Actor> lookupRemote() {
+        return ActorRegistry.lookup("actor://remote/users/abc123");
+    }
+
+    @Benchmark
+    public Class<? extends Actor> lookupMissing() {
+        return ActorRegistry.lookup("/unknown/path/that/matches/nothing");
+    }
+
+    public static class Service extends Actor {
+    }
+
+    public static class Item extends Actor {
+    }
+}